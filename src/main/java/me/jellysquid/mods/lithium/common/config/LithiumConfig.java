@@ -23,6 +23,7 @@ public class LithiumConfig {
     private static final String JSON_KEY_LITHIUM_OPTIONS = "lithium:options";
 
     private final Map<String, Option> options = new HashMap<>();
+    private final Map<String, Integer> values = new HashMap<>();
 
     private LithiumConfig() {
         // Defines the default rules which can be configured by the user or other mods.
@@ -31,6 +32,7 @@ public class LithiumConfig {
         this.addMixinRule("ai", true);
         this.addMixinRule("ai.goal", true);
         this.addMixinRule("ai.nearby_entity_tracking", true);
+        this.addMixinRule("ai.nearby_entity_tracking.batched_notifications", false);
         this.addMixinRule("ai.pathing", true);
         this.addMixinRule("ai.poi", true);
         this.addMixinRule("ai.raid", true);
@@ -55,6 +57,8 @@ public class LithiumConfig {
         this.addMixinRule("chunk.entity_class_groups", true);
         this.addMixinRule("chunk.no_locking", true);
         this.addMixinRule("chunk.palette", true);
+        this.addMixinRule("chunk.palette.dedup", false);
+        this.addMixinRule("chunk.palette.single_value", false);
         this.addMixinRule("chunk.serialization", true);
 
         this.addMixinRule("collections", true);
@@ -63,6 +67,7 @@ public class LithiumConfig {
         this.addMixinRule("entity", true);
         this.addMixinRule("entity.block_cache", true);
         this.addMixinRule("entity.collisions", true);
+        this.addMixinRule("entity.collisions.hard_collision_index", false);
         this.addMixinRule("entity.data_tracker", true);
         this.addMixinRule("entity.fast_suffocation_check", true);
         this.addMixinRule("entity.gravity_check_block_below", true);
@@ -87,6 +92,7 @@ public class LithiumConfig {
         this.addMixinRule("shapes", true);
         this.addMixinRule("shapes.blockstate_cache", true);
         this.addMixinRule("shapes.precompute_shape_arrays", true);
+        this.addMixinRule("shapes.shape_interning", false);
         this.addMixinRule("shapes.shape_merging", true);
         this.addMixinRule("shapes.specialized_shapes", true);
 
@@ -95,15 +101,32 @@ public class LithiumConfig {
         this.addMixinRule("world", true);
         this.addMixinRule("world.block_entity_ticking", false /* TODO: fix remaining issues */);
         this.addMixinRule("world.chunk_access", true);
+        this.addMixinRule("world.chunk_access.off_thread_cache", false);
         this.addMixinRule("world.chunk_inline_block_access", true);
+        this.addMixinRule("world.chunk_saving", false);
         this.addMixinRule("world.chunk_task_system", true);
+        this.addMixinRule("world.chunk_task_system.status_priorities", false);
         this.addMixinRule("world.chunk_tickets", true);
         this.addMixinRule("world.chunk_ticking", true);
         this.addMixinRule("world.explosions", true);
         this.addMixinRule("world.fast_island_noise", true);
+        this.addMixinRule("world.mapped_region_files", false);
         this.addMixinRule("world.mob_spawning", true);
         this.addMixinRule("world.player_chunk_tick", true);
+        this.addMixinRule("world.player_chunk_tick.packet_cache", false);
+        this.addMixinRule("world.player_chunk_tick.send_queue", false);
+        this.addMixinRule("world.pregen", false);
         this.addMixinRule("world.tick_scheduler", true);
+        this.addMixinRule("world.tick_scheduler.chunk_partitions", false);
+        this.addMixinRule("world.tick_scheduler.metrics", false);
+        this.addMixinRule("world.tick_scheduler.timing_wheel", false);
+
+        // Defines the numeric values which can be configured by the user, used by some of the rules above.
+        this.addValue("world.chunk_saving.max_chunks_per_tick", 32);
+        this.addValue("world.player_chunk_tick.packet_cache.max_chunks", 1024);
+        this.addValue("world.player_chunk_tick.send_queue.max_chunks_per_tick", 64);
+        this.addValue("world.player_chunk_tick.send_queue.max_bytes_per_tick", 4 * 1024 * 1024);
+        this.addValue("world.pregen.max_chunks_in_flight", 256);
     }
 
     /**
@@ -120,11 +143,47 @@ public class LithiumConfig {
         }
     }
 
+    /**
+     * Defines a numeric value which can be configured by users.
+     * @throws IllegalStateException If a value with that name already exists
+     * @param name The name of the value, without any prefix
+     * @param defaultValue The value which is used if the user doesn't configure one
+     */
+    private void addValue(String name, int defaultValue) {
+        if (this.values.putIfAbsent(getValueName(name), defaultValue) != null) {
+            throw new IllegalStateException("Value already defined: " + name);
+        }
+    }
+
+    /**
+     * Returns the configured value with the given name, or its default if the user has not configured one.
+     * @throws IllegalArgumentException If no value with that name has been defined
+     */
+    public int getValue(String name) {
+        Integer value = this.values.get(getValueName(name));
+
+        if (value == null) {
+            throw new IllegalArgumentException("No value defined with name: " + name);
+        }
+
+        return value;
+    }
+
     private void readProperties(Properties props) {
         for (Map.Entry<Object, Object> entry : props.entrySet()) {
             String key = (String) entry.getKey();
             String value = (String) entry.getValue();
 
+            if (this.values.containsKey(key)) {
+                try {
+                    this.values.put(key, Integer.parseInt(value.trim()));
+                } catch (NumberFormatException e) {
+                    LOGGER.warn("Invalid value '{}' encountered for configuration key '{}', ignoring", value, key);
+                }
+
+                continue;
+            }
+
             Option option = this.options.get(key);
 
             if (option == null) {
@@ -224,6 +283,17 @@ public class LithiumConfig {
         return rule;
     }
 
+    /**
+     * Returns true if the rule for the given mixin package and all of its parents are enabled. This is used by patches
+     * which are selected at runtime by our own code (such as alternative data structures) instead of by applying a
+     * Mixin.
+     */
+    public boolean isRuleEnabled(String mixinPackage) {
+        Option option = this.getEffectiveOptionForMixin(mixinPackage + ".");
+
+        return option != null && option.isEnabled();
+    }
+
     /**
      * Loads the configuration file from the specified location. If it does not exist, a new configuration file will be
      * created. The file on disk will then be updated to include any new options.
@@ -279,6 +349,10 @@ public class LithiumConfig {
         return "mixin." + name;
     }
 
+    private static String getValueName(String name) {
+        return "value." + name;
+    }
+
     public int getOptionCount() {
         return this.options.size();
     }
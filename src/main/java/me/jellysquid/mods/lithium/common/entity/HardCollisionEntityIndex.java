@@ -0,0 +1,76 @@
+package me.jellysquid.mods.lithium.common.entity;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2LongOpenHashMap;
+
+/**
+ * Indexes the chunk columns of a world which contain entities of {@link EntityClassGroup#BOAT_SHULKER_LIKE_COLLISION},
+ * i.e. entities which other entities collide with like with blocks. Such entities are rare, but every moving entity
+ * searches the chunks around it for them. With the index, chunks which don't contain any of them can be skipped
+ * without looking them up in the chunk manager.
+ *
+ * The index is updated whenever the world adds an entity to or removes it from the entity lists of a chunk, so it
+ * always matches the lists the world would search and can't change the result of a search.
+ *
+ * @param <E> The type of entities
+ */
+public class HardCollisionEntityIndex<E> {
+    private final Reference2LongOpenHashMap<E> columnByEntity = new Reference2LongOpenHashMap<>();
+    private final Long2IntOpenHashMap entityCountByColumn = new Long2IntOpenHashMap();
+
+    /**
+     * Called when an entity is added to the entity lists of the chunk at the given coordinates.
+     */
+    public void onEntityAdded(int chunkX, int chunkZ, E entity) {
+        // An entity is only in the lists of one chunk, so a previous entry is stale
+        this.onEntityRemoved(entity);
+
+        long column = getColumnKey(chunkX, chunkZ);
+
+        this.columnByEntity.put(entity, column);
+        this.entityCountByColumn.addTo(column, 1);
+    }
+
+    /**
+     * Called when an entity is removed from the entity lists of its chunk, or when its chunk is unloaded.
+     */
+    public void onEntityRemoved(E entity) {
+        if (!this.columnByEntity.containsKey(entity)) {
+            return;
+        }
+
+        long column = this.columnByEntity.removeLong(entity);
+
+        if (this.entityCountByColumn.addTo(column, -1) <= 1) {
+            this.entityCountByColumn.remove(column);
+        }
+    }
+
+    /**
+     * @return True if no chunk of the world contains any of the indexed entities
+     */
+    public boolean isEmpty() {
+        return this.entityCountByColumn.isEmpty();
+    }
+
+    /**
+     * @return True if the chunk at the given coordinates contains at least one of the indexed entities
+     */
+    public boolean hasEntities(int chunkX, int chunkZ) {
+        return this.entityCountByColumn.containsKey(getColumnKey(chunkX, chunkZ));
+    }
+
+    /**
+     * @return The number of indexed entities
+     */
+    public int size() {
+        return this.columnByEntity.size();
+    }
+
+    /**
+     * [VanillaCopy] ChunkPos#toLong(int, int)
+     */
+    private static long getColumnKey(int chunkX, int chunkZ) {
+        return (long) chunkX & 0xFFFFFFFFL | ((long) chunkZ & 0xFFFFFFFFL) << 32;
+    }
+}
@@ -0,0 +1,12 @@
+package me.jellysquid.mods.lithium.common.entity;
+
+import net.minecraft.entity.Entity;
+
+public interface HardCollisionEntityIndexProvider {
+    HardCollisionEntityIndex<Entity> getHardCollisionEntityIndex();
+
+    static HardCollisionEntityIndex<Entity> getHardCollisionEntityIndex(Object world) {
+        return world instanceof HardCollisionEntityIndexProvider ?
+                ((HardCollisionEntityIndexProvider) world).getHardCollisionEntityIndex() : null;
+    }
+}
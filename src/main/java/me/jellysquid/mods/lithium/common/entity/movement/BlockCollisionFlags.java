@@ -0,0 +1,30 @@
+package me.jellysquid.mods.lithium.common.entity.movement;
+
+import net.minecraft.block.BlockState;
+
+/**
+ * Collision properties of a {@link BlockState} which are computed once, so that chunk sections can keep track of how
+ * many of their blocks can be collided with.
+ */
+public interface BlockCollisionFlags {
+    /**
+     * Returns false if the block state never has a collision shape, regardless of its position and the entity which is
+     * colliding with it. Block states with dynamic bounds and those whose collision shape depends on the colliding
+     * entity (fluids, which striders walk on, and scaffolding) always return true.
+     */
+    boolean mayHaveCollisionShape();
+
+    /**
+     * Returns true if the collision shape of the block state is always a full cube, regardless of its position and the
+     * entity which is colliding with it.
+     */
+    boolean hasFullCubeCollisionShape();
+
+    static boolean mayHaveCollisionShape(BlockState state) {
+        return ((BlockCollisionFlags) state).mayHaveCollisionShape();
+    }
+
+    static boolean hasFullCubeCollisionShape(BlockState state) {
+        return ((BlockCollisionFlags) state).hasFullCubeCollisionShape();
+    }
+}
@@ -21,9 +21,15 @@ import static me.jellysquid.mods.lithium.common.entity.LithiumEntityCollisions.E
 /**
  * ChunkAwareBlockCollisionSweeper iterates over blocks in one chunk section at a time. Together with the chunk
  * section keeping track of the amount of oversized blocks inside the number of iterations can often be reduced.
+ * Sections which contain no blocks that may have a collision shape (e.g. only air, plants and torches) are skipped
+ * entirely, which avoids visiting every block in the large boxes swept by fast entities. Within the remaining sections,
+ * the {@link SectionCollisionMasks} of the section are used to skip the parts of it and the blocks which can't be
+ * collided with, and to skip computing the collision shape of full cubes.
  */
 public class ChunkAwareBlockCollisionSweeper {
     private static final boolean OVERSIZED_BLOCK_COUNTING_ENABLED = OversizedBlocksCounter.class.isAssignableFrom(ChunkSection.class);
+    private static final boolean COLLIDABLE_BLOCK_COUNTING_ENABLED = CollidableBlocksCounter.class.isAssignableFrom(ChunkSection.class);
+    private static final boolean COLLISION_MASKS_ENABLED = CollisionMasksProvider.class.isAssignableFrom(ChunkSection.class);
 
     private final BlockPos.Mutable pos = new BlockPos.Mutable();
 
@@ -60,6 +66,7 @@ public class ChunkAwareBlockCollisionSweeper {
     private boolean sectionOversizedBlocks;
     private Chunk cachedChunk;
     private ChunkSection cachedChunkSection;
+    private SectionCollisionMasks cachedCollisionMasks;
     private boolean needEntityCollisionCheck;
 
     public ChunkAwareBlockCollisionSweeper(CollisionView view, Entity entity, Box box, BlockCollisionPredicate collisionPredicate) {
@@ -117,8 +124,9 @@ public class ChunkAwareBlockCollisionSweeper {
                         this.cachedChunkSection = this.cachedChunk.getSectionArray()[this.chunkY];
                     }
                 }
-            //skip empty chunks and empty chunk sections
-            } while (this.cachedChunk == null || ChunkSection.isEmpty(this.cachedChunkSection));
+            //skip empty chunks and chunk sections which are empty or contain no blocks that can be collided with
+            } while (this.cachedChunk == null || ChunkSection.isEmpty(this.cachedChunkSection) ||
+                    !hasChunkSectionCollidableBlocks(this.cachedChunkSection));
 
             this.sectionOversizedBlocks = hasChunkSectionOversizedBlocks(this.cachedChunk, this.chunkY);
 
@@ -136,8 +144,12 @@ public class ChunkAwareBlockCollisionSweeper {
             this.cZ = this.cStartZ;
 
             this.cTotalSize = (this.cEndX - this.cStartX + 1) * (cEndY - cStartY + 1) * (this.cEndZ - this.cStartZ + 1);
-            //skip completely empty section iterations
-        } while(this.cTotalSize == 0);
+
+            this.cachedCollisionMasks = getCollisionMasks(this.cachedChunkSection);
+            //skip completely empty section iterations and iterations without any blocks that can be collided with
+        } while(this.cTotalSize == 0 || (this.cachedCollisionMasks != null &&
+                !this.cachedCollisionMasks.anyCollidable(this.cStartX & 15, cStartY & 15, this.cStartZ & 15,
+                        this.cEndX & 15, cEndY & 15, this.cEndZ & 15)));
         this.cIterated = 0;
 
         return true;
@@ -206,6 +218,13 @@ public class ChunkAwareBlockCollisionSweeper {
                 continue;
             }
 
+            final SectionCollisionMasks masks = this.cachedCollisionMasks;
+
+            //skip reading the block state of blocks which can't be collided with
+            if (masks != null && !masks.isCollidable(x & 15, y & 15, z & 15)) {
+                continue;
+            }
+
             final BlockState state = this.cachedChunkSection.getBlockState(x & 15, y & 15, z & 15);
 
             if (!canInteractWithBlock(state, edgesHit)) {
@@ -218,7 +237,9 @@ public class ChunkAwareBlockCollisionSweeper {
                 continue;
             }
 
-            VoxelShape collisionShape = state.getCollisionShape(this.view, this.pos, this.context);
+            //full cubes have the same collision shape everywhere and for every entity
+            VoxelShape collisionShape = masks != null && masks.isFullCube(x & 15, y & 15, z & 15) ?
+                    VoxelShapes.fullCube() : state.getCollisionShape(this.view, this.pos, this.context);
 
             if (collisionShape != VoxelShapes.empty()) {
                 VoxelShape collidedShape = getCollidedShape(this.box, this.shape, collisionShape, x, y, z);
@@ -286,7 +307,36 @@ public class ChunkAwareBlockCollisionSweeper {
         return true; //like vanilla, assume that a chunk section has oversized blocks, when the section mixin isn't loaded
     }
 
+    /**
+     * Checks the cached information whether the {@param section} contains any blocks which may have a collision shape.
+     * @return False if no block in the chunk section can be collided with.
+     */
+    private static boolean hasChunkSectionCollidableBlocks(ChunkSection section) {
+        if (COLLIDABLE_BLOCK_COUNTING_ENABLED) {
+            return ((CollidableBlocksCounter) section).hasCollidableBlocks();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the collision masks of the {@param section}, or null if chunk sections don't keep track of them.
+     */
+    private static SectionCollisionMasks getCollisionMasks(ChunkSection section) {
+        if (COLLISION_MASKS_ENABLED) {
+            return ((CollisionMasksProvider) section).getCollisionMasks();
+        }
+        return null;
+    }
+
     public interface OversizedBlocksCounter {
         boolean hasOversizedBlocks();
     }
+
+    public interface CollidableBlocksCounter {
+        boolean hasCollidableBlocks();
+    }
+
+    public interface CollisionMasksProvider {
+        SectionCollisionMasks getCollisionMasks();
+    }
 }
@@ -0,0 +1,86 @@
+package me.jellysquid.mods.lithium.common.entity.movement;
+
+/**
+ * Two bit masks over the 4096 blocks of a chunk section, marking the blocks which may have a collision shape and the
+ * blocks whose collision shape is always a full cube. Blocks are indexed in the same order as in
+ * {@link net.minecraft.world.chunk.PalettedContainer}, with x in the lowest 4 bits, then z, then y. Each long therefore
+ * holds four rows of 16 blocks along the x axis.
+ *
+ * Collision code can use these masks to skip blocks, or whole parts of a section, which can't be collided with without
+ * reading their block state, and to skip computing the collision shape of full cubes.
+ */
+public class SectionCollisionMasks {
+    private final long[] collidable = new long[64];
+    private final long[] fullCube = new long[64];
+
+    public void set(int x, int y, int z, boolean collidable, boolean fullCube) {
+        int index = getIndex(x, y, z);
+        int word = index >> 6;
+        long bit = 1L << index;
+
+        if (collidable) {
+            this.collidable[word] |= bit;
+        } else {
+            this.collidable[word] &= ~bit;
+        }
+
+        if (fullCube) {
+            this.fullCube[word] |= bit;
+        } else {
+            this.fullCube[word] &= ~bit;
+        }
+    }
+
+    public boolean isCollidable(int x, int y, int z) {
+        int index = getIndex(x, y, z);
+
+        return (this.collidable[index >> 6] & (1L << index)) != 0;
+    }
+
+    public boolean isFullCube(int x, int y, int z) {
+        int index = getIndex(x, y, z);
+
+        return (this.fullCube[index >> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns true if any block within the given inclusive range of section-relative coordinates may have a collision
+     * shape.
+     */
+    public boolean anyCollidable(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return anyInRange(this.collidable, minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    private static boolean anyInRange(long[] words, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        long rowMask = getRowMask(minX, maxX);
+
+        for (int y = minY; y <= maxY; y++) {
+            int z = minZ;
+
+            while (z <= maxZ) {
+                // Combine the rows of all z coordinates which are stored in the same long
+                long mask = 0L;
+                int word = (y << 2) | (z >> 2);
+
+                do {
+                    mask |= rowMask << ((z & 3) << 4);
+                    z++;
+                } while (z <= maxZ && (z & 3) != 0);
+
+                if ((words[word] & mask) != 0) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static long getRowMask(int minX, int maxX) {
+        return (0xFFFFL >>> (15 - (maxX - minX))) << minX;
+    }
+
+    private static int getIndex(int x, int y, int z) {
+        return (y << 8) | (z << 4) | x;
+    }
+}
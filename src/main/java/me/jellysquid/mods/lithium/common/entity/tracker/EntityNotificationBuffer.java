@@ -0,0 +1,104 @@
+package me.jellysquid.mods.lithium.common.entity.tracker;
+
+import it.unimi.dsi.fastutil.objects.Reference2ByteMap;
+import it.unimi.dsi.fastutil.objects.Reference2ByteOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+
+import java.util.ArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Collects the notifications about entities entering and leaving the range of listeners so that they can be delivered
+ * at once, with the notifications for each pair of listener and entity reduced to their net effect. An entity which
+ * crosses a chunk section boundary back and forth several times before the listener is read costs at most one
+ * notification instead of one for every crossing.
+ *
+ * For each pair, only the first and the last notification are stored (packed into a byte). Listeners only keep the
+ * set of entities within their range, so the last notification always describes the final state. If the first and
+ * last notification differ, the pair ends up in the same state it started in and nothing is delivered.
+ */
+public class EntityNotificationBuffer<L, E> {
+    private static final byte ENTERED = 1;
+    private static final byte LEFT = 2;
+
+    private Reference2ObjectOpenHashMap<L, Reference2ByteOpenHashMap<E>> pending = new Reference2ObjectOpenHashMap<>();
+
+    // The map which is swapped in while the pending notifications are being delivered
+    private Reference2ObjectOpenHashMap<L, Reference2ByteOpenHashMap<E>> flushing = new Reference2ObjectOpenHashMap<>();
+
+    // Cleared maps which can be re-used for the next listener, avoiding allocations in steady state
+    private final ArrayList<Reference2ByteOpenHashMap<E>> pool = new ArrayList<>();
+
+    public void onEntered(L listener, E entity) {
+        this.record(listener, entity, ENTERED);
+    }
+
+    public void onLeft(L listener, E entity) {
+        this.record(listener, entity, LEFT);
+    }
+
+    private void record(L listener, E entity, byte type) {
+        Reference2ByteOpenHashMap<E> entities = this.pending.get(listener);
+
+        if (entities == null) {
+            entities = this.pool.isEmpty() ? new Reference2ByteOpenHashMap<>() : this.pool.remove(this.pool.size() - 1);
+
+            this.pending.put(listener, entities);
+        }
+
+        byte state = entities.getByte(entity);
+
+        // The first notification is stored in the lower two bits, the last one in the upper two bits
+        if (state == 0) {
+            entities.put(entity, (byte) (type | (type << 2)));
+        } else {
+            entities.put(entity, (byte) ((state & 3) | (type << 2)));
+        }
+    }
+
+    public boolean isEmpty() {
+        return this.pending.isEmpty();
+    }
+
+    /**
+     * Delivers the net effect of all buffered notifications and clears the buffer. Notifications which are recorded
+     * while flushing are buffered for the next flush.
+     */
+    public void flush(BiConsumer<L, E> entered, BiConsumer<L, E> left) {
+        if (this.pending.isEmpty()) {
+            return;
+        }
+
+        Reference2ObjectOpenHashMap<L, Reference2ByteOpenHashMap<E>> entries = this.pending;
+
+        this.pending = this.flushing;
+        this.flushing = entries;
+
+        for (Reference2ObjectMap.Entry<L, Reference2ByteOpenHashMap<E>> entry : entries.reference2ObjectEntrySet()) {
+            L listener = entry.getKey();
+            Reference2ByteOpenHashMap<E> entities = entry.getValue();
+
+            for (Reference2ByteMap.Entry<E> notification : entities.reference2ByteEntrySet()) {
+                int first = notification.getByteValue() & 3;
+                int last = notification.getByteValue() >> 2;
+
+                if (first != last) {
+                    continue;
+                }
+
+                if (last == ENTERED) {
+                    entered.accept(listener, notification.getKey());
+                } else {
+                    left.accept(listener, notification.getKey());
+                }
+            }
+
+            entities.clear();
+
+            this.pool.add(entities);
+        }
+
+        entries.clear();
+    }
+}
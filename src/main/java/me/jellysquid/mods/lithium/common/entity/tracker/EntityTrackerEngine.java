@@ -8,25 +8,54 @@ import me.jellysquid.mods.lithium.common.entity.tracker.nearby.NearbyEntityListe
 import me.jellysquid.mods.lithium.common.entity.tracker.nearby.NearbyEntityListenerProvider;
 import net.minecraft.entity.Entity;
 import net.minecraft.util.math.BlockBox;
-import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
 import net.minecraft.util.math.ChunkSectionPos;
 import net.minecraft.util.math.MathHelper;
 
 import java.util.*;
+import java.util.function.Predicate;
 
 /**
  * Tracks the entities within a world and provides notifications to listeners when a tracked entity enters or leaves a
  * watched area. This removes the necessity to constantly poll the world for nearby entities each tick and generally
  * provides a sizable boost to performance.
+ *
+ * As the engine indexes all entities by their chunk section, it can also be queried for the entities within an area
+ * directly (see {@link #forEachEntityInBox(Box, Predicate)}), which avoids the list allocations of
+ * {@link net.minecraft.world.World#getOtherEntities(Entity, Box, Predicate)}.
  */
 public class EntityTrackerEngine {
     private final Long2ObjectOpenHashMap<TrackedEntityList> sections;
-    private final Reference2ReferenceOpenHashMap<NearbyEntityListener, List<TrackedEntityList>> sectionsByListener;
+    private final Reference2ReferenceOpenHashMap<NearbyEntityListener, Set<TrackedEntityList>> sectionsByListener;
 
+    // The entity which is currently being moved between chunk sections by the world, see #beginEntityMove(Entity)
+    private Entity movingEntity;
+    private boolean movingEntityRemoved;
+    private int movingFromX, movingFromY, movingFromZ;
+
+    // Null unless notifications are batched, see #flushNotifications()
+    private final EntityNotificationBuffer<NearbyEntityListener, Entity> notificationBuffer;
+    private final Set<NearbyEntityListener> pendingInitialListeners;
 
     public EntityTrackerEngine() {
+        this(false);
+    }
+
+    /**
+     * @param batchNotifications If true, the notifications for listeners are buffered until
+     *                           {@link #flushNotifications()} is called, rather than being delivered immediately
+     */
+    public EntityTrackerEngine(boolean batchNotifications) {
         this.sections = new Long2ObjectOpenHashMap<>();
         this.sectionsByListener = new Reference2ReferenceOpenHashMap<>();
+
+        if (batchNotifications) {
+            this.notificationBuffer = new EntityNotificationBuffer<>();
+            this.pendingInitialListeners = new ReferenceOpenHashSet<>();
+        } else {
+            this.notificationBuffer = null;
+            this.pendingInitialListeners = null;
+        }
     }
 
     /**
@@ -34,7 +63,14 @@ public class EntityTrackerEngine {
      */
     public void onEntityAdded(int x, int y, int z, Entity entity) {
         if (this.addEntity(x, y, z, entity)) {
-            if (entity instanceof NearbyEntityListenerProvider) {
+            if (entity == this.movingEntity && this.movingEntityRemoved) {
+                this.movingEntityRemoved = false;
+
+                if (entity instanceof NearbyEntityListenerProvider) {
+                    this.moveListener(this.movingFromX, this.movingFromY, this.movingFromZ, x, y, z,
+                            ((NearbyEntityListenerProvider) entity).getListener());
+                }
+            } else if (entity instanceof NearbyEntityListenerProvider) {
                 this.addListener(x, y, z, ((NearbyEntityListenerProvider) entity).getListener());
             }
         }
@@ -45,12 +81,46 @@ public class EntityTrackerEngine {
      */
     public void onEntityRemoved(int x, int y, int z, Entity entity) {
         if (this.removeEntity(x, y, z, entity)) {
-            if (entity instanceof NearbyEntityListenerProvider) {
+            if (entity == this.movingEntity) {
+                // The listener is kept until the entity is added again, so that it only needs to be moved
+                this.movingEntityRemoved = true;
+                this.movingFromX = x;
+                this.movingFromY = y;
+                this.movingFromZ = z;
+            } else if (entity instanceof NearbyEntityListenerProvider) {
                 this.removeListener(((NearbyEntityListenerProvider) entity).getListener());
             }
         }
     }
 
+    /**
+     * Called before the world updates the chunk section an entity is stored in. The world moves entities by removing
+     * them from their old chunk and adding them to their new chunk, so while the move is in progress, a removal followed
+     * by an addition of the entity is turned into {@link #moveListener(int, int, int, int, int, int, NearbyEntityListener)}
+     * instead of removing and re-adding the listener of the entity in its entirety.
+     */
+    public void beginEntityMove(Entity entity) {
+        this.movingEntity = entity;
+        this.movingEntityRemoved = false;
+    }
+
+    /**
+     * Called after the world has updated the chunk section an entity is stored in.
+     */
+    public void endEntityMove(Entity entity) {
+        if (this.movingEntity != entity) {
+            return;
+        }
+
+        // The entity was removed from its old chunk, but not added to a new one (i.e. it moved into an unloaded chunk)
+        if (this.movingEntityRemoved && entity instanceof NearbyEntityListenerProvider) {
+            this.removeListener(((NearbyEntityListenerProvider) entity).getListener());
+        }
+
+        this.movingEntity = null;
+        this.movingEntityRemoved = false;
+    }
+
     /**
      * Called when an entity moves between chunks within a world. This is less expensive to call than manually
      * removing/adding an entity from chunks each time it moves.
@@ -82,6 +152,100 @@ public class EntityTrackerEngine {
         }
     }
 
+    /**
+     * Visits every tracked entity whose bounding box intersects the given box, until the visitor returns false. As with
+     * vanilla, the chunk sections within 2 blocks of the box are searched, so that entities which stick out of their
+     * chunk section are found. The order in which entities are visited is undefined.
+     *
+     * Callers on hot paths should re-use their visitor instead of allocating a new lambda for every query.
+     *
+     * @param box the box the entities have to intersect
+     * @param visitor called for each entity, returns false to stop visiting further entities
+     * @return false if the visitor stopped the iteration, otherwise true
+     */
+    public boolean forEachEntityInBox(Box box, Predicate<Entity> visitor) {
+        // [VanillaCopy] World#getOtherEntities and WorldChunk#collectOtherEntities
+        int minX = MathHelper.floor((box.minX - 2.0D) / 16.0D);
+        int maxX = MathHelper.floor((box.maxX + 2.0D) / 16.0D);
+        int minY = MathHelper.clamp(MathHelper.floor((box.minY - 2.0D) / 16.0D), 0, 15);
+        int maxY = MathHelper.clamp(MathHelper.floor((box.maxY + 2.0D) / 16.0D), 0, 15);
+        int minZ = MathHelper.floor((box.minZ - 2.0D) / 16.0D);
+        int maxZ = MathHelper.floor((box.maxZ + 2.0D) / 16.0D);
+
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int y = minY; y <= maxY; y++) {
+                    TrackedEntityList list = this.getList(x, y, z);
+
+                    if (list == null || list.entities.isEmpty()) {
+                        continue;
+                    }
+
+                    for (Entity entity : list.entities) {
+                        if (!entity.removed && entity.getBoundingBox().intersects(box) && !visitor.test(entity)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Delivers all buffered notifications to their listeners, with the notifications of each listener and entity
+     * reduced to their net effect. Must be called before a listener is read, i.e. before an AI goal queries its
+     * {@link me.jellysquid.mods.lithium.common.entity.tracker.nearby.NearbyEntityTracker}. Does nothing if
+     * notifications are not batched.
+     */
+    public void flushNotifications() {
+        if (this.notificationBuffer == null) {
+            return;
+        }
+
+        this.notificationBuffer.flush(NearbyEntityListener::onEntityEnteredTrackedSubchunk,
+                NearbyEntityListener::onEntityLeftTrackedSubchunk);
+
+        if (!this.pendingInitialListeners.isEmpty()) {
+            NearbyEntityListener[] listeners = this.pendingInitialListeners.toArray(new NearbyEntityListener[0]);
+            this.pendingInitialListeners.clear();
+
+            for (NearbyEntityListener listener : listeners) {
+                listener.onInitialEntitiesReceived();
+            }
+        }
+    }
+
+    // Exact position listeners react to every notification immediately, so they never take part in batching
+    private boolean isBatched(NearbyEntityListener listener) {
+        return this.notificationBuffer != null && !(listener instanceof ExactPositionListener);
+    }
+
+    private void notifyEntered(NearbyEntityListener listener, Entity entity) {
+        if (this.isBatched(listener)) {
+            this.notificationBuffer.onEntered(listener, entity);
+        } else {
+            listener.onEntityEnteredTrackedSubchunk(entity);
+        }
+    }
+
+    private void notifyLeft(NearbyEntityListener listener, Entity entity) {
+        if (this.isBatched(listener)) {
+            this.notificationBuffer.onLeft(listener, entity);
+        } else {
+            listener.onEntityLeftTrackedSubchunk(entity);
+        }
+    }
+
+    private void notifyInitialEntitiesReceived(NearbyEntityListener listener) {
+        if (this.isBatched(listener)) {
+            this.pendingInitialListeners.add(listener);
+        } else {
+            listener.onInitialEntitiesReceived();
+        }
+    }
+
     private boolean addEntity(int x, int y, int z, Entity entity) {
         return this.getOrCreateList(x, y, z).addTrackedEntity(entity);
     }
@@ -107,7 +271,7 @@ public class EntityTrackerEngine {
      * @param listener the listener to be added
      */
     private void addListener(int x1, int y1, int z1, int x2, int y2, int z2, NearbyEntityListener listener){
-        List<TrackedEntityList> all = new ArrayList<>((x2-x1)*(y2-y1)*(z2-z1));
+        Set<TrackedEntityList> all = new ReferenceOpenHashSet<>((x2-x1+1)*(y2-y1+1)*(z2-z1+1));
 
         for (int a = x1; a <= x2; a++) {
             for (int b = y1; b <= y2; b++) {
@@ -120,7 +284,7 @@ public class EntityTrackerEngine {
             }
         }
         this.sectionsByListener.put(listener, all);
-        listener.onInitialEntitiesReceived();
+        this.notifyInitialEntitiesReceived(listener);
     }
 
     /**
@@ -133,7 +297,7 @@ public class EntityTrackerEngine {
     public void addListener(int[] x, int[] y, int[] z, NearbyEntityListener listener) {
         assert x.length == y.length && y.length == z.length;
 
-        List<TrackedEntityList> all = new ArrayList<>(x.length);
+        Set<TrackedEntityList> all = new ReferenceOpenHashSet<>(x.length);
         for (int i = 0; i < x.length; i++) {
             TrackedEntityList list = this.getOrCreateList(x[i], y[i], z[i]);
             list.addListener(listener);
@@ -141,7 +305,7 @@ public class EntityTrackerEngine {
             all.add(list);
         }
         this.sectionsByListener.put(listener, all);
-        listener.onInitialEntitiesReceived();
+        this.notifyInitialEntitiesReceived(listener);
     }
 
     /**
@@ -166,7 +330,7 @@ public class EntityTrackerEngine {
         int yMin = Math.max(0, y - r);
         int yMax = Math.min(y + r, 15);
 
-        List<TrackedEntityList> all = new ArrayList<>((2*r+1) * (yMax - yMin +1) * (2*r+1));
+        Set<TrackedEntityList> all = new ReferenceOpenHashSet<>((2*r+1) * (yMax - yMin +1) * (2*r+1));
 
         for (int x2 = x - r; x2 <= x + r; x2++) {
             for (int y2 = yMin; y2 <= yMax; y2++) {
@@ -179,7 +343,7 @@ public class EntityTrackerEngine {
             }
         }
         this.sectionsByListener.put(listener, all);
-        listener.onInitialEntitiesReceived();
+        this.notifyInitialEntitiesReceived(listener);
     }
 
     public void removeListener(NearbyEntityListener listener) {
@@ -189,7 +353,7 @@ public class EntityTrackerEngine {
             return;
         }
 
-        List<TrackedEntityList> all = this.sectionsByListener.remove(listener);
+        Set<TrackedEntityList> all = this.sectionsByListener.remove(listener);
 
         if (all != null) {
             for (TrackedEntityList list : all) {
@@ -200,7 +364,12 @@ public class EntityTrackerEngine {
         }
     }
 
-    // Faster implementation which avoids removing from/adding to every list twice on an entity move event
+    /**
+     * Moves a listener from the cube of chunk sections around one position to the cube around another. Instead of
+     * removing the listener from every chunk section of its old cube and adding it to every chunk section of its new
+     * cube, only the chunk sections which are in one of the cubes but not in the other are updated. These form at most
+     * six slabs, so the cost of a move is proportional to the change of the boundary rather than the cube's volume.
+     */
     private void moveListener(int aX, int aY, int aZ, int bX, int bY, int bZ, NearbyEntityListener listener) {
         int radius = listener.getChunkRange();
 
@@ -208,29 +377,64 @@ public class EntityTrackerEngine {
             return;
         }
 
-        BlockBox before = new BlockBox(aX - radius, aY - radius, aZ - radius, aX + radius, aY + radius, aZ + radius);
-        BlockBox after = new BlockBox(aX - radius, aY - radius, aZ - radius, bX + radius, bY + radius, bZ + radius);
+        Set<TrackedEntityList> all = this.sectionsByListener.get(listener);
 
-        BlockBox merged = new BlockBox(before);
-        merged.encompass(after);
+        if (all == null) {
+            throw new IllegalArgumentException("Entity listener not tracked:" + listener.toString());
+        }
 
-        BlockPos.Mutable pos = new BlockPos.Mutable();
+        BlockBox before = getListenerBox(aX, aY, aZ, radius);
+        BlockBox after = getListenerBox(bX, bY, bZ, radius);
 
-        for (int x = merged.minX; x <= merged.maxX; x++) {
-            for (int y = merged.minY; y <= merged.maxY; y++) {
-                for (int z = merged.minZ; z <= merged.maxZ; z++) {
-                    pos.set(x, y, z);
+        // The listener has left the chunk sections which are only in the old cube
+        this.updateListenerSections(before, after, listener, all, false);
 
-                    boolean leaving = before.contains(pos);
-                    boolean entering = after.contains(pos);
+        // The listener has entered the chunk sections which are only in the new cube
+        this.updateListenerSections(after, before, listener, all, true);
 
-                    // Nothing to change
-                    if (leaving == entering) {
-                        continue;
-                    }
+        this.notifyInitialEntitiesReceived(listener);
+    }
+
+    /**
+     * Adds the listener to or removes it from every chunk section which is within {@param from} but not within
+     * {@param exclude}. The difference of two boxes is split into up to six slabs: two along the x-axis which span the
+     * whole box, two along the y-axis within the overlapping x-range, and two along the z-axis within the overlapping
+     * x and y-ranges.
+     */
+    private void updateListenerSections(BlockBox from, BlockBox exclude, NearbyEntityListener listener,
+                                        Set<TrackedEntityList> all, boolean entering) {
+        if (!from.intersects(exclude)) {
+            this.updateListenerSections(from.minX, from.minY, from.minZ, from.maxX, from.maxY, from.maxZ, listener, all, entering);
+
+            return;
+        }
+
+        int minX = Math.max(from.minX, exclude.minX);
+        int maxX = Math.min(from.maxX, exclude.maxX);
+        int minY = Math.max(from.minY, exclude.minY);
+        int maxY = Math.min(from.maxY, exclude.maxY);
 
-                    if (leaving) {
-                        // The listener has left the chunk
+        this.updateListenerSections(from.minX, from.minY, from.minZ, minX - 1, from.maxY, from.maxZ, listener, all, entering);
+        this.updateListenerSections(maxX + 1, from.minY, from.minZ, from.maxX, from.maxY, from.maxZ, listener, all, entering);
+
+        this.updateListenerSections(minX, from.minY, from.minZ, maxX, minY - 1, from.maxZ, listener, all, entering);
+        this.updateListenerSections(minX, maxY + 1, from.minZ, maxX, from.maxY, from.maxZ, listener, all, entering);
+
+        this.updateListenerSections(minX, minY, from.minZ, maxX, maxY, exclude.minZ - 1, listener, all, entering);
+        this.updateListenerSections(minX, minY, exclude.maxZ + 1, maxX, maxY, from.maxZ, listener, all, entering);
+    }
+
+    private void updateListenerSections(int x1, int y1, int z1, int x2, int y2, int z2, NearbyEntityListener listener,
+                                        Set<TrackedEntityList> all, boolean entering) {
+        for (int x = x1; x <= x2; x++) {
+            for (int y = y1; y <= y2; y++) {
+                for (int z = z1; z <= z2; z++) {
+                    if (entering) {
+                        TrackedEntityList list = this.getOrCreateList(x, y, z);
+                        list.addListener(listener);
+
+                        all.add(list);
+                    } else {
                         TrackedEntityList list = this.getList(x, y, z);
 
                         if (list == null) {
@@ -238,15 +442,17 @@ public class EntityTrackerEngine {
                         }
 
                         list.removeListener(listener);
-                    } else {
-                        // The listener has entered the chunk
-                        TrackedEntityList list = this.getOrCreateList(x, y, z);
-                        list.addListener(listener);
+
+                        all.remove(list);
                     }
                 }
             }
         }
-        listener.onInitialEntitiesReceived();
+    }
+
+    private static BlockBox getListenerBox(int x, int y, int z, int radius) {
+        return new BlockBox(x - radius, Math.max(0, y - radius), z - radius,
+                x + radius, Math.min(y + radius, 15), z + radius);
     }
 
     private TrackedEntityList getOrCreateList(int x, int y, int z) {
@@ -279,7 +485,7 @@ public class EntityTrackerEngine {
 
         public void addListener(NearbyEntityListener listener) {
             for (Entity entity : this.entities) {
-                listener.onEntityEnteredTrackedSubchunk(entity);
+                EntityTrackerEngine.this.notifyEntered(listener, entity);
             }
 
             this.listeners.add(listener);
@@ -291,7 +497,7 @@ public class EntityTrackerEngine {
         public void removeListener(NearbyEntityListener listener) {
             if (this.listeners.remove(listener)) {
                 for (Entity entity : this.entities) {
-                    listener.onEntityLeftTrackedSubchunk(entity);
+                    EntityTrackerEngine.this.notifyLeft(listener, entity);
                 }
                 if (listener instanceof ExactPositionListener) {
                     this.exactPositionListeners.remove(listener);
@@ -310,7 +516,7 @@ public class EntityTrackerEngine {
 
         public boolean addTrackedEntity(Entity entity) {
             for (NearbyEntityListener listener : this.listeners) {
-                listener.onEntityEnteredTrackedSubchunk(entity);
+                EntityTrackerEngine.this.notifyEntered(listener, entity);
             }
 
             return this.entities.add(entity);
@@ -321,7 +527,7 @@ public class EntityTrackerEngine {
 
             if (ret) {
                 for (NearbyEntityListener listener : this.listeners) {
-                    listener.onEntityLeftTrackedSubchunk(entity);
+                    EntityTrackerEngine.this.notifyLeft(listener, entity);
                 }
 
                 this.checkEmpty();
@@ -338,7 +544,7 @@ public class EntityTrackerEngine {
     }
 
 
-    private static String errorMessageAlreadyListening(Reference2ReferenceOpenHashMap<NearbyEntityListener, List<TrackedEntityList>> sectionsByEntity, NearbyEntityListener listener, ChunkSectionPos newLocation) {
+    private static String errorMessageAlreadyListening(Reference2ReferenceOpenHashMap<NearbyEntityListener, Set<TrackedEntityList>> sectionsByEntity, NearbyEntityListener listener, ChunkSectionPos newLocation) {
         StringBuilder builder = new StringBuilder();
         builder.append("Adding Entity listener a second time: ").append(listener.toString());
         builder.append("\n");
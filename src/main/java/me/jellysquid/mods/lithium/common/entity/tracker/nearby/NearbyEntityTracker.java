@@ -1,7 +1,9 @@
 package me.jellysquid.mods.lithium.common.entity.tracker.nearby;
 
-import net.minecraft.entity.Entity;
 import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import me.jellysquid.mods.lithium.common.entity.tracker.EntityTrackerEngine;
+import me.jellysquid.mods.lithium.common.entity.tracker.EntityTrackerEngineProvider;
+import net.minecraft.entity.Entity;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.ai.TargetPredicate;
 import net.minecraft.nbt.CompoundTag;
@@ -64,6 +66,13 @@ public class NearbyEntityTracker<T extends LivingEntity> implements NearbyEntity
      * @return the closest Entity that meets all requirements (distance, box intersection, predicate, type T)
      */
     public T getClosestEntity(Box box, TargetPredicate targetPredicate) {
+        EntityTrackerEngine tracker = EntityTrackerEngineProvider.getEntityTracker(this.self.world);
+
+        // Deliver the notifications of entities which entered or left the range since the last read
+        if (tracker != null) {
+            tracker.flushNotifications();
+        }
+
         double x = this.self.getX();
         double y = this.self.getY();
         double z = this.self.getZ();
@@ -0,0 +1,244 @@
+package me.jellysquid.mods.lithium.common.shapes;
+
+/**
+ * A flat representation of a shape which consists of multiple boxes, such as that of stairs, walls or hoppers. The
+ * boxes are stored as ranges of voxel indices in one array per axis and corner, and the point positions of the voxel
+ * grid are stored in one array per axis. This allows collisions to be resolved with a single loop over the boxes
+ * instead of scanning the voxels of the shape one by one.
+ * <p>
+ * Vanilla stops colliding entities at every point of the voxel grid which lies inside a box of the shape, not only at
+ * the faces of the boxes. The point positions are kept for this reason, as the results would otherwise differ for
+ * entities which are already inside a shape.
+ * <p>
+ * Axes are identified by their ordinal (x = 0, y = 1, z = 2). Offset shapes share the arrays of the shape they were
+ * created from, and add their offset to the point positions in the same way as vanilla's offset point lists do.
+ */
+public final class CompiledShapeBoxes {
+    private static final double POSITIVE_EPSILON = +1.0E-7D;
+    private static final double NEGATIVE_EPSILON = -1.0E-7D;
+
+    // The point positions of the voxel grid, by axis
+    private final double[][] points;
+
+    // The first voxel index and the last voxel index (exclusive) of every box, by axis
+    private final int[][] boxMin;
+    private final int[][] boxMax;
+
+    private final int boxCount;
+
+    private final double[] offset;
+
+    private CompiledShapeBoxes(double[][] points, int[][] boxMin, int[][] boxMax, int boxCount, double[] offset) {
+        this.points = points;
+        this.boxMin = boxMin;
+        this.boxMax = boxMax;
+        this.boxCount = boxCount;
+        this.offset = offset;
+    }
+
+    /**
+     * @param pointsX The point positions of the voxel grid on the x-axis
+     * @param pointsY The point positions of the voxel grid on the y-axis
+     * @param pointsZ The point positions of the voxel grid on the z-axis
+     * @param boxes   The voxel index ranges of the boxes, stored as minX, minY, minZ, maxX, maxY, maxZ (exclusive) for
+     *                each box. The boxes must not overlap and together contain exactly the filled voxels of the shape.
+     * @param boxCount The number of boxes
+     */
+    public static CompiledShapeBoxes compile(double[] pointsX, double[] pointsY, double[] pointsZ, int[] boxes, int boxCount) {
+        int[][] boxMin = new int[3][boxCount];
+        int[][] boxMax = new int[3][boxCount];
+
+        for (int i = 0; i < boxCount; i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                boxMin[axis][i] = boxes[i * 6 + axis];
+                boxMax[axis][i] = boxes[i * 6 + 3 + axis];
+            }
+        }
+
+        return new CompiledShapeBoxes(new double[][] { pointsX, pointsY, pointsZ }, boxMin, boxMax, boxCount, new double[3]);
+    }
+
+    /**
+     * @return A view of these boxes translated by the given offset, which is added to the current offset
+     */
+    public CompiledShapeBoxes offset(double x, double y, double z) {
+        return new CompiledShapeBoxes(this.points, this.boxMin, this.boxMax, this.boxCount,
+                new double[] { this.offset[0] + x, this.offset[1] + y, this.offset[2] + z });
+    }
+
+    /**
+     * [VanillaCopy] VoxelShape#calculateMaxDistance(AxisCycleDirection, Box, double) after the shape's axes have been
+     * cycled, as implemented by {@link me.jellysquid.mods.lithium.mixin.shapes.specialized_shapes.VoxelShapeMixin}.
+     * Instead of scanning the voxels, the voxel which vanilla would find first is determined by taking the nearest
+     * voxel of each box in the direction of movement which lies within the box's range on the other axes.
+     *
+     * @param axisX   The axis along which the box is moving
+     * @param axisY   The first of the other axes
+     * @param axisZ   The second of the other axes
+     * @param minX    The minimum coordinate of the moving box on {@param axisX}
+     * @param maxX    The maximum coordinate of the moving box on {@param axisX}
+     * @param maxDist The distance the box is trying to move
+     * @return The distance the box can move before colliding with this shape
+     */
+    public double calculateMaxDistance(int axisX, int axisY, int axisZ, double minX, double maxX, double minY,
+                                       double maxY, double minZ, double maxZ, double maxDist) {
+        if (this.boxCount == 0) {
+            return maxDist;
+        }
+
+        if (Math.abs(maxDist) < POSITIVE_EPSILON) {
+            return 0.0D;
+        }
+
+        double[] pointsX = this.points[axisX];
+        double offsetX = this.offset[axisX];
+
+        int sizeX = pointsX.length - 1;
+
+        if (maxDist > 0.0D) {
+            int first = this.getCoordIndex(axisX, maxX - POSITIVE_EPSILON) + 1;
+
+            if (first >= sizeX) {
+                return maxDist;
+            }
+
+            int found = this.findNearestVoxel(axisX, axisY, axisZ, first, minY, maxY, minZ, maxZ, true);
+
+            if (found != Integer.MAX_VALUE) {
+                double dist = (pointsX[found] + offsetX) - maxX;
+
+                if (dist >= NEGATIVE_EPSILON) {
+                    maxDist = Math.min(maxDist, dist);
+                }
+            }
+        } else if (maxDist < 0.0D) {
+            int last = this.getCoordIndex(axisX, minX + POSITIVE_EPSILON) - 1;
+
+            if (last < 0) {
+                return maxDist;
+            }
+
+            int found = this.findNearestVoxel(axisX, axisY, axisZ, last, minY, maxY, minZ, maxZ, false);
+
+            if (found != Integer.MIN_VALUE) {
+                double dist = (pointsX[found + 1] + offsetX) - minX;
+
+                if (dist <= POSITIVE_EPSILON) {
+                    maxDist = Math.max(maxDist, dist);
+                }
+            }
+        }
+
+        return maxDist;
+    }
+
+    /**
+     * Finds the voxel index on {@param axisX} of the nearest filled voxel at or beyond {@param start} in the direction
+     * of movement, considering only voxels which vanilla would visit on the other axes.
+     *
+     * @return The voxel index, or {@link Integer#MAX_VALUE} (positive direction) or {@link Integer#MIN_VALUE}
+     * (negative direction) if no such voxel exists
+     */
+    private int findNearestVoxel(int axisX, int axisY, int axisZ, int start, double minY, double maxY, double minZ,
+                                 double maxZ, boolean positive) {
+        // [VanillaCopy] The voxel ranges which are visited on the other axes
+        int fromY = Math.max(0, this.getCoordIndex(axisY, minY + POSITIVE_EPSILON));
+        int toY = Math.min(this.points[axisY].length - 1, this.getCoordIndex(axisY, maxY - POSITIVE_EPSILON) + 1);
+        int fromZ = Math.max(0, this.getCoordIndex(axisZ, minZ + POSITIVE_EPSILON));
+        int toZ = Math.min(this.points[axisZ].length - 1, this.getCoordIndex(axisZ, maxZ - POSITIVE_EPSILON) + 1);
+
+        if (fromY >= toY || fromZ >= toZ) {
+            return positive ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+        }
+
+        int[] boxMinX = this.boxMin[axisX], boxMaxX = this.boxMax[axisX];
+        int[] boxMinY = this.boxMin[axisY], boxMaxY = this.boxMax[axisY];
+        int[] boxMinZ = this.boxMin[axisZ], boxMaxZ = this.boxMax[axisZ];
+
+        int count = this.boxCount;
+
+        if (positive) {
+            int nearest = Integer.MAX_VALUE;
+
+            for (int i = 0; i < count; i++) {
+                int x = Math.max(boxMinX[i], start);
+
+                if (x < boxMaxX[i] && x < nearest &&
+                        boxMinY[i] < toY && boxMaxY[i] > fromY && boxMinZ[i] < toZ && boxMaxZ[i] > fromZ) {
+                    nearest = x;
+                }
+            }
+
+            return nearest;
+        } else {
+            int nearest = Integer.MIN_VALUE;
+
+            for (int i = 0; i < count; i++) {
+                int x = Math.min(boxMaxX[i] - 1, start);
+
+                if (x >= boxMinX[i] && x > nearest &&
+                        boxMinY[i] < toY && boxMaxY[i] > fromY && boxMinZ[i] < toZ && boxMaxZ[i] > fromZ) {
+                    nearest = x;
+                }
+            }
+
+            return nearest;
+        }
+    }
+
+    /**
+     * [VanillaCopy] VoxelShape#getCoordIndex(Direction.Axis, double), as implemented by
+     * {@link me.jellysquid.mods.lithium.mixin.shapes.specialized_shapes.VoxelShapeMixin}
+     */
+    private int getCoordIndex(int axis, double coord) {
+        double[] points = this.points[axis];
+        double offset = this.offset[axis];
+
+        int size = points.length - 1;
+
+        int start = 0;
+        int end = size + 1;
+
+        while (end > 0) {
+            int middle = end / 2;
+            int idx = start + middle;
+
+            if (idx >= 0 && (idx > size || coord < points[idx] + offset)) {
+                end = middle;
+            } else {
+                start = idx + 1;
+                end -= middle + 1;
+            }
+        }
+
+        return start - 1;
+    }
+
+    /**
+     * Checks whether the given box intersects with any box of this shape translated by the given coordinates, in the
+     * same way as {@link VoxelShapeSimpleCube#intersects(net.minecraft.util.math.Box, double, double, double)}.
+     */
+    public boolean intersects(double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                              double x, double y, double z) {
+        double[] pointsX = this.points[0], pointsY = this.points[1], pointsZ = this.points[2];
+        double offsetX = this.offset[0], offsetY = this.offset[1], offsetZ = this.offset[2];
+
+        int[] boxMinX = this.boxMin[0], boxMaxX = this.boxMax[0];
+        int[] boxMinY = this.boxMin[1], boxMaxY = this.boxMax[1];
+        int[] boxMinZ = this.boxMin[2], boxMaxZ = this.boxMax[2];
+
+        for (int i = 0; i < this.boxCount; i++) {
+            if ((minX < ((pointsX[boxMaxX[i]] + offsetX) + x)) && (maxX > ((pointsX[boxMinX[i]] + offsetX) + x)) &&
+                    (minY < ((pointsY[boxMaxY[i]] + offsetY) + y)) && (maxY > ((pointsY[boxMinY[i]] + offsetY) + y)) &&
+                    (minZ < ((pointsZ[boxMaxZ[i]] + offsetZ) + z)) && (maxZ > ((pointsZ[boxMinZ[i]] + offsetZ) + z))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public int getBoxCount() {
+        return this.boxCount;
+    }
+}
@@ -0,0 +1,191 @@
+package me.jellysquid.mods.lithium.common.shapes;
+
+import it.unimi.dsi.fastutil.doubles.DoubleList;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.shape.ArrayVoxelShape;
+import net.minecraft.util.shape.SimpleVoxelShape;
+import net.minecraft.util.shape.VoxelSet;
+import net.minecraft.util.shape.VoxelShape;
+import net.minecraft.util.shape.VoxelShapes;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A shape cached by block states, shared between all block states with a shape of the same geometry. Many blocks
+ * define the same shapes independently of each other, which would otherwise all be kept in memory, and could not share
+ * the results of caches which are keyed by the identity of a shape (such as the full cube cache of
+ * {@link net.minecraft.block.Block#isShapeFullCube}).
+ *
+ * Two shapes are only considered the same if they are of the same type and have the same point positions and voxels,
+ * as shapes with the same boxes but a different voxel grid collide differently with entities inside of them. Shapes
+ * of other types (such as those added by mods) are never shared, as they might have additional state. Shared shapes
+ * are only referenced weakly by the table, and are removed once no block state uses them anymore.
+ */
+public class SharedVoxelShape {
+    private static final Map<SharedVoxelShape, WeakReference<SharedVoxelShape>> TABLE = new WeakHashMap<>();
+
+    private final VoxelShape shape;
+    private final Class<?> type;
+    private final double[] coords;
+    private final long[] data;
+    private final int hash;
+
+    private SharedVoxelShape(VoxelShape shape, double[] coords, long[] data) {
+        this.shape = shape;
+        this.type = shape.getClass();
+        this.coords = coords;
+        this.data = data;
+        this.hash = 31 * (31 * this.type.hashCode() + Arrays.hashCode(coords)) + Arrays.hashCode(data);
+    }
+
+    /**
+     * Returns the shared shape with the same geometry as the given shape, which is created from it if no block state
+     * uses a shape with the same geometry yet. Returns null if the given shape can't be shared.
+     */
+    public static SharedVoxelShape intern(VoxelShape shape) {
+        // [VanillaCopy] VoxelShapes#cuboid(Box) returns the shared full cube shape for boxes of exactly one block
+        if (isFullCube(shape)) {
+            shape = VoxelShapes.fullCube();
+        }
+
+        SharedVoxelShape probe = create(shape);
+
+        if (probe == null) {
+            return null;
+        }
+
+        synchronized (TABLE) {
+            WeakReference<SharedVoxelShape> ref = TABLE.get(probe);
+            SharedVoxelShape existing = ref != null ? ref.get() : null;
+
+            if (existing != null) {
+                return existing;
+            }
+
+            TABLE.put(probe, new WeakReference<>(probe));
+
+            return probe;
+        }
+    }
+
+    /**
+     * Returns the number of distinct shapes which are currently shared.
+     */
+    public static int getSharedCount() {
+        synchronized (TABLE) {
+            return TABLE.size();
+        }
+    }
+
+    public VoxelShape getShape() {
+        return this.shape;
+    }
+
+    private static boolean isFullCube(VoxelShape shape) {
+        if (shape.getClass() != VoxelShapeSimpleCube.class) {
+            return false;
+        }
+
+        VoxelShapeSimpleCube cube = (VoxelShapeSimpleCube) shape;
+
+        return cube.minX == 0.0D && cube.minY == 0.0D && cube.minZ == 0.0D &&
+                cube.maxX == 1.0D && cube.maxY == 1.0D && cube.maxZ == 1.0D;
+    }
+
+    private static SharedVoxelShape create(VoxelShape shape) {
+        Class<?> type = shape.getClass();
+
+        if (type == VoxelShapeSimpleCube.class) {
+            VoxelShapeSimpleCube cube = (VoxelShapeSimpleCube) shape;
+
+            return new SharedVoxelShape(shape, new double[] { cube.minX, cube.minY, cube.minZ, cube.maxX, cube.maxY,
+                    cube.maxZ }, new long[0]);
+        }
+
+        if (type == VoxelShapeAlignedCuboid.class) {
+            VoxelShapeAlignedCuboid cuboid = (VoxelShapeAlignedCuboid) shape;
+
+            return new SharedVoxelShape(shape, new double[] { cuboid.minX, cuboid.minY, cuboid.minZ, cuboid.maxX,
+                    cuboid.maxY, cuboid.maxZ }, new long[] { cuboid.xSegments, cuboid.ySegments, cuboid.zSegments });
+        }
+
+        // The voxels can only be accessed if the shape specialization mixins are enabled
+        if (!(shape instanceof VoxelShapeAccess)) {
+            return null;
+        }
+
+        if (type == VoxelShapeMultiCuboid.class || type == ArrayVoxelShape.class || type == SimpleVoxelShape.class) {
+            return createFromVoxels(shape, (VoxelShapeAccess) shape);
+        }
+
+        return null;
+    }
+
+    /**
+     * Compares voxel-based shapes by the point positions on each axis, followed by one bit for every voxel.
+     */
+    private static SharedVoxelShape createFromVoxels(VoxelShape shape, VoxelShapeAccess access) {
+        VoxelSet voxels = access.getVoxelSet();
+
+        int sizeX = voxels.getXSize();
+        int sizeY = voxels.getYSize();
+        int sizeZ = voxels.getZSize();
+
+        double[] points = new double[sizeX + sizeY + sizeZ + 3];
+        int idx = 0;
+
+        for (Direction.Axis axis : Direction.Axis.values()) {
+            DoubleList list = access.getPointPositionList(axis);
+
+            for (int i = 0; i < list.size(); i++) {
+                points[idx++] = list.getDouble(i);
+            }
+        }
+
+        // The sizes are stored in front of the voxels, as the point positions don't tell where one axis ends
+        long[] bits = new long[3 + ((sizeX * sizeY * sizeZ + 63) >> 6)];
+        bits[0] = sizeX;
+        bits[1] = sizeY;
+        bits[2] = sizeZ;
+
+        int bit = 0;
+
+        for (int x = 0; x < sizeX; x++) {
+            for (int y = 0; y < sizeY; y++) {
+                for (int z = 0; z < sizeZ; z++) {
+                    if (voxels.contains(x, y, z)) {
+                        bits[3 + (bit >> 6)] |= 1L << (bit & 63);
+                    }
+
+                    bit++;
+                }
+            }
+        }
+
+        return new SharedVoxelShape(shape, points, bits);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (!(obj instanceof SharedVoxelShape)) {
+            return false;
+        }
+
+        SharedVoxelShape other = (SharedVoxelShape) obj;
+
+        return this.hash == other.hash && this.type == other.type && Arrays.equals(this.coords, other.coords) &&
+                Arrays.equals(this.data, other.data);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+}
@@ -0,0 +1,28 @@
+package me.jellysquid.mods.lithium.common.shapes;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.LiteralText;
+
+/**
+ * Adds the {@code /lithium shapes} command, which shows how many distinct block shapes are currently shared by
+ * {@link SharedVoxelShape}.
+ */
+public class SharedVoxelShapeCommand {
+    public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("lithium")
+                .requires(source -> source.hasPermissionLevel(4))
+                .then(CommandManager.literal("shapes")
+                        .executes(SharedVoxelShapeCommand::report)));
+    }
+
+    private static int report(CommandContext<ServerCommandSource> ctx) {
+        int count = SharedVoxelShape.getSharedCount();
+
+        ctx.getSource().sendFeedback(new LiteralText(String.format("Shared block shapes: %d", count)), false);
+
+        return count;
+    }
+}
@@ -0,0 +1,15 @@
+package me.jellysquid.mods.lithium.common.shapes;
+
+import it.unimi.dsi.fastutil.doubles.DoubleList;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.shape.VoxelSet;
+
+/**
+ * Provides access to the voxels and point positions of any {@link net.minecraft.util.shape.VoxelShape}, see
+ * {@link me.jellysquid.mods.lithium.mixin.shapes.specialized_shapes.VoxelShapeMixin}.
+ */
+public interface VoxelShapeAccess {
+    VoxelSet getVoxelSet();
+
+    DoubleList getPointPositionList(Direction.Axis axis);
+}
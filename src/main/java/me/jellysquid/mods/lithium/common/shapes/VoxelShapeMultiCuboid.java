@@ -0,0 +1,148 @@
+package me.jellysquid.mods.lithium.common.shapes;
+
+import it.unimi.dsi.fastutil.doubles.DoubleList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.util.math.AxisCycleDirection;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.shape.OffsetDoubleList;
+import net.minecraft.util.shape.VoxelSet;
+import net.minecraft.util.shape.VoxelShape;
+import net.minecraft.util.shape.VoxelShapes;
+
+/**
+ * An implementation of {@link VoxelShape} for shapes which consist of multiple cuboids, which vanilla represents with an
+ * {@link net.minecraft.util.shape.ArrayVoxelShape}. The voxels and point positions are the same as vanilla's, so every
+ * method which is not overridden behaves the same. Collision resolution and intersection tests however use
+ * {@link CompiledShapeBoxes}, which is created from the voxels when first needed, as many shapes are only
+ * intermediate results of combining other shapes.
+ */
+public class VoxelShapeMultiCuboid extends VoxelShape implements VoxelShapeCaster {
+    private final DoubleList xPoints, yPoints, zPoints;
+
+    // The shape this shape was offset from, or null if this shape has its own point positions
+    private final VoxelShapeMultiCuboid parent;
+    private final double offsetX, offsetY, offsetZ;
+
+    private CompiledShapeBoxes boxes;
+
+    public VoxelShapeMultiCuboid(VoxelSet voxels, DoubleList xPoints, DoubleList yPoints, DoubleList zPoints) {
+        super(voxels);
+
+        // [VanillaCopy] ArrayVoxelShape#<init>
+        if (voxels.getXSize() + 1 != xPoints.size() || voxels.getYSize() + 1 != yPoints.size() ||
+                voxels.getZSize() + 1 != zPoints.size()) {
+            throw new IllegalArgumentException("Lengths of point arrays must be consistent with the size of the VoxelSet.");
+        }
+
+        this.xPoints = xPoints;
+        this.yPoints = yPoints;
+        this.zPoints = zPoints;
+
+        this.parent = null;
+        this.offsetX = 0.0D;
+        this.offsetY = 0.0D;
+        this.offsetZ = 0.0D;
+    }
+
+    private VoxelShapeMultiCuboid(VoxelShapeMultiCuboid parent, double x, double y, double z) {
+        super(parent.voxels);
+
+        // [VanillaCopy] VoxelShape#offset(double, double, double)
+        this.xPoints = new OffsetDoubleList(parent.xPoints, x);
+        this.yPoints = new OffsetDoubleList(parent.yPoints, y);
+        this.zPoints = new OffsetDoubleList(parent.zPoints, z);
+
+        this.parent = parent;
+        this.offsetX = x;
+        this.offsetY = y;
+        this.offsetZ = z;
+    }
+
+    @Override
+    protected DoubleList getPointPositions(Direction.Axis axis) {
+        switch (axis) {
+            case X:
+                return this.xPoints;
+            case Y:
+                return this.yPoints;
+            case Z:
+                return this.zPoints;
+        }
+
+        throw new IllegalArgumentException();
+    }
+
+    /**
+     * Offset shapes share the compiled boxes of the shape they were created from. Offsetting an offset shape again
+     * creates a shape with its own boxes, as vanilla adds up the offsets point by point in that case.
+     */
+    @Override
+    public VoxelShape offset(double x, double y, double z) {
+        if (this.isEmpty()) {
+            return VoxelShapes.empty();
+        }
+
+        if (this.parent != null) {
+            return new VoxelShapeMultiCuboid(this.voxels, new OffsetDoubleList(this.xPoints, x),
+                    new OffsetDoubleList(this.yPoints, y), new OffsetDoubleList(this.zPoints, z));
+        }
+
+        return new VoxelShapeMultiCuboid(this, x, y, z);
+    }
+
+    @Override
+    public double calculateMaxDistance(AxisCycleDirection cycleDirection, Box box, double maxDist) {
+        if (this.isEmpty()) {
+            return maxDist;
+        }
+
+        AxisCycleDirection cycle = cycleDirection.opposite();
+
+        Direction.Axis axisX = cycle.cycle(Direction.Axis.X);
+        Direction.Axis axisY = cycle.cycle(Direction.Axis.Y);
+        Direction.Axis axisZ = cycle.cycle(Direction.Axis.Z);
+
+        return this.getBoxes().calculateMaxDistance(axisX.ordinal(), axisY.ordinal(), axisZ.ordinal(),
+                box.getMin(axisX), box.getMax(axisX), box.getMin(axisY), box.getMax(axisY),
+                box.getMin(axisZ), box.getMax(axisZ), maxDist);
+    }
+
+    @Override
+    public boolean intersects(Box box, double x, double y, double z) {
+        return this.getBoxes().intersects(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ, x, y, z);
+    }
+
+    private CompiledShapeBoxes getBoxes() {
+        CompiledShapeBoxes boxes = this.boxes;
+
+        if (boxes == null) {
+            if (this.parent != null) {
+                boxes = this.parent.getBoxes().offset(this.offsetX, this.offsetY, this.offsetZ);
+            } else {
+                boxes = this.compile();
+            }
+
+            // All fields of the boxes are final, so they can be published without synchronization
+            this.boxes = boxes;
+        }
+
+        return boxes;
+    }
+
+    private CompiledShapeBoxes compile() {
+        IntArrayList boxes = new IntArrayList();
+
+        this.voxels.forEachBox((minX, minY, minZ, maxX, maxY, maxZ) -> {
+            boxes.add(minX);
+            boxes.add(minY);
+            boxes.add(minZ);
+            boxes.add(maxX);
+            boxes.add(maxY);
+            boxes.add(maxZ);
+        }, true);
+
+        return CompiledShapeBoxes.compile(this.xPoints.toDoubleArray(), this.yPoints.toDoubleArray(),
+                this.zPoints.toDoubleArray(), boxes.elements(), boxes.size() / 6);
+    }
+}
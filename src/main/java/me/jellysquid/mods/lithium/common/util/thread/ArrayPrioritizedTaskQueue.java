@@ -1,44 +1,63 @@
 package me.jellysquid.mods.lithium.common.util.thread;
 
-import com.google.common.collect.Queues;
 import net.minecraft.util.thread.TaskQueue;
 
-import java.util.Queue;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A much, much faster implementation of TaskQueue.Prioritized which avoids excessive overhead when checking for
  * messages in the queue by avoiding usages of the Stream API. The improvement from this change can be most noticeably
  * seen when enqueueing light updates which occur during block updates.
+ *
+ * Task executors only ever run on one thread at a time, so each priority level uses a {@link MpscArrayQueue}, which
+ * does not allocate a node for every task.
  */
 public class ArrayPrioritizedTaskQueue implements TaskQueue<TaskQueue.PrioritizedTask, Runnable> {
     // A simple array type is used to avoid needing to allocate an iterator to work on the queue
-    private final Queue<Runnable>[] queues;
+    private final MpscArrayQueue<Runnable>[] queues;
 
-    // Instead of iterating over every queue to determine if work is present, we simply store a counter
-    private final AtomicInteger size;
+    // Instead of iterating over every queue to determine if work is present, we keep a bit set for every priority level
+    // which may contain tasks. Producers only write to it when the bit of their level is not yet set, so it is rarely
+    // contended. A set bit does not guarantee that its queue contains tasks, but a queue with tasks always has its bit
+    // set once the task has been added.
+    private final AtomicInteger nonEmptyQueues;
 
     @SuppressWarnings("unchecked")
     public ArrayPrioritizedTaskQueue(int count) {
-        this.queues = new Queue[count];
+        if (count > Integer.SIZE) {
+            throw new IllegalArgumentException("Too many priority levels: " + count);
+        }
+
+        this.queues = new MpscArrayQueue[count];
 
         for (int i = 0; i < count; i++) {
-            this.queues[i] = Queues.newConcurrentLinkedQueue();
+            this.queues[i] = new MpscArrayQueue<>();
         }
 
-        this.size = new AtomicInteger(0);
+        this.nonEmptyQueues = new AtomicInteger(0);
     }
 
     @Override
     public Runnable poll() {
-        for (Queue<Runnable> queue : this.queues) {
+        int bits;
+
+        while ((bits = this.nonEmptyQueues.get()) != 0) {
+            int priority = Integer.numberOfTrailingZeros(bits);
+
+            MpscArrayQueue<Runnable> queue = this.queues[priority];
             Runnable task = queue.poll();
 
             if (task != null) {
-                this.size.decrementAndGet();
-
                 return task;
             }
+
+            // The bit is cleared before checking the queue again. Either we see a task which was added concurrently,
+            // or its producer sees the cleared bit and sets it again.
+            this.clearBit(priority);
+
+            if (!queue.isEmpty()) {
+                this.setBit(priority);
+            }
         }
 
         return null;
@@ -46,16 +65,35 @@ public class ArrayPrioritizedTaskQueue implements TaskQueue<TaskQueue.Prioritize
 
     @Override
     public boolean add(TaskQueue.PrioritizedTask task) {
-        this.size.incrementAndGet();
+        int priority = task.getPriority();
 
-        Queue<Runnable> queue = this.queues[task.getPriority()];
-        queue.add(task);
+        this.queues[priority].offer(task);
+
+        if ((this.nonEmptyQueues.get() & (1 << priority)) == 0) {
+            this.setBit(priority);
+        }
 
         return true;
     }
 
     @Override
     public boolean isEmpty() {
-        return this.size.get() <= 0;
+        return this.nonEmptyQueues.get() == 0;
+    }
+
+    private void setBit(int priority) {
+        int bits;
+
+        do {
+            bits = this.nonEmptyQueues.get();
+        } while ((bits & (1 << priority)) == 0 && !this.nonEmptyQueues.compareAndSet(bits, bits | (1 << priority)));
+    }
+
+    private void clearBit(int priority) {
+        int bits;
+
+        do {
+            bits = this.nonEmptyQueues.get();
+        } while ((bits & (1 << priority)) != 0 && !this.nonEmptyQueues.compareAndSet(bits, bits & ~(1 << priority)));
     }
 }
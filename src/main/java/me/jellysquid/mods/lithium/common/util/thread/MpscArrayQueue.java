@@ -0,0 +1,161 @@
+package me.jellysquid.mods.lithium.common.util.thread;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * An unbounded queue which can be written to by any number of threads, but only be read from by a single thread at a
+ * time. This is the access pattern of the task executors used by the chunk and lighting systems, which are fed by many
+ * worker threads but only ever run on one thread at once.
+ *
+ * Elements are stored in a linked list of fixed-size array segments. Unlike a
+ * {@link java.util.concurrent.ConcurrentLinkedQueue}, this does not allocate a node for every element, and producers
+ * only contend on a single counter which hands out the slots of the queue. A new segment is allocated once every
+ * {@link #SEGMENT_SIZE} elements.
+ *
+ * Producers claim a slot by incrementing the producer index and then write their element into the slot. The consumer
+ * may therefore see a claimed slot which has not been written yet, in which case it waits for the producer to finish.
+ */
+public class MpscArrayQueue<T> {
+    private static final int SEGMENT_SHIFT = 10;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<MpscArrayQueue, Segment> PRODUCER_SEGMENT =
+            AtomicReferenceFieldUpdater.newUpdater(MpscArrayQueue.class, Segment.class, "producerSegment");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<MpscArrayQueue> CONSUMER_INDEX =
+            AtomicLongFieldUpdater.newUpdater(MpscArrayQueue.class, "consumerIndex");
+
+    // The index of the next slot which will be claimed by a producer
+    private final AtomicLong producerIndex = new AtomicLong();
+
+    // A segment at or before the segment of the next slot, from which producers start searching for their segment
+    private volatile Segment<T> producerSegment;
+
+    // The index of the next slot to be read, only written by the consumer
+    private volatile long consumerIndex;
+
+    // The segment containing the next slot to be read, only accessed by the consumer
+    private Segment<T> consumerSegment;
+
+    public MpscArrayQueue() {
+        Segment<T> segment = new Segment<>(0);
+
+        this.producerSegment = segment;
+        this.consumerSegment = segment;
+    }
+
+    /**
+     * Adds an element to the end of the queue. Can be called from any thread.
+     */
+    public void offer(T value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+
+        // The segment must be read before claiming a slot, as it may otherwise already point past the claimed slot
+        Segment<T> segment = this.producerSegment;
+
+        long index = this.producerIndex.getAndIncrement();
+
+        this.findSegment(segment, index).slots.lazySet((int) (index & SEGMENT_MASK), value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Segment<T> findSegment(Segment<T> segment, long index) {
+        long base = index & ~SEGMENT_MASK;
+
+        while (segment.base != base) {
+            Segment<T> next = segment.next;
+
+            if (next == null) {
+                Segment<T> created = new Segment<>(segment.base + SEGMENT_SIZE);
+
+                // Another producer may have linked a segment in the meantime, in which case ours is thrown away
+                if (Segment.NEXT.compareAndSet(segment, null, created)) {
+                    next = created;
+                } else {
+                    next = segment.next;
+                }
+            }
+
+            segment = next;
+        }
+
+        Segment<T> current = this.producerSegment;
+
+        // Let other producers skip the segments before ours, as our slot has already been claimed
+        if (current.base < segment.base) {
+            PRODUCER_SEGMENT.compareAndSet(this, current, segment);
+        }
+
+        return segment;
+    }
+
+    /**
+     * Removes and returns the element at the front of the queue, or null if the queue is empty. Must only be called
+     * by one thread at a time.
+     */
+    public T poll() {
+        long index = this.consumerIndex;
+
+        if (index >= this.producerIndex.get()) {
+            return null;
+        }
+
+        Segment<T> segment = this.consumerSegment;
+
+        if (segment.base != (index & ~SEGMENT_MASK)) {
+            Segment<T> next;
+
+            // The producer of the slot may not have linked the segment yet
+            while ((next = segment.next) == null) {
+                Thread.yield();
+            }
+
+            this.consumerSegment = segment = next;
+        }
+
+        int slot = (int) (index & SEGMENT_MASK);
+
+        T value;
+
+        // The producer of the slot may not have written its element yet
+        while ((value = segment.slots.get(slot)) == null) {
+            Thread.yield();
+        }
+
+        segment.slots.lazySet(slot, null);
+
+        CONSUMER_INDEX.lazySet(this, index + 1);
+
+        return value;
+    }
+
+    /**
+     * Returns true if no elements are in the queue or being added to it. Can be called from any thread.
+     */
+    public boolean isEmpty() {
+        return this.consumerIndex >= this.producerIndex.get();
+    }
+
+    private static class Segment<T> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Segment, Segment> NEXT =
+                AtomicReferenceFieldUpdater.newUpdater(Segment.class, Segment.class, "next");
+
+        private final long base;
+        private final AtomicReferenceArray<T> slots = new AtomicReferenceArray<>(SEGMENT_SIZE);
+
+        private volatile Segment<T> next;
+
+        private Segment(long base) {
+            this.base = base;
+        }
+    }
+}
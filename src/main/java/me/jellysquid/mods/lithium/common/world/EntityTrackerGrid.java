@@ -0,0 +1,139 @@
+package me.jellysquid.mods.lithium.common.world;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.Collection;
+
+/**
+ * Buckets the entity trackers of a world by the chunk of the position vanilla measures the tracking range from, which
+ * is the last position sent to the players watching the entity. When a player moves, only the trackers in the chunks
+ * around the player have to be re-evaluated, rather than every tracker of the world, which turns the cost of player
+ * movement from O(players * entities) into O(players * nearby entities).
+ *
+ * Queries cover the chunks around two positions at once, as a player which moves has to stop tracking entities around
+ * its old position as well as start tracking entities around its new position.
+ */
+public class EntityTrackerGrid<T> {
+    private final Long2ObjectOpenHashMap<ReferenceOpenHashSet<T>> buckets = new Long2ObjectOpenHashMap<>();
+    private final Reference2LongOpenHashMap<T> positions = new Reference2LongOpenHashMap<>();
+
+    public void add(T tracker, int chunkX, int chunkZ) {
+        long pos = ChunkPos.toLong(chunkX, chunkZ);
+
+        if (this.positions.containsKey(tracker)) {
+            this.move(tracker, pos);
+        } else {
+            this.positions.put(tracker, pos);
+            this.getOrCreateBucket(pos).add(tracker);
+        }
+    }
+
+    public void move(T tracker, int chunkX, int chunkZ) {
+        this.move(tracker, ChunkPos.toLong(chunkX, chunkZ));
+    }
+
+    private void move(T tracker, long pos) {
+        if (!this.positions.containsKey(tracker)) {
+            return;
+        }
+
+        long prevPos = this.positions.put(tracker, pos);
+
+        if (prevPos != pos) {
+            this.removeFromBucket(tracker, prevPos);
+            this.getOrCreateBucket(pos).add(tracker);
+        }
+    }
+
+    public void remove(T tracker) {
+        if (this.positions.containsKey(tracker)) {
+            this.removeFromBucket(tracker, this.positions.removeLong(tracker));
+        }
+    }
+
+    /**
+     * Adds every tracker within {@param radius} chunks (on either axis) of chunk A or chunk B to {@param out}. Each
+     * tracker is added at most once.
+     */
+    public void collect(int aX, int aZ, int bX, int bZ, int radius, Collection<T> out) {
+        int diameter = radius * 2 + 1;
+
+        // Both areas are probed as one bounding box if they overlap, otherwise each area is probed separately
+        boolean overlapping = isWithin(aX, aZ, bX, bZ, radius * 2);
+
+        long probes = overlapping ?
+                (long) (Math.abs(aX - bX) + diameter) * (long) (Math.abs(aZ - bZ) + diameter) :
+                2L * diameter * diameter;
+
+        // If there are only a few occupied chunks, scanning them is cheaper than probing every chunk of the areas
+        if (probes > this.buckets.size()) {
+            for (Long2ObjectMap.Entry<ReferenceOpenHashSet<T>> entry : this.buckets.long2ObjectEntrySet()) {
+                long pos = entry.getLongKey();
+
+                int x = ChunkPos.getPackedX(pos);
+                int z = ChunkPos.getPackedZ(pos);
+
+                if (isWithin(x, z, aX, aZ, radius) || isWithin(x, z, bX, bZ, radius)) {
+                    out.addAll(entry.getValue());
+                }
+            }
+        } else if (overlapping) {
+            for (int x = Math.min(aX, bX) - radius; x <= Math.max(aX, bX) + radius; x++) {
+                for (int z = Math.min(aZ, bZ) - radius; z <= Math.max(aZ, bZ) + radius; z++) {
+                    if (isWithin(x, z, aX, aZ, radius) || isWithin(x, z, bX, bZ, radius)) {
+                        this.collectBucket(x, z, out);
+                    }
+                }
+            }
+        } else {
+            this.collectSquare(aX, aZ, radius, out);
+            this.collectSquare(bX, bZ, radius, out);
+        }
+    }
+
+    private void collectSquare(int centerX, int centerZ, int radius, Collection<T> out) {
+        for (int x = centerX - radius; x <= centerX + radius; x++) {
+            for (int z = centerZ - radius; z <= centerZ + radius; z++) {
+                this.collectBucket(x, z, out);
+            }
+        }
+    }
+
+    private void collectBucket(int x, int z, Collection<T> out) {
+        ReferenceOpenHashSet<T> bucket = this.buckets.get(ChunkPos.toLong(x, z));
+
+        if (bucket != null) {
+            out.addAll(bucket);
+        }
+    }
+
+    public int size() {
+        return this.positions.size();
+    }
+
+    private ReferenceOpenHashSet<T> getOrCreateBucket(long pos) {
+        ReferenceOpenHashSet<T> bucket = this.buckets.get(pos);
+
+        if (bucket == null) {
+            this.buckets.put(pos, bucket = new ReferenceOpenHashSet<>());
+        }
+
+        return bucket;
+    }
+
+    private void removeFromBucket(T tracker, long pos) {
+        ReferenceOpenHashSet<T> bucket = this.buckets.get(pos);
+
+        if (bucket != null && bucket.remove(tracker) && bucket.isEmpty()) {
+            this.buckets.remove(pos);
+        }
+    }
+
+    private static boolean isWithin(int x, int z, int centerX, int centerZ, int radius) {
+        return Math.abs(x - centerX) <= radius && Math.abs(z - centerZ) <= radius;
+    }
+}
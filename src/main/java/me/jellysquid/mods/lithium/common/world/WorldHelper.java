@@ -2,6 +2,8 @@ package me.jellysquid.mods.lithium.common.world;
 
 import com.google.common.collect.Lists;
 import me.jellysquid.mods.lithium.common.entity.EntityClassGroup;
+import me.jellysquid.mods.lithium.common.entity.HardCollisionEntityIndex;
+import me.jellysquid.mods.lithium.common.entity.HardCollisionEntityIndexProvider;
 import me.jellysquid.mods.lithium.common.world.chunk.ClassGroupFilterableList;
 import net.minecraft.entity.Entity;
 import net.minecraft.util.collection.TypeFilterableList;
@@ -56,8 +58,20 @@ public class WorldHelper {
         List<Entity> list_1 = Lists.newArrayList();
         ChunkManager chunkManager_1 = world.getChunkManager();
 
+        // Skip the chunks which are known to not contain any entity of the group, see HardCollisionEntityIndex
+        HardCollisionEntityIndex<Entity> index = type == EntityClassGroup.BOAT_SHULKER_LIKE_COLLISION ?
+                HardCollisionEntityIndexProvider.getHardCollisionEntityIndex(world) : null;
+
+        if (index != null && index.isEmpty()) {
+            return list_1;
+        }
+
         for(int int_5 = int_1; int_5 < int_2; ++int_5) {
             for(int int_6 = int_3; int_6 < int_4; ++int_6) {
+                if (index != null && !index.hasEntities(int_5, int_6)) {
+                    continue;
+                }
+
                 WorldChunk worldChunk_1 = chunkManager_1.getWorldChunk(int_5, int_6, false);
                 if (worldChunk_1 != null) {
                     WorldHelper.getEntitiesOfClassGroup(worldChunk_1, excluded, type, box_1, list_1, predicate_1);
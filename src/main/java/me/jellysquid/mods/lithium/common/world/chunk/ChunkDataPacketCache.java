@@ -0,0 +1,80 @@
+package me.jellysquid.mods.lithium.common.world.chunk;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import net.minecraft.network.packet.s2c.play.ChunkDataS2CPacket;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Keeps the full chunk data packets of recently sent chunks, so that every player who starts watching a chunk receives
+ * the same packet and the chunk's sections are only serialized once. Packets are immutable once created and only copy
+ * their data into the connection's buffer when they are written, which makes them safe to share between players.
+ *
+ * A packet is re-created once its chunk has been modified or replaced by another chunk object after being reloaded.
+ * The packets of chunks which contain block entities are never cached, as block entities can change the data they
+ * send to players without marking their chunk as modified. The least recently used packets are dropped once the cache
+ * is full.
+ *
+ * Must only be used on the server thread.
+ */
+public class ChunkDataPacketCache {
+    private final Long2ObjectLinkedOpenHashMap<Entry> entries = new Long2ObjectLinkedOpenHashMap<>();
+    private final int capacity;
+
+    public ChunkDataPacketCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns a packet containing all sections of the given chunk, creating it if no up-to-date packet is cached.
+     */
+    public ChunkDataS2CPacket getPacket(WorldChunk chunk) {
+        if (!chunk.getBlockEntities().isEmpty()) {
+            return new ChunkDataS2CPacket(chunk, 0xFFFF);
+        }
+
+        long pos = chunk.getPos().toLong();
+        int modificationCount = ((WorldChunkExtended) chunk).getModificationCount();
+
+        Entry entry = this.entries.getAndMoveToLast(pos);
+
+        if (entry != null && entry.isValid(chunk, modificationCount)) {
+            return entry.packet;
+        }
+
+        ChunkDataS2CPacket packet = new ChunkDataS2CPacket(chunk, 0xFFFF);
+
+        if (entry == null) {
+            if (this.entries.size() >= this.capacity) {
+                this.entries.removeFirst();
+            }
+
+            this.entries.putAndMoveToLast(pos, new Entry(chunk, modificationCount, packet));
+        } else {
+            entry.update(chunk, modificationCount, packet);
+        }
+
+        return packet;
+    }
+
+    private static class Entry {
+        private WeakReference<WorldChunk> chunk;
+        private int modificationCount;
+        private ChunkDataS2CPacket packet;
+
+        private Entry(WorldChunk chunk, int modificationCount, ChunkDataS2CPacket packet) {
+            this.update(chunk, modificationCount, packet);
+        }
+
+        private void update(WorldChunk chunk, int modificationCount, ChunkDataS2CPacket packet) {
+            this.chunk = new WeakReference<>(chunk);
+            this.modificationCount = modificationCount;
+            this.packet = packet;
+        }
+
+        private boolean isValid(WorldChunk chunk, int modificationCount) {
+            return this.chunk.get() == chunk && this.modificationCount == modificationCount;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package me.jellysquid.mods.lithium.common.world.chunk;
+
+import net.minecraft.world.chunk.ChunkStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the chunk generation tasks of each {@link ChunkStatus} across all worlds, so that the depth of the generation
+ * queue can be read with the {@link ChunkGenerationMetricsCommand}.
+ *
+ * Tasks are counted as queued once their neighbours are ready and they are handed to the chunk task sorter, and as
+ * completed once they have run. Tasks of chunks which are unloaded before their task runs are dropped by the sorter,
+ * so they stay counted as pending.
+ */
+public class ChunkGenerationMetrics {
+    private static final List<ChunkStatus> STATUSES = ChunkStatus.createOrderedList();
+
+    private static final AtomicLongArray QUEUED = new AtomicLongArray(STATUSES.size());
+    private static final AtomicLongArray COMPLETED = new AtomicLongArray(STATUSES.size());
+
+    /**
+     * Counts a generation task as queued, and wraps it so that it is counted as completed once it has run.
+     */
+    public static Runnable track(ChunkStatus status, Runnable task) {
+        int index = status.getIndex();
+
+        QUEUED.incrementAndGet(index);
+
+        return () -> {
+            try {
+                task.run();
+            } finally {
+                COMPLETED.incrementAndGet(index);
+            }
+        };
+    }
+
+    /**
+     * Returns a human-readable report of the queued, completed and pending tasks of every status.
+     */
+    public static List<String> getReport() {
+        List<String> lines = new ArrayList<>();
+        long pending = 0;
+
+        for (ChunkStatus status : STATUSES) {
+            int index = status.getIndex();
+
+            long queued = QUEUED.get(index);
+            long completed = COMPLETED.get(index);
+
+            lines.add(String.format("  %s: %d queued, %d completed, %d pending", status.getId(), queued, completed,
+                    queued - completed));
+
+            pending += queued - completed;
+        }
+
+        lines.add(0, String.format("Chunk generation tasks (%d pending)", pending));
+
+        return lines;
+    }
+}
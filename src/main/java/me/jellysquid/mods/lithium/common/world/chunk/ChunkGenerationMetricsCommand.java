@@ -0,0 +1,31 @@
+package me.jellysquid.mods.lithium.common.world.chunk;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.LiteralText;
+
+import java.util.List;
+
+/**
+ * Adds the {@code /lithium chunkgen} command, which shows the {@link ChunkGenerationMetrics} of all worlds.
+ */
+public class ChunkGenerationMetricsCommand {
+    public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("lithium")
+                .requires(source -> source.hasPermissionLevel(4))
+                .then(CommandManager.literal("chunkgen")
+                        .executes(ChunkGenerationMetricsCommand::report)));
+    }
+
+    private static int report(CommandContext<ServerCommandSource> ctx) {
+        List<String> lines = ChunkGenerationMetrics.getReport();
+
+        for (String line : lines) {
+            ctx.getSource().sendFeedback(new LiteralText(line), false);
+        }
+
+        return lines.size();
+    }
+}
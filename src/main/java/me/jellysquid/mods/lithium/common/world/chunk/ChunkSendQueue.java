@@ -0,0 +1,79 @@
+package me.jellysquid.mods.lithium.common.world.chunk;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * The chunks which still have to be sent to a player, polled in order of their distance to the player so that the
+ * chunks around the player arrive first.
+ *
+ * The order is only re-computed when chunks were added or the player has moved to another chunk since the last poll.
+ * Removed chunks are removed from the ordered list lazily, as removing them eagerly would require a linear scan.
+ */
+public class ChunkSendQueue {
+    private final LongOpenHashSet pending = new LongOpenHashSet();
+
+    // The pending chunks sorted by descending distance, so that the nearest chunk can be taken from the end
+    private final LongArrayList ordered = new LongArrayList();
+
+    private int centerX, centerZ;
+    private boolean dirty;
+
+    public void add(long pos) {
+        if (this.pending.add(pos)) {
+            this.dirty = true;
+        }
+    }
+
+    public boolean remove(long pos) {
+        return this.pending.remove(pos);
+    }
+
+    public boolean isEmpty() {
+        return this.pending.isEmpty();
+    }
+
+    public int size() {
+        return this.pending.size();
+    }
+
+    /**
+     * Removes and returns the pending chunk which is nearest to the given chunk coordinates. The queue must not be
+     * empty.
+     */
+    public long poll(int centerX, int centerZ) {
+        if (this.dirty || this.centerX != centerX || this.centerZ != centerZ) {
+            this.sort(centerX, centerZ);
+        }
+
+        while (true) {
+            long pos = this.ordered.removeLong(this.ordered.size() - 1);
+
+            if (this.pending.remove(pos)) {
+                return pos;
+            }
+        }
+    }
+
+    private void sort(int centerX, int centerZ) {
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.dirty = false;
+
+        LongArrayList ordered = this.ordered;
+        ordered.clear();
+        ordered.addAll(this.pending);
+
+        LongArrays.quickSort(ordered.elements(), 0, ordered.size(), (a, b) ->
+                Integer.compare(getDistanceSq(b, centerX, centerZ), getDistanceSq(a, centerX, centerZ)));
+    }
+
+    private static int getDistanceSq(long pos, int centerX, int centerZ) {
+        int x = ChunkPos.getPackedX(pos) - centerX;
+        int z = ChunkPos.getPackedZ(pos) - centerZ;
+
+        return x * x + z * z;
+    }
+}
@@ -0,0 +1,19 @@
+package me.jellysquid.mods.lithium.common.world.chunk;
+
+import net.minecraft.server.network.ServerPlayerEntity;
+
+/**
+ * Implemented by ThreadedAnvilChunkStorage when chunks are queued per player and sent within a budget every tick (see
+ * {@link ChunkSendQueue}).
+ */
+public interface ChunkSendQueueHolder {
+    /**
+     * Queues the chunk at the given position to be sent to the player once it is the player's nearest queued chunk.
+     */
+    void queueChunk(ServerPlayerEntity player, long pos);
+
+    /**
+     * Removes the chunk at the given position from the player's queue, if it is queued.
+     */
+    void removeQueuedChunk(ServerPlayerEntity player, long pos);
+}
@@ -0,0 +1,69 @@
+package me.jellysquid.mods.lithium.common.world.chunk;
+
+import net.minecraft.server.world.ThreadedAnvilChunkStorage;
+import net.minecraft.world.chunk.ChunkStatus;
+
+import java.util.List;
+
+/**
+ * Assigns a priority to the chunk generation tasks of each {@link ChunkStatus} based on how expensive the status is to
+ * generate. Tasks of cheap statuses are moved ahead of expensive tasks with a similar ticket level, so that a single
+ * noise or feature task does not hold up the light and height map tasks which are needed to finish nearby chunks.
+ *
+ * Only tasks whose neighbours have already been generated are ever queued, so re-ordering queued tasks never breaks
+ * the dependencies between neighbouring chunks.
+ */
+public class ChunkStatusPriorities {
+    // The number of ticket levels by which the tasks of the cheapest statuses are moved ahead
+    public static final int MAX_BOOST = 2;
+
+    private static final int[] BOOSTS;
+
+    static {
+        List<ChunkStatus> statuses = ChunkStatus.createOrderedList();
+
+        BOOSTS = new int[statuses.size()];
+
+        for (ChunkStatus status : statuses) {
+            BOOSTS[status.getIndex()] = MAX_BOOST - getCost(status);
+        }
+    }
+
+    /**
+     * Returns the relative cost of generating a status, from 0 for the cheapest statuses up to {@link #MAX_BOOST} for
+     * the statuses which run the world generator's noise and feature passes.
+     */
+    private static int getCost(ChunkStatus status) {
+        if (status == ChunkStatus.NOISE || status == ChunkStatus.FEATURES) {
+            return 2;
+        }
+
+        if (status == ChunkStatus.STRUCTURE_STARTS || status == ChunkStatus.SURFACE ||
+                status == ChunkStatus.CARVERS || status == ChunkStatus.LIQUID_CARVERS) {
+            return 1;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Returns the ticket level at which a generation task for the given status is queued, given the completed ticket
+     * level of its chunk.
+     */
+    public static int getTaskLevel(int level, ChunkStatus status) {
+        return getBoostedLevel(level, BOOSTS[status.getIndex()]);
+    }
+
+    /**
+     * Returns the given ticket level moved ahead by the given number of levels. The level never drops below zero, as
+     * the chunk task sorter has no queue for lower levels. Chunks whose level is beyond the loaded levels are not
+     * moved ahead, so that their tasks are run last as in vanilla.
+     */
+    public static int getBoostedLevel(int level, int boost) {
+        if (level > ThreadedAnvilChunkStorage.MAX_LEVEL) {
+            return level;
+        }
+
+        return Math.max(0, level - boost);
+    }
+}
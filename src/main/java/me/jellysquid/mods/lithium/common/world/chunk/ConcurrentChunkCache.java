@@ -0,0 +1,76 @@
+package me.jellysquid.mods.lithium.common.world.chunk;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import net.minecraft.world.chunk.Chunk;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A direct-mapped cache of recently retrieved chunks which can be read from any thread without locking, while only
+ * the server thread writes to it. This lets other threads find chunks which have already been loaded without having
+ * to wait for the server thread to look them up.
+ *
+ * Each slot holds an immutable entry of a key and its chunk, so readers always see a key together with the chunk which
+ * was stored for it. Entries are replaced or cleared as a whole, which avoids the retry loop of a sequence lock and
+ * needs no memory fences beyond those of {@link AtomicReferenceArray}.
+ */
+public class ConcurrentChunkCache {
+    private static final int SIZE = 1024;
+    private static final int MASK = SIZE - 1;
+
+    private final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<>(SIZE);
+
+    // True if no entries have been added since the last clear, only accessed by the server thread
+    private boolean empty = true;
+
+    /**
+     * Returns the chunk stored for the given key, or null if there is none. Can be called from any thread.
+     */
+    public Chunk get(long key) {
+        Entry entry = this.entries.get(getIndex(key));
+
+        if (entry != null && entry.key == key) {
+            return entry.chunk;
+        }
+
+        return null;
+    }
+
+    /**
+     * Stores a chunk for the given key, replacing the entry which shares its slot. Must only be called on the server
+     * thread.
+     */
+    public void put(long key, Chunk chunk) {
+        this.entries.set(getIndex(key), new Entry(key, chunk));
+        this.empty = false;
+    }
+
+    /**
+     * Removes all entries. Must only be called on the server thread.
+     */
+    public void clear() {
+        if (this.empty) {
+            return;
+        }
+
+        for (int i = 0; i < SIZE; i++) {
+            this.entries.set(i, null);
+        }
+
+        this.empty = true;
+    }
+
+    private static int getIndex(long key) {
+        return (int) HashCommon.mix(key) & MASK;
+    }
+
+    private static class Entry {
+        private final long key;
+        private final Chunk chunk;
+
+        private Entry(long key, Chunk chunk) {
+            this.key = key;
+            this.chunk = chunk;
+        }
+    }
+}
@@ -50,6 +50,20 @@ public class LithiumHashPalette<T> implements Palette<T> {
         this.table.defaultReturnValue(ABSENT_VALUE);
     }
 
+    /**
+     * Returns a palette with the same entries in the same order, which notifies the given listener when it grows.
+     */
+    public LithiumHashPalette<T> copy(PaletteResizeListener<T> resizeHandler) {
+        LithiumHashPalette<T> copy = new LithiumHashPalette<>(this.idList, this.indexBits, resizeHandler,
+                this.elementDeserializer, this.elementSerializer);
+
+        for (int i = 0; i < this.size; i++) {
+            copy.addEntry(this.entries[i]);
+        }
+
+        return copy;
+    }
+
     @Override
     public int getIndex(T obj) {
         int id = this.table.getInt(obj);
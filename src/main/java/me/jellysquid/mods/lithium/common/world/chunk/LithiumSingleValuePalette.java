@@ -0,0 +1,115 @@
+package me.jellysquid.mods.lithium.common.world.chunk;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.collection.IdList;
+import net.minecraft.util.collection.PackedIntegerArray;
+import net.minecraft.world.chunk.ArrayPalette;
+import net.minecraft.world.chunk.Palette;
+import net.minecraft.world.chunk.PaletteResizeListener;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A palette for containers in which every entry has the same value, such as sections filled entirely with air, water
+ * or stone. The container does not need its own data array, as every entry refers to the single value at index 0, and
+ * uses {@link #EMPTY_DATA} instead, which is never written to.
+ *
+ * Adding a second value asks the container to resize to {@link #RESIZE_BITS}, after which it uses a regular palette
+ * and data array.
+ */
+public class LithiumSingleValuePalette<T> implements Palette<T> {
+    /**
+     * The data array of containers using this palette, shared between all of them. All of its entries are zero.
+     */
+    public static final PackedIntegerArray EMPTY_DATA = new PackedIntegerArray(4, 4096);
+
+    /**
+     * The number of bits which the container is resized to once it holds more than one value. This is the smallest
+     * size used by the container's regular palettes.
+     */
+    public static final int RESIZE_BITS = 4;
+
+    private final IdList<T> idList;
+    private final PaletteResizeListener<T> resizeHandler;
+    private final Function<CompoundTag, T> elementDeserializer;
+    private final Function<T, CompoundTag> elementSerializer;
+
+    private T value;
+
+    public LithiumSingleValuePalette(IdList<T> ids, PaletteResizeListener<T> resizeHandler,
+                                     Function<CompoundTag, T> deserializer, Function<T, CompoundTag> serializer) {
+        this.idList = ids;
+        this.resizeHandler = resizeHandler;
+        this.elementDeserializer = deserializer;
+        this.elementSerializer = serializer;
+    }
+
+    @Override
+    public int getIndex(T obj) {
+        if (this.value == null) {
+            this.value = obj;
+        }
+
+        if (this.value == obj) {
+            return 0;
+        }
+
+        return this.resizeHandler.onResize(RESIZE_BITS, obj);
+    }
+
+    @Override
+    public boolean accepts(Predicate<T> predicate) {
+        return this.value != null && predicate.test(this.value);
+    }
+
+    @Override
+    public T getByIndex(int id) {
+        return id == 0 ? this.value : null;
+    }
+
+    public T getValue() {
+        return this.value;
+    }
+
+    @Override
+    @Environment(EnvType.CLIENT)
+    public void fromPacket(PacketByteBuf buf) {
+        if (buf.readVarInt() != 1) {
+            throw new IllegalArgumentException("Single value palette must contain exactly one entry");
+        }
+
+        this.value = this.idList.get(buf.readVarInt());
+    }
+
+    /**
+     * Writes the value in the format of {@link ArrayPalette}, which vanilla clients expect for small palettes.
+     */
+    @Override
+    public void toPacket(PacketByteBuf buf) {
+        buf.writeVarInt(1);
+        buf.writeVarInt(this.idList.getRawId(this.value));
+    }
+
+    @Override
+    public int getPacketSize() {
+        return PacketByteBuf.getVarIntSizeBytes(1) + PacketByteBuf.getVarIntSizeBytes(this.idList.getRawId(this.value));
+    }
+
+    @Override
+    public void fromTag(ListTag list) {
+        if (list.size() != 1) {
+            throw new IllegalArgumentException("Single value palette must contain exactly one entry");
+        }
+
+        this.value = this.elementDeserializer.apply(list.getCompound(0));
+    }
+
+    public void toTag(ListTag list) {
+        list.add(this.elementSerializer.apply(this.value));
+    }
+}
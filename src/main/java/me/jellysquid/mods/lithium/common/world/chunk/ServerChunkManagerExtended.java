@@ -0,0 +1,25 @@
+package me.jellysquid.mods.lithium.common.world.chunk;
+
+import com.mojang.datafixers.util.Either;
+import net.minecraft.server.world.ChunkHolder;
+import net.minecraft.server.world.ChunkTicketType;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkStatus;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface ServerChunkManagerExtended {
+    /**
+     * Adds a ticket of the given type to each of the first {@param count} chunks in {@param positions} and starts
+     * loading them to {@param status}. All tickets are processed by a single update of the ticket manager, whereas
+     * requesting each chunk on its own would update the ticket manager once per chunk.
+     *
+     * The tickets use the chunk's position as their argument and are added at the level which loads the chunk to
+     * {@param status}, so tickets for {@link ChunkStatus#FULL} can be removed again with a radius of zero. The futures
+     * of the chunks are added to {@param futures} in the order of their positions.
+     */
+    void addTicketsAndLoad(ChunkTicketType<ChunkPos> type, long[] positions, int count, ChunkStatus status,
+                           List<CompletableFuture<Either<Chunk, ChunkHolder.Unloaded>>> futures);
+}
@@ -0,0 +1,116 @@
+package me.jellysquid.mods.lithium.common.world.chunk;
+
+import net.minecraft.util.collection.PackedIntegerArray;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The palette and data array of a chunk section's block states, shared between all sections with the same contents.
+ * Large flat or uniform areas contain thousands of identical sections, which only need to keep one copy of their data
+ * in memory.
+ *
+ * Neither the palette nor the data array of shared data may be modified. A container which is about to modify its
+ * contents must make its own copy of both first. Shared data is only referenced weakly by the table, and is removed
+ * once no container uses it anymore.
+ */
+public class SharedSectionData<T> {
+    private static final Map<SharedSectionData<?>, WeakReference<SharedSectionData<?>>> TABLE = new WeakHashMap<>();
+
+    private final LithiumHashPalette<T> palette;
+    private final PackedIntegerArray data;
+    private final int bits;
+    private final int hash;
+
+    private SharedSectionData(LithiumHashPalette<T> palette, PackedIntegerArray data, int bits) {
+        this.palette = palette;
+        this.data = data;
+        this.bits = bits;
+        this.hash = computeHash(palette, data, bits);
+    }
+
+    /**
+     * Returns the shared data with the same contents as the given palette and data array, which is created from them
+     * if no section with the same contents exists. The given data array is used by the shared data if it is created,
+     * and must not be modified afterwards.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> SharedSectionData<T> intern(LithiumHashPalette<T> palette, PackedIntegerArray data, int bits) {
+        SharedSectionData<T> probe = new SharedSectionData<>(palette, data, bits);
+
+        synchronized (TABLE) {
+            WeakReference<SharedSectionData<?>> ref = TABLE.get(probe);
+            SharedSectionData<?> existing = ref != null ? ref.get() : null;
+
+            if (existing != null) {
+                return (SharedSectionData<T>) existing;
+            }
+
+            // The shared palette must not notify the container it was copied from, as it never grows
+            SharedSectionData<T> created = new SharedSectionData<>(palette.copy(null), data, bits);
+            TABLE.put(created, new WeakReference<>(created));
+
+            return created;
+        }
+    }
+
+    /**
+     * Returns the number of distinct section contents which are currently shared.
+     */
+    public static int getSharedCount() {
+        synchronized (TABLE) {
+            return TABLE.size();
+        }
+    }
+
+    public LithiumHashPalette<T> getPalette() {
+        return this.palette;
+    }
+
+    public PackedIntegerArray getData() {
+        return this.data;
+    }
+
+    private static int computeHash(LithiumHashPalette<?> palette, PackedIntegerArray data, int bits) {
+        int hash = bits;
+
+        // Palette entries are compared by identity, as block states are singletons
+        for (int i = 0; i < palette.getSize(); i++) {
+            hash = 31 * hash + System.identityHashCode(palette.getByIndex(i));
+        }
+
+        return 31 * hash + Arrays.hashCode(data.getStorage());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (!(obj instanceof SharedSectionData)) {
+            return false;
+        }
+
+        SharedSectionData<?> other = (SharedSectionData<?>) obj;
+
+        if (this.hash != other.hash || this.bits != other.bits || this.palette.getSize() != other.palette.getSize()) {
+            return false;
+        }
+
+        for (int i = 0; i < this.palette.getSize(); i++) {
+            if (this.palette.getByIndex(i) != other.palette.getByIndex(i)) {
+                return false;
+            }
+        }
+
+        return Arrays.equals(this.data.getStorage(), other.data.getStorage());
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+}
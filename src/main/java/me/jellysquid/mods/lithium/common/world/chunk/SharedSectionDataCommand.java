@@ -0,0 +1,28 @@
+package me.jellysquid.mods.lithium.common.world.chunk;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.LiteralText;
+
+/**
+ * Adds the {@code /lithium sections} command, which shows how many distinct chunk section contents are currently
+ * shared by {@link SharedSectionData}.
+ */
+public class SharedSectionDataCommand {
+    public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("lithium")
+                .requires(source -> source.hasPermissionLevel(4))
+                .then(CommandManager.literal("sections")
+                        .executes(SharedSectionDataCommand::report)));
+    }
+
+    private static int report(CommandContext<ServerCommandSource> ctx) {
+        int count = SharedSectionData.getSharedCount();
+
+        ctx.getSource().sendFeedback(new LiteralText(String.format("Shared chunk section contents: %d", count)), false);
+
+        return count;
+    }
+}
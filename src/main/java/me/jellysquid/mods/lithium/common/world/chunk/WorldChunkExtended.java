@@ -0,0 +1,9 @@
+package me.jellysquid.mods.lithium.common.world.chunk;
+
+public interface WorldChunkExtended {
+    /**
+     * @return A counter which changes whenever the blocks or block entities of this chunk are modified, so that data
+     * derived from the chunk can tell whether it is still up to date
+     */
+    int getModificationCount();
+}
@@ -0,0 +1,322 @@
+package me.jellysquid.mods.lithium.common.world.pregen;
+
+import com.mojang.datafixers.util.Either;
+import it.unimi.dsi.fastutil.longs.LongRBTreeSet;
+import me.jellysquid.mods.lithium.common.util.thread.MpscArrayQueue;
+import me.jellysquid.mods.lithium.common.world.chunk.ServerChunkManagerExtended;
+import net.minecraft.server.world.ChunkHolder;
+import net.minecraft.server.world.ChunkTicketType;
+import net.minecraft.server.world.ServerChunkManager;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.WorldSavePath;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkStatus;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Generates all chunks within a square around a center chunk, walking along a {@link ChunkSpiral}. Every chunk is
+ * loaded through a ticket of its own, and only a limited number of chunks are requested at once. A chunk's ticket is
+ * removed as soon as it has been generated, which lets the chunk storage save and unload it as usual.
+ *
+ * The number of chunks in flight is reduced whenever the heap runs full, as generated chunks which are waiting to be
+ * saved could otherwise exhaust the memory, and is slowly raised again when memory becomes available. The progress is
+ * written to a checkpoint file in the world's directory, from which generation can be resumed after a restart.
+ *
+ * All methods must be called on the server thread.
+ */
+public class ChunkPregenerator {
+    private static final Logger LOGGER = LogManager.getLogger("Lithium");
+
+    public static final ChunkTicketType<ChunkPos> TICKET_TYPE =
+            ChunkTicketType.create("lithium_pregen", Comparator.comparingLong(ChunkPos::toLong));
+
+    private static final int MIN_IN_FLIGHT = 16;
+    private static final int IN_FLIGHT_STEP = 8;
+
+    // The fractions of the maximum heap size above which the number of chunks in flight is reduced, or below which it
+    // may grow again. No chunks are requested at all while the heap is above the critical fraction.
+    private static final double HIGH_MEMORY_USAGE = 0.80D;
+    private static final double LOW_MEMORY_USAGE = 0.65D;
+    private static final double CRITICAL_MEMORY_USAGE = 0.90D;
+
+    private static final int ADJUST_INTERVAL = 20;
+    private static final int REPORT_INTERVAL = 20 * 10;
+    private static final int CHECKPOINT_INTERVAL = 20 * 30;
+
+    private final ServerWorld world;
+    private final ServerChunkManager chunkManager;
+
+    private final int centerX, centerZ, radius;
+    private final long chunkCount;
+    private final int maxInFlight;
+
+    // The spiral indices of the chunks which have been requested, but not been generated yet
+    private final LongRBTreeSet inFlight = new LongRBTreeSet();
+
+    // The spiral indices of the chunks which have been generated, written to by the threads completing the futures
+    private final MpscArrayQueue<Long> completed = new MpscArrayQueue<>();
+
+    private final long[] positions;
+    private final List<CompletableFuture<Either<Chunk, ChunkHolder.Unloaded>>> futures = new ArrayList<>();
+
+    private long nextIndex;
+    private long generatedCount;
+    private int limit;
+
+    private int ticks;
+    private int lastAdjustTick;
+
+    private long reportTime;
+    private long reportGeneratedCount;
+    private double chunksPerSecond;
+
+    public ChunkPregenerator(ServerWorld world, int centerX, int centerZ, int radius, long startIndex,
+                             int maxInFlight) {
+        if (!(world.getChunkManager() instanceof ServerChunkManagerExtended)) {
+            throw new IllegalStateException("Pregeneration requires the world.chunk_access optimizations");
+        }
+
+        this.world = world;
+        this.chunkManager = world.getChunkManager();
+
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.radius = radius;
+        this.chunkCount = ChunkSpiral.getChunkCount(radius);
+
+        this.maxInFlight = Math.max(MIN_IN_FLIGHT, maxInFlight);
+        this.limit = this.maxInFlight;
+        this.positions = new long[this.maxInFlight];
+
+        this.nextIndex = startIndex;
+        this.generatedCount = startIndex;
+        this.reportGeneratedCount = startIndex;
+        this.reportTime = System.nanoTime();
+    }
+
+    /**
+     * Collects the generated chunks and requests further chunks. Returns true once all chunks have been generated.
+     */
+    public boolean tick() {
+        this.ticks++;
+
+        this.releaseCompletedChunks();
+        this.adjustLimit();
+        this.requestChunks();
+
+        if (this.isDone()) {
+            this.report();
+            this.deleteCheckpoint();
+
+            return true;
+        }
+
+        if (this.ticks % REPORT_INTERVAL == 0) {
+            this.report();
+        }
+
+        if (this.ticks % CHECKPOINT_INTERVAL == 0) {
+            this.saveCheckpoint();
+        }
+
+        return false;
+    }
+
+    /**
+     * Stops generating chunks and saves the progress. If {@param releaseTickets} is true, the tickets of the chunks
+     * which are still being generated are removed so that they can be unloaded.
+     */
+    public void stop(boolean releaseTickets) {
+        this.releaseCompletedChunks();
+        this.saveCheckpoint();
+
+        if (releaseTickets) {
+            for (long index : this.inFlight) {
+                this.removeTicket(index);
+            }
+
+            this.inFlight.clear();
+        }
+    }
+
+    private boolean isDone() {
+        return this.nextIndex >= this.chunkCount && this.inFlight.isEmpty();
+    }
+
+    private void releaseCompletedChunks() {
+        Long index;
+
+        while ((index = this.completed.poll()) != null) {
+            if (this.inFlight.remove(index.longValue())) {
+                this.removeTicket(index);
+                this.generatedCount++;
+            }
+        }
+    }
+
+    private void removeTicket(long index) {
+        ChunkPos pos = new ChunkPos(ChunkSpiral.getPos(this.centerX, this.centerZ, index));
+
+        this.chunkManager.removeTicket(TICKET_TYPE, pos, 0, pos);
+    }
+
+    /**
+     * Halves the number of chunks in flight when the heap is running full, and raises it step by step while there is
+     * enough free memory and all chunks in flight are in use.
+     */
+    private void adjustLimit() {
+        if (this.ticks - this.lastAdjustTick < ADJUST_INTERVAL) {
+            return;
+        }
+
+        double usage = getMemoryUsage();
+
+        if (usage > HIGH_MEMORY_USAGE && this.limit > MIN_IN_FLIGHT) {
+            this.limit = Math.max(MIN_IN_FLIGHT, this.limit / 2);
+            this.lastAdjustTick = this.ticks;
+        } else if (usage < LOW_MEMORY_USAGE && this.limit < this.maxInFlight && this.inFlight.size() >= this.limit) {
+            this.limit = Math.min(this.maxInFlight, this.limit + IN_FLIGHT_STEP);
+            this.lastAdjustTick = this.ticks;
+        }
+    }
+
+    private void requestChunks() {
+        int count = (int) Math.min(this.limit - this.inFlight.size(), this.chunkCount - this.nextIndex);
+
+        if (count <= 0 || getMemoryUsage() > CRITICAL_MEMORY_USAGE) {
+            return;
+        }
+
+        long firstIndex = this.nextIndex;
+
+        for (int i = 0; i < count; i++) {
+            this.positions[i] = ChunkSpiral.getPos(this.centerX, this.centerZ, firstIndex + i);
+        }
+
+        ((ServerChunkManagerExtended) this.chunkManager)
+                .addTicketsAndLoad(TICKET_TYPE, this.positions, count, ChunkStatus.FULL, this.futures);
+
+        for (int i = 0; i < count; i++) {
+            long index = firstIndex + i;
+
+            this.inFlight.add(index);
+
+            // Chunks which fail to generate are counted as completed too, as retrying them would most likely fail again
+            this.futures.get(i).whenComplete((result, throwable) -> this.completed.offer(index));
+        }
+
+        this.futures.clear();
+        this.nextIndex += count;
+    }
+
+    private void report() {
+        long time = System.nanoTime();
+
+        this.chunksPerSecond = (this.generatedCount - this.reportGeneratedCount) / ((time - this.reportTime) / 1.0E9D);
+        this.reportTime = time;
+        this.reportGeneratedCount = this.generatedCount;
+
+        LOGGER.info(this.getStatus());
+    }
+
+    /**
+     * Returns a human-readable summary of the progress and speed of the generation.
+     */
+    public String getStatus() {
+        return String.format("Pregenerating %s: %d/%d chunks (%.2f%%), %.1f chunks/s, %d in flight (limit %d)",
+                this.world.getRegistryKey().getValue(), this.generatedCount, this.chunkCount,
+                this.generatedCount * 100.0D / this.chunkCount, this.chunksPerSecond, this.inFlight.size(),
+                this.limit);
+    }
+
+    private static double getMemoryUsage() {
+        Runtime runtime = Runtime.getRuntime();
+
+        return (runtime.totalMemory() - runtime.freeMemory()) / (double) runtime.maxMemory();
+    }
+
+    /**
+     * Writes the progress to the checkpoint file. All chunks before the oldest chunk in flight have been generated, so
+     * generation resumes from there.
+     */
+    private void saveCheckpoint() {
+        long index = this.inFlight.isEmpty() ? this.nextIndex : this.inFlight.firstLong();
+
+        Properties properties = new Properties();
+        properties.setProperty("centerX", Integer.toString(this.centerX));
+        properties.setProperty("centerZ", Integer.toString(this.centerZ));
+        properties.setProperty("radius", Integer.toString(this.radius));
+        properties.setProperty("index", Long.toString(index));
+
+        Path path = getCheckpointPath(this.world);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, "Lithium pregeneration checkpoint");
+            }
+
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.warn("Could not save pregeneration checkpoint to {}", path, e);
+        }
+    }
+
+    private void deleteCheckpoint() {
+        Path path = getCheckpointPath(this.world);
+
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOGGER.warn("Could not delete pregeneration checkpoint {}", path, e);
+        }
+    }
+
+    /**
+     * Creates a pregenerator which continues from the checkpoint of the given world, or returns null if the world has
+     * no checkpoint.
+     * @throws IOException If the checkpoint could not be read
+     */
+    public static ChunkPregenerator resume(ServerWorld world, int maxInFlight) throws IOException {
+        Path path = getCheckpointPath(world);
+
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+
+        try (InputStream in = Files.newInputStream(path)) {
+            properties.load(in);
+        }
+
+        try {
+            return new ChunkPregenerator(world, Integer.parseInt(properties.getProperty("centerX")),
+                    Integer.parseInt(properties.getProperty("centerZ")),
+                    Integer.parseInt(properties.getProperty("radius")),
+                    Long.parseLong(properties.getProperty("index")), maxInFlight);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid pregeneration checkpoint " + path, e);
+        }
+    }
+
+    private static Path getCheckpointPath(ServerWorld world) {
+        String name = world.getRegistryKey().getValue().toString().replace(':', '_').replace('/', '_');
+
+        return world.getServer().getSavePath(WorldSavePath.ROOT).resolve("lithium_pregen_" + name + ".properties");
+    }
+}
@@ -0,0 +1,13 @@
+package me.jellysquid.mods.lithium.common.world.pregen;
+
+/**
+ * Implemented by the server chunk manager, which runs the pregenerator of its world on every tick.
+ */
+public interface ChunkPregeneratorHolder {
+    /**
+     * @return The pregenerator of the world, or null if no chunks are being pregenerated
+     */
+    ChunkPregenerator getPregenerator();
+
+    void setPregenerator(ChunkPregenerator pregenerator);
+}
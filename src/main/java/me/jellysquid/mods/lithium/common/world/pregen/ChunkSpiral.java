@@ -0,0 +1,78 @@
+package me.jellysquid.mods.lithium.common.world.pregen;
+
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * Maps indices to the chunks of a square spiral around a center chunk. Index zero is the center chunk, and every
+ * following ring of the spiral is completed before the next ring starts, so that the chunks of a ring can reuse the
+ * neighbouring chunks which were generated for the previous ring.
+ *
+ * As the position of an index can be computed directly, the progress along the spiral can be stored as a single index.
+ */
+public class ChunkSpiral {
+    /**
+     * Returns the number of chunks in a spiral which reaches {@param radius} chunks from its center.
+     */
+    public static long getChunkCount(int radius) {
+        long width = 2L * radius + 1;
+
+        return width * width;
+    }
+
+    /**
+     * Returns the packed position of the chunk at {@param index} of the spiral around the given center chunk.
+     */
+    public static long getPos(int centerX, int centerZ, long index) {
+        if (index == 0) {
+            return ChunkPos.toLong(centerX, centerZ);
+        }
+
+        // Find the ring of the index, which starts at the index (2 * ring - 1)^2
+        long ring = (long) ((Math.sqrt(index) + 1.0D) / 2.0D);
+
+        // Correct the rounding errors of the square root for very large indices
+        while (getRingStart(ring) > index) {
+            ring--;
+        }
+
+        while (getRingStart(ring + 1) <= index) {
+            ring++;
+        }
+
+        long offset = index - getRingStart(ring);
+
+        // Each ring consists of four sides which are twice as long as the ring's radius
+        int side = (int) (offset / (2 * ring));
+        int k = (int) ring;
+        int step = (int) (offset % (2 * ring));
+
+        int x, z;
+
+        switch (side) {
+            case 0:
+                x = k;
+                z = -k + 1 + step;
+                break;
+            case 1:
+                x = k - 1 - step;
+                z = k;
+                break;
+            case 2:
+                x = -k;
+                z = k - 1 - step;
+                break;
+            default:
+                x = -k + 1 + step;
+                z = -k;
+                break;
+        }
+
+        return ChunkPos.toLong(centerX + x, centerZ + z);
+    }
+
+    private static long getRingStart(long ring) {
+        long width = 2 * ring - 1;
+
+        return width * width;
+    }
+}
@@ -0,0 +1,147 @@
+package me.jellysquid.mods.lithium.common.world.pregen;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.exceptions.SimpleCommandExceptionType;
+import me.jellysquid.mods.lithium.common.LithiumMod;
+import me.jellysquid.mods.lithium.common.world.chunk.ServerChunkManagerExtended;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.LiteralText;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.IOException;
+
+/**
+ * Adds the {@code /lithium pregen} command, which controls the {@link ChunkPregenerator} of the world the command is
+ * executed in.
+ * - {@code start <radius> [<x> <z>]} generates all chunks within the given radius in blocks around the given block
+ * coordinates, or around the world spawn.
+ * - {@code resume} continues from the checkpoint written by a previous run.
+ * - {@code stop} stops generating and keeps the checkpoint.
+ * - {@code status} reports the progress and the number of chunks generated per second.
+ */
+public class PregenCommand {
+    private static final SimpleCommandExceptionType ALREADY_RUNNING =
+            new SimpleCommandExceptionType(new LiteralText("Chunks are already being pregenerated in this world"));
+    private static final SimpleCommandExceptionType NOT_RUNNING =
+            new SimpleCommandExceptionType(new LiteralText("No chunks are being pregenerated in this world"));
+    private static final SimpleCommandExceptionType NO_CHECKPOINT =
+            new SimpleCommandExceptionType(new LiteralText("This world has no pregeneration checkpoint"));
+    private static final SimpleCommandExceptionType UNSUPPORTED =
+            new SimpleCommandExceptionType(new LiteralText("Pregeneration requires the world.chunk_access option"));
+
+    public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("lithium")
+                .requires(source -> source.hasPermissionLevel(4))
+                .then(CommandManager.literal("pregen")
+                        .then(CommandManager.literal("start")
+                                .then(CommandManager.argument("radius", IntegerArgumentType.integer(1, 30_000_000))
+                                        .executes(ctx -> {
+                                            BlockPos spawn = ctx.getSource().getWorld().getSpawnPos();
+
+                                            return start(ctx, spawn.getX(), spawn.getZ());
+                                        })
+                                        .then(CommandManager.argument("x", IntegerArgumentType.integer())
+                                                .then(CommandManager.argument("z", IntegerArgumentType.integer())
+                                                        .executes(ctx -> start(ctx,
+                                                                IntegerArgumentType.getInteger(ctx, "x"),
+                                                                IntegerArgumentType.getInteger(ctx, "z")))))))
+                        .then(CommandManager.literal("resume")
+                                .executes(PregenCommand::resume))
+                        .then(CommandManager.literal("stop")
+                                .executes(PregenCommand::stop))
+                        .then(CommandManager.literal("status")
+                                .executes(PregenCommand::status))));
+    }
+
+    private static int start(CommandContext<ServerCommandSource> ctx, int x, int z) throws CommandSyntaxException {
+        ServerWorld world = ctx.getSource().getWorld();
+        ChunkPregeneratorHolder holder = getHolder(world);
+
+        if (holder.getPregenerator() != null) {
+            throw ALREADY_RUNNING.create();
+        }
+
+        int radius = (IntegerArgumentType.getInteger(ctx, "radius") + 15) >> 4;
+
+        return run(ctx, holder, new ChunkPregenerator(world, x >> 4, z >> 4, radius, 0, getMaxInFlight()));
+    }
+
+    private static int resume(CommandContext<ServerCommandSource> ctx) throws CommandSyntaxException {
+        ServerWorld world = ctx.getSource().getWorld();
+        ChunkPregeneratorHolder holder = getHolder(world);
+
+        if (holder.getPregenerator() != null) {
+            throw ALREADY_RUNNING.create();
+        }
+
+        ChunkPregenerator pregenerator;
+
+        try {
+            pregenerator = ChunkPregenerator.resume(world, getMaxInFlight());
+        } catch (IOException e) {
+            throw new SimpleCommandExceptionType(new LiteralText("Could not read the pregeneration checkpoint: " +
+                    e.getMessage())).create();
+        }
+
+        if (pregenerator == null) {
+            throw NO_CHECKPOINT.create();
+        }
+
+        return run(ctx, holder, pregenerator);
+    }
+
+    private static int run(CommandContext<ServerCommandSource> ctx, ChunkPregeneratorHolder holder,
+                           ChunkPregenerator pregenerator) {
+        holder.setPregenerator(pregenerator);
+
+        ctx.getSource().sendFeedback(new LiteralText(pregenerator.getStatus()), true);
+
+        return 1;
+    }
+
+    private static int stop(CommandContext<ServerCommandSource> ctx) throws CommandSyntaxException {
+        ChunkPregeneratorHolder holder = getHolder(ctx.getSource().getWorld());
+        ChunkPregenerator pregenerator = holder.getPregenerator();
+
+        if (pregenerator == null) {
+            throw NOT_RUNNING.create();
+        }
+
+        pregenerator.stop(true);
+        holder.setPregenerator(null);
+
+        ctx.getSource().sendFeedback(new LiteralText("Stopped pregenerating, use /lithium pregen resume to continue"),
+                true);
+
+        return 1;
+    }
+
+    private static int status(CommandContext<ServerCommandSource> ctx) throws CommandSyntaxException {
+        ChunkPregenerator pregenerator = getHolder(ctx.getSource().getWorld()).getPregenerator();
+
+        if (pregenerator == null) {
+            throw NOT_RUNNING.create();
+        }
+
+        ctx.getSource().sendFeedback(new LiteralText(pregenerator.getStatus()), false);
+
+        return 1;
+    }
+
+    private static ChunkPregeneratorHolder getHolder(ServerWorld world) throws CommandSyntaxException {
+        if (!(world.getChunkManager() instanceof ServerChunkManagerExtended)) {
+            throw UNSUPPORTED.create();
+        }
+
+        return (ChunkPregeneratorHolder) world.getChunkManager();
+    }
+
+    private static int getMaxInFlight() {
+        return LithiumMod.CONFIG.getValue("world.pregen.max_chunks_in_flight");
+    }
+}
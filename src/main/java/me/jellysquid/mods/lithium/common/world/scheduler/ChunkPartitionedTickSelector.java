@@ -0,0 +1,91 @@
+package me.jellysquid.mods.lithium.common.world.scheduler;
+
+import net.minecraft.util.math.BlockPos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Selects the ticks to execute from a scheduler which is partitioned by chunk. Instead of walking every bucket of the
+ * world in order, only the chunks which have due ticks and can be ticked are visited:
+ * - On the main thread, the chunks with due ticks are checked for whether or not they can be ticked
+ * - The due ticks of each of these chunks are collected in parallel, as every chunk owns its own ordered buckets
+ * - The per-chunk lists are merged on the main thread in (time, priority, insertion) order, which produces exactly the
+ *   same execution order as selecting from a single global index
+ */
+public class ChunkPartitionedTickSelector<T> {
+    // Below this number of chunks, collecting the due ticks is cheaper than handing the work off to other threads
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    private final ArrayList<ChunkTickPartition<T>> activePartitions = new ArrayList<>();
+    private final PriorityQueue<ChunkTickPartition<T>> mergeQueue =
+            new PriorityQueue<>(ChunkTickPartition::compareDueTicks);
+
+    /**
+     * Selects up to {@param limit} scheduled ticks with a bucket key strictly less than {@param headKey} from the
+     * given partitions and adds them to {@param out} in execution order. Selected ticks are marked as executing.
+     *
+     * @return The number of ticks which were selected
+     */
+    public int selectTicks(Iterable<ChunkTickPartition<T>> partitions, long headKey, int limit,
+                           Predicate<BlockPos> canTick, List<TickEntry<T>> out) {
+        ArrayList<ChunkTickPartition<T>> active = this.activePartitions;
+
+        // Chunk availability can only be queried from the main thread
+        for (ChunkTickPartition<T> partition : partitions) {
+            if (partition.hasQueuesBefore(headKey) && canTick.test(partition.origin)) {
+                active.add(partition);
+            }
+        }
+
+        if (active.size() >= PARALLEL_THRESHOLD) {
+            IntStream.range(0, active.size())
+                    .parallel()
+                    .forEach(i -> active.get(i).collectDueTicks(headKey));
+        } else {
+            for (ChunkTickPartition<T> partition : active) {
+                partition.collectDueTicks(headKey);
+            }
+        }
+
+        PriorityQueue<ChunkTickPartition<T>> queue = this.mergeQueue;
+
+        for (ChunkTickPartition<T> partition : active) {
+            if (partition.hasDueTicks()) {
+                queue.add(partition);
+            }
+        }
+
+        int selected = 0;
+
+        // [VanillaCopy] ServerTickScheduler#tick
+        // Ticks beyond the limit are left in their buckets to keep the vanilla behaviour of tick suppression
+        while (selected < limit && !queue.isEmpty()) {
+            ChunkTickPartition<T> partition = queue.poll();
+
+            TickEntry<T> tick = partition.pollDueTick();
+            tick.scheduled = false;
+            tick.executing = true;
+
+            out.add(tick);
+            selected++;
+
+            if (partition.hasDueTicks()) {
+                queue.add(partition);
+            }
+        }
+
+        queue.clear();
+
+        for (ChunkTickPartition<T> partition : active) {
+            partition.finishSelection(headKey);
+        }
+
+        active.clear();
+
+        return selected;
+    }
+}
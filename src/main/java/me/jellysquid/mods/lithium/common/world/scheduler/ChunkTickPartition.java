@@ -0,0 +1,197 @@
+package me.jellysquid.mods.lithium.common.world.scheduler;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectAVLTreeMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectSortedMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectBidirectionalIterator;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.ArrayList;
+
+/**
+ * The set of all ticks belonging to a single chunk. When the scheduler is partitioned by chunk (see
+ * {@link ChunkPartitionedTickSelector}), each partition additionally owns the time-ordered buckets of its ticks, which
+ * allows the due ticks of many chunks to be collected independently of each other.
+ */
+public class ChunkTickPartition<T> extends ObjectOpenHashSet<TickEntry<T>> {
+    /**
+     * The distance in blocks beyond the chunk's border from which vanilla includes ticks when saving a chunk.
+     */
+    public static final int BORDER_DISTANCE = 2;
+
+    /**
+     * A position within the chunk, used for checking whether or not the chunk can be ticked.
+     */
+    public final BlockPos origin;
+
+    // The time-ordered buckets of this chunk, only initialized if the scheduler is partitioned
+    private Long2ObjectSortedMap<TickEntryQueue<T>> scheduledTicksOrdered;
+
+    // The ticks which are due for execution and their bucket keys, collected during selection
+    private final ArrayList<TickEntry<T>> dueTicks = new ArrayList<>();
+    private final LongArrayList dueKeys = new LongArrayList();
+    private int duePos;
+
+    // Set whenever a tick is added to or removed from this chunk, see hasTicksNearBorder()
+    private boolean dirty = true;
+    private boolean hasTicksNearBorder;
+
+    public ChunkTickPartition(long chunk) {
+        super(8);
+
+        this.origin = new BlockPos(ChunkPos.getPackedX(chunk) << 4, 0, ChunkPos.getPackedZ(chunk) << 4);
+    }
+
+    @Override
+    public boolean add(TickEntry<T> tick) {
+        this.dirty = true;
+
+        return super.add(tick);
+    }
+
+    @Override
+    public boolean remove(Object tick) {
+        this.dirty = true;
+
+        return super.remove(tick);
+    }
+
+    /**
+     * Returns true if any tick in this chunk lies within {@link #BORDER_DISTANCE} blocks of the chunk's border. When a
+     * chunk is saved, vanilla includes the ticks of neighbouring chunks which lie within this distance of it, so most
+     * neighbouring chunks can be skipped entirely. The result is cached until ticks are added or removed.
+     */
+    public boolean hasTicksNearBorder() {
+        if (this.dirty) {
+            this.hasTicksNearBorder = false;
+
+            for (TickEntry<T> tick : this) {
+                int x = tick.pos.getX() & 15;
+                int z = tick.pos.getZ() & 15;
+
+                if (isNearBorder(x) || isNearBorder(z)) {
+                    this.hasTicksNearBorder = true;
+
+                    break;
+                }
+            }
+
+            this.dirty = false;
+        }
+
+        return this.hasTicksNearBorder;
+    }
+
+    private static boolean isNearBorder(int local) {
+        return local < BORDER_DISTANCE || local >= 16 - BORDER_DISTANCE;
+    }
+
+    public TickEntryQueue<T> getOrCreateQueue(long key) {
+        if (this.scheduledTicksOrdered == null) {
+            this.scheduledTicksOrdered = new Long2ObjectAVLTreeMap<>();
+        }
+
+        TickEntryQueue<T> queue = this.scheduledTicksOrdered.get(key);
+
+        if (queue == null) {
+            this.scheduledTicksOrdered.put(key, queue = new TickEntryQueue<>());
+        }
+
+        return queue;
+    }
+
+    public int getQueueCount() {
+        return this.scheduledTicksOrdered != null ? this.scheduledTicksOrdered.size() : 0;
+    }
+
+    /**
+     * Returns true if this chunk has any buckets with a key strictly less than {@param headKey}.
+     */
+    public boolean hasQueuesBefore(long headKey) {
+        return this.scheduledTicksOrdered != null && !this.scheduledTicksOrdered.isEmpty() &&
+                this.scheduledTicksOrdered.firstLongKey() < headKey;
+    }
+
+    /**
+     * Collects all scheduled ticks in this chunk with a bucket key strictly less than {@param headKey} in execution
+     * order. This only reads the state of this partition, so different partitions may be collected concurrently.
+     */
+    void collectDueTicks(long headKey) {
+        Long2ObjectSortedMap<TickEntryQueue<T>> queues = this.scheduledTicksOrdered.headMap(headKey);
+
+        for (Long2ObjectMap.Entry<TickEntryQueue<T>> entry : queues.long2ObjectEntrySet()) {
+            TickEntryQueue<T> queue = entry.getValue();
+            long key = entry.getLongKey();
+
+            for (int i = 0; i < queue.size(); i++) {
+                TickEntry<T> tick = queue.getTickAtIndex(i);
+
+                if (tick.scheduled) {
+                    this.dueTicks.add(tick);
+                    this.dueKeys.add(key);
+                }
+            }
+        }
+
+        this.duePos = 0;
+    }
+
+    boolean hasDueTicks() {
+        return this.duePos < this.dueTicks.size();
+    }
+
+    TickEntry<T> pollDueTick() {
+        return this.dueTicks.get(this.duePos++);
+    }
+
+    /**
+     * Orders partitions by the next due tick of each, using the same (time, priority, insertion) order as the
+     * global scheduler.
+     */
+    static int compareDueTicks(ChunkTickPartition<?> a, ChunkTickPartition<?> b) {
+        int cmp = Long.compare(a.dueKeys.getLong(a.duePos), b.dueKeys.getLong(b.duePos));
+
+        if (cmp != 0) {
+            return cmp;
+        }
+
+        return Long.compare(a.dueTicks.get(a.duePos).order, b.dueTicks.get(b.duePos).order);
+    }
+
+    /**
+     * Removes all ticks which are no longer scheduled (because they were selected for execution or removed) from the
+     * buckets before {@param headKey}, and releases the due tick list.
+     */
+    void finishSelection(long headKey) {
+        ObjectBidirectionalIterator<Long2ObjectMap.Entry<TickEntryQueue<T>>> it =
+                this.scheduledTicksOrdered.headMap(headKey).long2ObjectEntrySet().iterator();
+
+        while (it.hasNext()) {
+            TickEntryQueue<T> queue = it.next().getValue();
+
+            // Pointer for writing scheduled ticks back into the queue
+            int w = 0;
+
+            for (int i = 0; i < queue.size(); i++) {
+                TickEntry<T> tick = queue.getTickAtIndex(i);
+
+                if (tick.scheduled) {
+                    queue.setTickAtIndex(w++, tick);
+                }
+            }
+
+            queue.resize(w);
+
+            if (queue.isEmpty()) {
+                it.remove();
+            }
+        }
+
+        this.dueTicks.clear();
+        this.dueKeys.clear();
+        this.duePos = 0;
+    }
+}
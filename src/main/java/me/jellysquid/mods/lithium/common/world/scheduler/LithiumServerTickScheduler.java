@@ -1,9 +1,10 @@
 package me.jellysquid.mods.lithium.common.world.scheduler;
 
-import it.unimi.dsi.fastutil.longs.Long2ObjectAVLTreeMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.longs.Long2ObjectSortedMap;
-import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import me.jellysquid.mods.lithium.common.LithiumMod;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
 import net.minecraft.server.world.ServerChunkManager;
 import net.minecraft.server.world.ServerTickScheduler;
 import net.minecraft.server.world.ServerWorld;
@@ -36,21 +37,47 @@ import java.util.function.Predicate;
  * - We avoid repeatedly asking if a chunk is available by trying to re-use the previous computation if it involves the
  *   same chunk, reducing a lot of map operations elsewhere.
  *
- * - Ticks are stored in a HashMap with their execution state, meaning that redstone gates and other blocks which check
- *   to see if something is scheduled/executing will not have to scan a potentially very large array (which can occur
- *   when many ticks have been scheduled.)
+ * - Ticks are stored in a hash table indexed by their packed position with their execution state, meaning that
+ *   redstone gates and other blocks which check to see if something is scheduled/executing will not have to scan a
+ *   potentially very large array (which can occur when many ticks have been scheduled) or allocate a lookup key.
+ *
+ * - When saving a chunk, ticks are serialized straight from the chunk index and neighbouring chunks without any ticks
+ *   near their border are skipped.
+ *
+ * - Optionally, metrics describing the workload of the scheduler can be recorded (see {@link TickSchedulerMetrics}.)
+ *
+ * - Optionally, the buckets can be stored in a timing wheel (see {@link TimingWheelTickQueueIndex}) instead of a tree,
+ *   which avoids the logarithmic cost of tree operations when very many buckets exist.
+ *
+ * - Optionally, the buckets can be partitioned by chunk (see {@link ChunkPartitionedTickSelector}) so that selecting
+ *   ticks only visits the chunks which have due ticks and can be ticked.
  */
 public class LithiumServerTickScheduler<T> extends ServerTickScheduler<T> {
     private static final Predicate<TickEntry<?>> PREDICATE_ANY_TICK = entry -> true;
     private static final Predicate<TickEntry<?>> PREDICATE_ACTIVE_TICKS = entry -> !entry.consumed;
 
-    private final Long2ObjectSortedMap<TickEntryQueue<T>> scheduledTicksOrdered = new Long2ObjectAVLTreeMap<>();
-    private final Long2ObjectOpenHashMap<Set<TickEntry<T>>> scheduledTicksByChunk = new Long2ObjectOpenHashMap<>();
+    private static final int TIMING_WHEEL_SIZE = 256;
+
+    // Only one of these is used, depending on whether or not the scheduler is partitioned by chunk
+    private final TickQueueIndex<T> scheduledTicksOrdered;
+    private final ChunkPartitionedTickSelector<T> partitionedTickSelector;
+
+    private final Long2ObjectOpenHashMap<ChunkTickPartition<T>> scheduledTicksByChunk = new Long2ObjectOpenHashMap<>();
 
-    private final Map<ScheduledTick<T>, TickEntry<T>> scheduledTicks = new HashMap<>();
+    private final TickEntryPositionIndex<T> scheduledTicks = new TickEntryPositionIndex<>();
     private final ArrayList<TickEntry<T>> executingTicks = new ArrayList<>();
 
+    // Incremented every time a tick is pushed into a bucket, used for ordering ticks across chunk partitions
+    private long nextTickOrder;
+
+    // Caches the string form of each object's identifier, which would otherwise be re-built for every saved tick
+    private final Reference2ObjectOpenHashMap<T, String> objectNames = new Reference2ObjectOpenHashMap<>();
+
+    // Null if metrics are disabled
+    private final TickSchedulerMetrics<T> metrics;
+
     private final Predicate<T> invalidObjPredicate;
+    private final Function<T, Identifier> idToName;
     private final ServerWorld world;
     private final Consumer<ScheduledTick<T>> tickConsumer;
 
@@ -58,12 +85,42 @@ public class LithiumServerTickScheduler<T> extends ServerTickScheduler<T> {
         super(world, invalidPredicate, idToName, tickConsumer);
 
         this.invalidObjPredicate = invalidPredicate;
+        this.idToName = idToName;
         this.world = world;
         this.tickConsumer = tickConsumer;
+
+        if (LithiumMod.CONFIG.isRuleEnabled("world.tick_scheduler.chunk_partitions")) {
+            this.scheduledTicksOrdered = null;
+            this.partitionedTickSelector = new ChunkPartitionedTickSelector<>();
+        } else if (LithiumMod.CONFIG.isRuleEnabled("world.tick_scheduler.timing_wheel")) {
+            this.scheduledTicksOrdered = new TimingWheelTickQueueIndex<>(TIMING_WHEEL_SIZE, world.getTime());
+            this.partitionedTickSelector = null;
+        } else {
+            this.scheduledTicksOrdered = new TreeTickQueueIndex<>();
+            this.partitionedTickSelector = null;
+        }
+
+        if (LithiumMod.CONFIG.isRuleEnabled("world.tick_scheduler.metrics")) {
+            this.metrics = new TickSchedulerMetrics<>();
+
+            TickSchedulerMetricsRegistry.register(this);
+        } else {
+            this.metrics = null;
+        }
     }
 
     @Override
     public void tick() {
+        if (this.metrics != null) {
+            if (this.metrics.isReportDue()) {
+                TickSchedulerMetricsRegistry.dumpToLog(this);
+
+                this.metrics.reset();
+            }
+
+            this.metrics.onWorldTick();
+        }
+
         this.world.getProfiler().push("cleaning");
 
         this.selectTicks(this.world.getChunkManager(), this.world.getTime());
@@ -77,7 +134,7 @@ public class LithiumServerTickScheduler<T> extends ServerTickScheduler<T> {
 
     @Override
     public boolean isTicking(BlockPos pos, T obj) {
-        TickEntry<T> entry = this.scheduledTicks.get(new ScheduledTick<>(pos, obj));
+        TickEntry<T> entry = this.scheduledTicks.get(pos, obj);
 
         if (entry == null) {
             return false;
@@ -88,7 +145,7 @@ public class LithiumServerTickScheduler<T> extends ServerTickScheduler<T> {
 
     @Override
     public boolean isScheduled(BlockPos pos, T obj) {
-        TickEntry<T> entry = this.scheduledTicks.get(new ScheduledTick<>(pos, obj));
+        TickEntry<T> entry = this.scheduledTicks.get(pos, obj);
 
         if (entry == null) {
             return false;
@@ -109,6 +166,69 @@ public class LithiumServerTickScheduler<T> extends ServerTickScheduler<T> {
         return this.collectTicks(box, remove, getStaleTicks ? PREDICATE_ANY_TICK : PREDICATE_ACTIVE_TICKS);
     }
 
+    /**
+     * Serializes the ticks which vanilla saves alongside the given chunk. Instead of collecting the ticks of the
+     * surrounding chunks into an intermediate list, ticks are written straight from the chunk index, and neighbouring
+     * chunks without any ticks near their border are skipped entirely.
+     */
+    @Override
+    public ListTag toTag(ChunkPos chunkPos) {
+        // [VanillaCopy] ServerTickScheduler#getScheduledTicksInChunk
+        BlockBox box = new BlockBox(chunkPos.getStartX() - 2, chunkPos.getStartZ() - 2, chunkPos.getEndX() + 2, chunkPos.getEndZ() + 2);
+
+        ListTag list = new ListTag();
+        long time = this.world.getTime();
+
+        for (int chunkX = chunkPos.x - 1; chunkX <= chunkPos.x + 1; chunkX++) {
+            for (int chunkZ = chunkPos.z - 1; chunkZ <= chunkPos.z + 1; chunkZ++) {
+                ChunkTickPartition<T> set = this.scheduledTicksByChunk.get(ChunkPos.toLong(chunkX, chunkZ));
+
+                if (set == null) {
+                    continue;
+                }
+
+                // Neighbouring chunks can only contribute ticks which lie near their border
+                boolean center = chunkX == chunkPos.x && chunkZ == chunkPos.z;
+
+                if (!center && !set.hasTicksNearBorder()) {
+                    continue;
+                }
+
+                for (TickEntry<T> tick : set) {
+                    // The box also limits the height of the ticks, so it must be checked for the chunk itself too
+                    if (box.contains(tick.pos)) {
+                        list.add(this.serializeTick(tick, time));
+                    }
+                }
+            }
+        }
+
+        return list;
+    }
+
+    // [VanillaCopy] ServerTickScheduler#serializeScheduledTicks
+    private CompoundTag serializeTick(TickEntry<T> tick, long time) {
+        CompoundTag tag = new CompoundTag();
+        tag.putString("i", this.getObjectName(tick.getObject()));
+        tag.putInt("x", tick.pos.getX());
+        tag.putInt("y", tick.pos.getY());
+        tag.putInt("z", tick.pos.getZ());
+        tag.putInt("t", (int) (tick.time - time));
+        tag.putInt("p", tick.priority.getIndex());
+
+        return tag;
+    }
+
+    private String getObjectName(T obj) {
+        String name = this.objectNames.get(obj);
+
+        if (name == null) {
+            this.objectNames.put(obj, name = this.idToName.apply(obj).toString());
+        }
+
+        return name;
+    }
+
     @Override
     public void copyScheduledTicks(BlockBox box, BlockPos pos) {
         List<ScheduledTick<T>> list = this.getScheduledTicks(box, false, false);
@@ -130,15 +250,7 @@ public class LithiumServerTickScheduler<T> extends ServerTickScheduler<T> {
      */
     @Override
     public int getTicks() {
-        int count = 0;
-
-        for (TickEntry<T> entry : this.scheduledTicks.values()) {
-            if (entry.scheduled) {
-                count += 1;
-            }
-        }
-
-        return count;
+        return this.scheduledTicks.countScheduled();
     }
 
     /**
@@ -153,11 +265,18 @@ public class LithiumServerTickScheduler<T> extends ServerTickScheduler<T> {
         // tick suppression.
         int limit = 65565;
 
+        if (this.partitionedTickSelector != null) {
+            this.partitionedTickSelector.selectTicks(this.scheduledTicksByChunk.values(), headKey, limit,
+                    chunkManager::shouldTickBlock, this.executingTicks);
+
+            return;
+        }
+
         boolean canTick = true;
         long prevChunk = Long.MIN_VALUE;
 
         // Create an iterator over only
-        Iterator<TickEntryQueue<T>> it = this.scheduledTicksOrdered.headMap(headKey).values().iterator();
+        Iterator<TickEntryQueue<T>> it = this.scheduledTicksOrdered.iterateQueuesBefore(headKey);
 
         // Iterate over all scheduled ticks and enqueue them for until we exceed our budget
         while (limit > 0 && it.hasNext()) {
@@ -214,15 +333,23 @@ public class LithiumServerTickScheduler<T> extends ServerTickScheduler<T> {
                 it.remove();
             }
         }
+
+        this.scheduledTicksOrdered.onTicksSelected(time);
     }
 
     public void executeTicks(Consumer<ScheduledTick<T>> consumer) {
+        long time = this.world.getTime();
+
         // Mark and execute all executing ticks
         for (TickEntry<T> tick : this.executingTicks) {
             try {
                 // Mark as consumed before execution per vanilla behaviour
                 tick.executing = false;
 
+                if (this.metrics != null) {
+                    this.metrics.onTickExecuted(tick, time);
+                }
+
                 // Perform tick execution
                 consumer.accept(tick);
 
@@ -258,7 +385,7 @@ public class LithiumServerTickScheduler<T> extends ServerTickScheduler<T> {
             for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
                 long chunk = ChunkPos.toLong(chunkX, chunkZ);
 
-                Set<TickEntry<T>> set = this.scheduledTicksByChunk.get(chunk);
+                ChunkTickPartition<T> set = this.scheduledTicksByChunk.get(chunk);
 
                 if (set == null) {
                     continue;
@@ -290,18 +417,73 @@ public class LithiumServerTickScheduler<T> extends ServerTickScheduler<T> {
      * scheduled ticks which are set to execute at a different time.
      */
     private void addScheduledTick(ScheduledTick<T> tick) {
-        TickEntry<T> entry = this.scheduledTicks.computeIfAbsent(tick, this::createTickEntry);
+        TickEntry<T> entry = this.scheduledTicks.get(tick.pos, tick.getObject());
+
+        if (entry == null) {
+            this.scheduledTicks.add(entry = this.createTickEntry(tick));
+        }
 
         if (!entry.scheduled) {
-            TickEntryQueue<T> timeIdx = this.scheduledTicksOrdered.computeIfAbsent(getBucketKey(tick.time, tick.priority), key -> new TickEntryQueue<>());
+            long key = getBucketKey(tick.time, tick.priority);
+
+            TickEntryQueue<T> timeIdx;
+
+            if (this.partitionedTickSelector != null) {
+                timeIdx = entry.chunkIdx.getOrCreateQueue(key);
+            } else {
+                timeIdx = this.scheduledTicksOrdered.getOrCreateQueue(key);
+            }
+
             timeIdx.push(entry);
 
+            entry.order = this.nextTickOrder++;
+
             entry.scheduled = true;
+
+            if (this.metrics != null) {
+                this.metrics.onTickScheduled();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of time-ordered buckets currently in use.
+     */
+    public int getBucketCount() {
+        if (this.partitionedTickSelector == null) {
+            return this.scheduledTicksOrdered.getQueueCount();
+        }
+
+        int count = 0;
+
+        for (ChunkTickPartition<T> partition : this.scheduledTicksByChunk.values()) {
+            count += partition.getQueueCount();
         }
+
+        return count;
+    }
+
+    /**
+     * Returns the metrics of this scheduler, or null if metrics are disabled.
+     */
+    public TickSchedulerMetrics<T> getMetrics() {
+        return this.metrics;
+    }
+
+    public void appendMetricsReport(List<String> lines, int topN) {
+        if (this.metrics == null) {
+            return;
+        }
+
+        String type = (Object) this.world.getBlockTickScheduler() == this ? "block ticks" : "fluid ticks";
+        String name = this.world.getRegistryKey().getValue() + " " + type;
+
+        this.metrics.appendReport(lines, name, this.getBucketCount(), this.idToName, topN);
     }
 
     private TickEntry<T> createTickEntry(ScheduledTick<T> tick) {
-        Set<TickEntry<T>> chunkIdx = this.scheduledTicksByChunk.computeIfAbsent(getChunkKey(tick.pos), LithiumServerTickScheduler::createChunkIndex);
+        ChunkTickPartition<T> chunkIdx = this.scheduledTicksByChunk.computeIfAbsent(getChunkKey(tick.pos),
+                LithiumServerTickScheduler::createChunkIndex);
 
         return new TickEntry<>(tick, chunkIdx);
     }
@@ -319,8 +501,8 @@ public class LithiumServerTickScheduler<T> extends ServerTickScheduler<T> {
         this.scheduledTicks.remove(tick);
     }
 
-    private static <T> Set<TickEntry<T>> createChunkIndex(long pos) {
-        return new ObjectOpenHashSet<>(8);
+    private static <T> ChunkTickPartition<T> createChunkIndex(long pos) {
+        return new ChunkTickPartition<>(pos);
     }
 
     // Computes a chunk key from a block position
@@ -331,7 +513,7 @@ public class LithiumServerTickScheduler<T> extends ServerTickScheduler<T> {
     // Computes a timestamped key including the tick's priority
     // Keys can be sorted in descending order to find what should be executed first
     // 60 time bits, 4 priority bits
-    private static long getBucketKey(long time, TickPriority priority) {
+    static long getBucketKey(long time, TickPriority priority) {
         return (time << 4L) | (priority.ordinal() & 15);
     }
 }
\ No newline at end of file
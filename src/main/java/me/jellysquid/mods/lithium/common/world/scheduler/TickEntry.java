@@ -2,8 +2,6 @@ package me.jellysquid.mods.lithium.common.world.scheduler;
 
 import net.minecraft.world.ScheduledTick;
 
-import java.util.Set;
-
 /**
  * A wrapper type for {@link ScheduledTick} which adds fields to mark the state of the tick in the scheduler's pipeline.
  */
@@ -29,12 +27,23 @@ public class TickEntry<T> extends ScheduledTick<T> {
      */
     public boolean consumed = false;
 
+    /**
+     * The order in which this tick was last pushed into a bucket. Ticks within the same bucket are executed in this
+     * order, which is used for merging the buckets of different chunks.
+     */
+    public long order;
+
+    /**
+     * The next entry at the same block position, see {@link TickEntryPositionIndex}.
+     */
+    public TickEntry<T> nextAtPos;
+
     /**
      * A pointer to the chunk index belonging to this scheduled tick.
      */
-    public final Set<TickEntry<T>> chunkIdx;
+    public final ChunkTickPartition<T> chunkIdx;
 
-    public TickEntry(ScheduledTick<T> tick, Set<TickEntry<T>> chunkIdx) {
+    public TickEntry(ScheduledTick<T> tick, ChunkTickPartition<T> chunkIdx) {
         super(tick.pos, tick.getObject(), tick.time, tick.priority);
 
         this.chunkIdx = chunkIdx;
@@ -0,0 +1,99 @@
+package me.jellysquid.mods.lithium.common.world.scheduler;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * Indexes tick entries by their packed block position, allowing a tick to be looked up by its position and object
+ * without allocating a {@link net.minecraft.world.ScheduledTick} key as a {@link java.util.HashMap} would require.
+ * Redstone components check whether or not a tick is scheduled very frequently, so this is a hot path.
+ *
+ * The entries of a position are stored as an intrusive singly linked list (see {@link TickEntry#nextAtPos}) with the
+ * head stored in an open-addressed map. Positions rarely hold ticks for more than one or two objects (i.e. a block and
+ * its fluid), so walking the list is very cheap.
+ */
+public class TickEntryPositionIndex<T> {
+    private final Long2ObjectOpenHashMap<TickEntry<T>> heads = new Long2ObjectOpenHashMap<>();
+
+    private int size;
+
+    /**
+     * Returns the tick entry for the given position and object, or null if none exists.
+     */
+    public TickEntry<T> get(BlockPos pos, T obj) {
+        TickEntry<T> entry = this.heads.get(pos.asLong());
+
+        while (entry != null) {
+            if (entry.getObject() == obj) {
+                return entry;
+            }
+
+            entry = entry.nextAtPos;
+        }
+
+        return null;
+    }
+
+    /**
+     * Adds a tick entry to the index. The caller must ensure that no entry exists for the same position and object.
+     */
+    public void add(TickEntry<T> entry) {
+        entry.nextAtPos = this.heads.put(entry.pos.asLong(), entry);
+
+        this.size++;
+    }
+
+    /**
+     * Removes a tick entry from the index if it is present.
+     */
+    public void remove(TickEntry<T> entry) {
+        long pos = entry.pos.asLong();
+
+        TickEntry<T> head = this.heads.get(pos);
+
+        if (head == entry) {
+            if (entry.nextAtPos == null) {
+                this.heads.remove(pos);
+            } else {
+                this.heads.put(pos, entry.nextAtPos);
+            }
+        } else {
+            TickEntry<T> prev = head;
+
+            while (prev != null && prev.nextAtPos != entry) {
+                prev = prev.nextAtPos;
+            }
+
+            if (prev == null) {
+                return;
+            }
+
+            prev.nextAtPos = entry.nextAtPos;
+        }
+
+        entry.nextAtPos = null;
+
+        this.size--;
+    }
+
+    /**
+     * Returns the number of entries in this index which are scheduled for execution.
+     */
+    public int countScheduled() {
+        int count = 0;
+
+        for (TickEntry<T> head : this.heads.values()) {
+            for (TickEntry<T> entry = head; entry != null; entry = entry.nextAtPos) {
+                if (entry.scheduled) {
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    public int size() {
+        return this.size;
+    }
+}
@@ -0,0 +1,32 @@
+package me.jellysquid.mods.lithium.common.world.scheduler;
+
+import java.util.Iterator;
+
+/**
+ * Stores the time-ordered buckets of a {@link LithiumServerTickScheduler}. Each bucket is identified by a key composed
+ * of the scheduled time and priority of its ticks (see {@link LithiumServerTickScheduler#getBucketKey}), and buckets
+ * must always be visited in ascending key order so that ticks are executed in the same order as vanilla.
+ */
+public interface TickQueueIndex<T> {
+    /**
+     * Returns the bucket for the given key, creating it if it does not exist yet.
+     */
+    TickEntryQueue<T> getOrCreateQueue(long key);
+
+    /**
+     * Returns an iterator over all buckets with a key strictly less than {@param headKey} in ascending key order. The
+     * iterator supports {@link Iterator#remove()} for dropping buckets which have been emptied.
+     */
+    Iterator<TickEntryQueue<T>> iterateQueuesBefore(long headKey);
+
+    /**
+     * Notifies the index that all ticks scheduled at or before the given time have been selected for this world tick.
+     * Buckets for these times may still contain ticks which could not be executed, and must be kept in order.
+     */
+    void onTicksSelected(long time);
+
+    /**
+     * Returns the number of buckets currently stored in this index.
+     */
+    int getQueueCount();
+}
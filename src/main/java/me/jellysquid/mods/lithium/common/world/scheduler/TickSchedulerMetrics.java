@@ -0,0 +1,128 @@
+package me.jellysquid.mods.lithium.common.world.scheduler;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Counters describing the workload of a {@link LithiumServerTickScheduler}, used for finding out why block or fluid
+ * ticks spike. Schedulers only create this object when metrics are enabled, so recording costs nothing otherwise.
+ *
+ * Counters are recorded and read on the server thread. All counters except the per-tick values accumulate for
+ * {@link #REPORT_INTERVAL} world ticks, after which the scheduler writes them to the log and resets them. This also
+ * keeps the per-object and per-chunk counts from growing for as long as the server is running.
+ */
+public class TickSchedulerMetrics<T> {
+    /**
+     * The number of world ticks after which the metrics are logged and reset (five minutes).
+     */
+    public static final int REPORT_INTERVAL = 20 * 60 * 5;
+
+    // The number of ticks scheduled and executed during the current world tick
+    private int scheduled, executed;
+
+    // The values of the above counters for the last completed world tick
+    private int lastScheduled, lastExecuted;
+
+    private int peakScheduled, peakExecuted;
+    private long totalScheduled, totalExecuted;
+    private long maxLateness;
+    private long worldTicks;
+
+    private final Reference2IntOpenHashMap<T> executedByObject = new Reference2IntOpenHashMap<>();
+    private final Long2IntOpenHashMap executedByChunk = new Long2IntOpenHashMap();
+
+    /**
+     * Called at the start of every world tick, before ticks are selected for execution.
+     */
+    public void onWorldTick() {
+        this.lastScheduled = this.scheduled;
+        this.lastExecuted = this.executed;
+
+        this.peakScheduled = Math.max(this.peakScheduled, this.scheduled);
+        this.peakExecuted = Math.max(this.peakExecuted, this.executed);
+
+        this.scheduled = 0;
+        this.executed = 0;
+
+        this.worldTicks++;
+    }
+
+    public void onTickScheduled() {
+        this.scheduled++;
+        this.totalScheduled++;
+    }
+
+    public void onTickExecuted(TickEntry<T> tick, long time) {
+        this.executed++;
+        this.totalExecuted++;
+
+        this.maxLateness = Math.max(this.maxLateness, time - tick.time);
+
+        this.executedByObject.addTo(tick.getObject(), 1);
+        this.executedByChunk.addTo(ChunkPos.toLong(tick.pos.getX() >> 4, tick.pos.getZ() >> 4), 1);
+    }
+
+    public void reset() {
+        this.scheduled = 0;
+        this.executed = 0;
+        this.lastScheduled = 0;
+        this.lastExecuted = 0;
+        this.peakScheduled = 0;
+        this.peakExecuted = 0;
+        this.totalScheduled = 0;
+        this.totalExecuted = 0;
+        this.maxLateness = 0;
+        this.worldTicks = 0;
+
+        this.executedByObject.clear();
+        this.executedByObject.trim();
+
+        this.executedByChunk.clear();
+        this.executedByChunk.trim();
+    }
+
+    /**
+     * @return True if the metrics have been recorded for {@link #REPORT_INTERVAL} world ticks since the last reset
+     */
+    public boolean isReportDue() {
+        return this.worldTicks >= REPORT_INTERVAL;
+    }
+
+    /**
+     * Appends a human-readable summary of these metrics to {@param lines}, including the {@param topN} objects and
+     * chunk positions which have executed the most ticks.
+     */
+    public void appendReport(List<String> lines, String name, int bucketCount, Function<T, Identifier> idToName,
+                             int topN) {
+        lines.add(String.format("%s: %d buckets, scheduled/executed: %d/%d last tick, %d/%d peak, %d/%d total " +
+                        "over %d ticks, max lateness %d ticks", name, bucketCount, this.lastScheduled,
+                this.lastExecuted, this.peakScheduled, this.peakExecuted, this.totalScheduled, this.totalExecuted,
+                this.worldTicks, this.maxLateness));
+
+        List<Reference2IntMap.Entry<T>> objects = new ArrayList<>(this.executedByObject.reference2IntEntrySet());
+        objects.sort((a, b) -> Integer.compare(b.getIntValue(), a.getIntValue()));
+
+        for (int i = 0; i < Math.min(topN, objects.size()); i++) {
+            Reference2IntMap.Entry<T> entry = objects.get(i);
+
+            lines.add(String.format("  %s: %d executed", idToName.apply(entry.getKey()), entry.getIntValue()));
+        }
+
+        List<Long2IntMap.Entry> chunks = new ArrayList<>(this.executedByChunk.long2IntEntrySet());
+        chunks.sort((a, b) -> Integer.compare(b.getIntValue(), a.getIntValue()));
+
+        for (int i = 0; i < Math.min(topN, chunks.size()); i++) {
+            Long2IntMap.Entry entry = chunks.get(i);
+
+            lines.add(String.format("  chunk %s: %d executed", new ChunkPos(entry.getLongKey()), entry.getIntValue()));
+        }
+    }
+}
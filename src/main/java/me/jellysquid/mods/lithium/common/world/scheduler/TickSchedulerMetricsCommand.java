@@ -0,0 +1,49 @@
+package me.jellysquid.mods.lithium.common.world.scheduler;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.LiteralText;
+
+import java.util.List;
+
+/**
+ * Adds the {@code /lithium ticks} command, which shows the {@link TickSchedulerMetrics} of all worlds.
+ * - {@code ticks [<top>]} reports the metrics recorded since the last reset, including the given number of objects and
+ * chunks which have executed the most ticks (5 by default).
+ * - {@code ticks reset} resets the metrics of all worlds.
+ */
+public class TickSchedulerMetricsCommand {
+    private static final int DEFAULT_TOP_N = 5;
+
+    public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("lithium")
+                .requires(source -> source.hasPermissionLevel(4))
+                .then(CommandManager.literal("ticks")
+                        .executes(ctx -> report(ctx, DEFAULT_TOP_N))
+                        .then(CommandManager.argument("top", IntegerArgumentType.integer(0, 100))
+                                .executes(ctx -> report(ctx, IntegerArgumentType.getInteger(ctx, "top"))))
+                        .then(CommandManager.literal("reset")
+                                .executes(TickSchedulerMetricsCommand::reset))));
+    }
+
+    private static int report(CommandContext<ServerCommandSource> ctx, int topN) {
+        List<String> lines = TickSchedulerMetricsRegistry.getReport(topN);
+
+        for (String line : lines) {
+            ctx.getSource().sendFeedback(new LiteralText(line), false);
+        }
+
+        return lines.size();
+    }
+
+    private static int reset(CommandContext<ServerCommandSource> ctx) {
+        TickSchedulerMetricsRegistry.reset();
+
+        ctx.getSource().sendFeedback(new LiteralText("Reset the tick scheduler metrics"), true);
+
+        return 1;
+    }
+}
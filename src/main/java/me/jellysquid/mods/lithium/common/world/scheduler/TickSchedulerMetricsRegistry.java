@@ -0,0 +1,71 @@
+package me.jellysquid.mods.lithium.common.world.scheduler;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps track of all tick schedulers which are recording metrics, so that their metrics can be read by the
+ * {@link TickSchedulerMetricsCommand} or dumped to the log. Schedulers are only weakly referenced, so unloaded worlds
+ * are dropped automatically.
+ *
+ * Metrics must only be read and reset on the server thread.
+ */
+public class TickSchedulerMetricsRegistry {
+    private static final Logger LOGGER = LogManager.getLogger("Lithium");
+
+    /**
+     * The number of objects and chunks with the most executed ticks which are included in logged reports.
+     */
+    private static final int LOG_TOP_N = 10;
+
+    private static final Set<LithiumServerTickScheduler<?>> SCHEDULERS =
+            Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    public static void register(LithiumServerTickScheduler<?> scheduler) {
+        SCHEDULERS.add(scheduler);
+    }
+
+    /**
+     * Returns a human-readable report of the metrics of all registered schedulers, including the {@param topN}
+     * objects and chunk positions which have executed the most ticks.
+     */
+    public static List<String> getReport(int topN) {
+        List<String> lines = new ArrayList<>();
+
+        for (LithiumServerTickScheduler<?> scheduler : getSchedulers()) {
+            scheduler.appendMetricsReport(lines, topN);
+        }
+
+        return lines;
+    }
+
+    public static void reset() {
+        for (LithiumServerTickScheduler<?> scheduler : getSchedulers()) {
+            scheduler.getMetrics().reset();
+        }
+    }
+
+    /**
+     * Writes the metrics of the given scheduler to the log, which schedulers do before resetting their metrics.
+     */
+    public static void dumpToLog(LithiumServerTickScheduler<?> scheduler) {
+        List<String> lines = new ArrayList<>();
+        scheduler.appendMetricsReport(lines, LOG_TOP_N);
+
+        for (String line : lines) {
+            LOGGER.info(line);
+        }
+    }
+
+    private static List<LithiumServerTickScheduler<?>> getSchedulers() {
+        synchronized (SCHEDULERS) {
+            return new ArrayList<>(SCHEDULERS);
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package me.jellysquid.mods.lithium.common.world.scheduler;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectAVLTreeMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectSortedMap;
+import it.unimi.dsi.fastutil.objects.ObjectBidirectionalIterator;
+import net.minecraft.world.TickPriority;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A bucket index which stores the buckets of the near future in a ring of slots indexed by {@code time & mask}, giving
+ * constant time access for the vast majority of scheduled ticks (redstone components, fluids, etc. all use very short
+ * delays.) Each slot holds one bucket per tick priority.
+ *
+ * The ring covers the window of times [baseTime, baseTime + size). Any bucket outside of this window is kept in an
+ * overflow tree, which contains both far-future ticks and ticks which have been left behind in the past (i.e. because
+ * their chunk could not be ticked or the vanilla per-tick budget was exceeded.) A bucket key is only ever stored in one
+ * of these two places:
+ * - When the window moves forward, slots which fall behind it are evicted into the overflow tree
+ * - Buckets in the overflow tree which enter the window are moved into their slot
+ *
+ * Iteration merges the overflow tree with the ring, so buckets are always visited in ascending key order.
+ */
+public class TimingWheelTickQueueIndex<T> implements TickQueueIndex<T> {
+    private static final int PRIORITY_COUNT = TickPriority.values().length;
+
+    private static final long EMPTY_SLOT = Long.MIN_VALUE;
+
+    private final int size;
+    private final int mask;
+
+    // The time of the ticks stored in each slot, or EMPTY_SLOT if the slot holds no buckets
+    private final long[] slotTimes;
+
+    // The number of non-null buckets in each slot
+    private final int[] slotCounts;
+
+    // The buckets of each slot indexed by priority, lazily initialized
+    private final TickEntryQueue<T>[][] slots;
+
+    private final Long2ObjectSortedMap<TickEntryQueue<T>> overflow = new Long2ObjectAVLTreeMap<>();
+
+    private long baseTime;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheelTickQueueIndex(int size, long time) {
+        if (Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Size must be a power of two");
+        }
+
+        this.size = size;
+        this.mask = size - 1;
+
+        this.slotTimes = new long[size];
+        this.slotCounts = new int[size];
+        this.slots = (TickEntryQueue<T>[][]) new TickEntryQueue[size][];
+
+        for (int i = 0; i < size; i++) {
+            this.slotTimes[i] = EMPTY_SLOT;
+        }
+
+        this.baseTime = time;
+    }
+
+    @Override
+    public TickEntryQueue<T> getOrCreateQueue(long key) {
+        long time = key >> 4;
+
+        if (!this.isInWindow(time)) {
+            TickEntryQueue<T> queue = this.overflow.get(key);
+
+            if (queue == null) {
+                this.overflow.put(key, queue = new TickEntryQueue<>());
+            }
+
+            return queue;
+        }
+
+        int slot = (int) (time & this.mask);
+        int priority = (int) (key & 15);
+
+        TickEntryQueue<T>[] buckets = this.getSlotBuckets(slot, time);
+        TickEntryQueue<T> queue = buckets[priority];
+
+        if (queue == null) {
+            buckets[priority] = queue = new TickEntryQueue<>();
+
+            this.slotCounts[slot]++;
+        }
+
+        return queue;
+    }
+
+    @Override
+    public Iterator<TickEntryQueue<T>> iterateQueuesBefore(long headKey) {
+        return new MergingIterator(headKey);
+    }
+
+    @Override
+    public void onTicksSelected(long time) {
+        long newBaseTime = time + 1;
+
+        if (newBaseTime <= this.baseTime) {
+            return;
+        }
+
+        // Evict the slots which are falling behind the window, keeping any ticks which were not executed
+        long evictEnd = Math.min(newBaseTime, this.baseTime + this.size);
+
+        for (long t = this.baseTime; t < evictEnd; t++) {
+            int slot = (int) (t & this.mask);
+
+            if (this.slotTimes[slot] == t) {
+                this.evictSlot(slot, t);
+            }
+        }
+
+        long prevWindowEnd = this.baseTime + this.size;
+
+        this.baseTime = newBaseTime;
+
+        // Pull in the buckets from the overflow tree which are now covered by the window
+        long migrateStart = Math.max(prevWindowEnd, newBaseTime);
+        long migrateEnd = newBaseTime + this.size;
+
+        if (this.overflow.isEmpty() || migrateStart >= migrateEnd) {
+            return;
+        }
+
+        ObjectBidirectionalIterator<Long2ObjectMap.Entry<TickEntryQueue<T>>> it = this.overflow
+                .subMap(migrateStart << 4, migrateEnd << 4)
+                .long2ObjectEntrySet()
+                .iterator();
+
+        while (it.hasNext()) {
+            Long2ObjectMap.Entry<TickEntryQueue<T>> entry = it.next();
+
+            long key = entry.getLongKey();
+            long t = key >> 4;
+
+            int slot = (int) (t & this.mask);
+
+            this.getSlotBuckets(slot, t)[(int) (key & 15)] = entry.getValue();
+            this.slotCounts[slot]++;
+
+            it.remove();
+        }
+    }
+
+    @Override
+    public int getQueueCount() {
+        int count = this.overflow.size();
+
+        for (int slotCount : this.slotCounts) {
+            count += slotCount;
+        }
+
+        return count;
+    }
+
+    private boolean isInWindow(long time) {
+        return time >= this.baseTime && time - this.baseTime < this.size;
+    }
+
+    private TickEntryQueue<T>[] getSlotBuckets(int slot, long time) {
+        TickEntryQueue<T>[] buckets = this.slots[slot];
+
+        if (buckets == null) {
+            this.slots[slot] = buckets = createBuckets();
+        }
+
+        this.slotTimes[slot] = time;
+
+        return buckets;
+    }
+
+    private void evictSlot(int slot, long time) {
+        TickEntryQueue<T>[] buckets = this.slots[slot];
+
+        for (int priority = 0; priority < PRIORITY_COUNT; priority++) {
+            TickEntryQueue<T> queue = buckets[priority];
+
+            if (queue != null) {
+                this.overflow.put((time << 4) | priority, queue);
+
+                buckets[priority] = null;
+            }
+        }
+
+        this.slotCounts[slot] = 0;
+        this.slotTimes[slot] = EMPTY_SLOT;
+    }
+
+    private void removeFromSlot(int slot, int priority) {
+        this.slots[slot][priority] = null;
+
+        if (--this.slotCounts[slot] <= 0) {
+            this.slotCounts[slot] = 0;
+            this.slotTimes[slot] = EMPTY_SLOT;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> TickEntryQueue<T>[] createBuckets() {
+        return (TickEntryQueue<T>[]) new TickEntryQueue[PRIORITY_COUNT];
+    }
+
+    /**
+     * Visits the buckets of the overflow tree and the ring in ascending key order.
+     */
+    private class MergingIterator implements Iterator<TickEntryQueue<T>> {
+        private final long headKey;
+
+        private final ObjectBidirectionalIterator<Long2ObjectMap.Entry<TickEntryQueue<T>>> overflowIt;
+        private Long2ObjectMap.Entry<TickEntryQueue<T>> nextOverflow;
+
+        // The position of the next bucket in the ring, if any
+        private long wheelTime;
+        private int wheelPriority;
+        private boolean hasNextWheel;
+
+        // The position of the last returned bucket, used for removal
+        private boolean lastFromOverflow;
+        private int lastSlot = -1;
+        private int lastPriority;
+
+        MergingIterator(long headKey) {
+            this.headKey = headKey;
+
+            this.overflowIt = TimingWheelTickQueueIndex.this.overflow.headMap(headKey).long2ObjectEntrySet().iterator();
+            this.nextOverflow = this.overflowIt.hasNext() ? this.overflowIt.next() : null;
+
+            this.wheelTime = TimingWheelTickQueueIndex.this.baseTime;
+            this.wheelPriority = 0;
+            this.findNextWheel();
+        }
+
+        private void findNextWheel() {
+            TimingWheelTickQueueIndex<T> index = TimingWheelTickQueueIndex.this;
+
+            long end = index.baseTime + index.size;
+
+            while (this.wheelTime < end) {
+                if ((this.wheelTime << 4) >= this.headKey) {
+                    break;
+                }
+
+                int slot = (int) (this.wheelTime & index.mask);
+
+                if (index.slotTimes[slot] == this.wheelTime) {
+                    TickEntryQueue<T>[] buckets = index.slots[slot];
+
+                    while (this.wheelPriority < PRIORITY_COUNT) {
+                        if (buckets[this.wheelPriority] != null && this.getWheelKey() < this.headKey) {
+                            this.hasNextWheel = true;
+
+                            return;
+                        }
+
+                        this.wheelPriority++;
+                    }
+                }
+
+                this.wheelTime++;
+                this.wheelPriority = 0;
+            }
+
+            this.hasNextWheel = false;
+        }
+
+        private long getWheelKey() {
+            return (this.wheelTime << 4) | this.wheelPriority;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.nextOverflow != null || this.hasNextWheel;
+        }
+
+        @Override
+        public TickEntryQueue<T> next() {
+            if (this.nextOverflow != null && (!this.hasNextWheel || this.nextOverflow.getLongKey() < this.getWheelKey())) {
+                TickEntryQueue<T> queue = this.nextOverflow.getValue();
+
+                this.nextOverflow = this.overflowIt.hasNext() ? this.overflowIt.next() : null;
+                this.lastFromOverflow = true;
+
+                return queue;
+            }
+
+            if (!this.hasNextWheel) {
+                throw new NoSuchElementException();
+            }
+
+            TimingWheelTickQueueIndex<T> index = TimingWheelTickQueueIndex.this;
+
+            int slot = (int) (this.wheelTime & index.mask);
+
+            TickEntryQueue<T> queue = index.slots[slot][this.wheelPriority];
+
+            this.lastFromOverflow = false;
+            this.lastSlot = slot;
+            this.lastPriority = this.wheelPriority;
+
+            this.wheelPriority++;
+            this.findNextWheel();
+
+            return queue;
+        }
+
+        @Override
+        public void remove() {
+            if (this.lastFromOverflow) {
+                // The overflow iterator has already advanced past the last returned element, so step back to it
+                if (this.nextOverflow != null) {
+                    this.overflowIt.previous();
+                }
+
+                this.overflowIt.previous();
+                this.overflowIt.remove();
+
+                if (this.nextOverflow != null) {
+                    this.overflowIt.next();
+                }
+
+                this.lastFromOverflow = false;
+            } else if (this.lastSlot >= 0) {
+                TimingWheelTickQueueIndex.this.removeFromSlot(this.lastSlot, this.lastPriority);
+
+                this.lastSlot = -1;
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+    }
+}
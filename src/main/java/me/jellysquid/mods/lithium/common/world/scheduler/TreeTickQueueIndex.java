@@ -0,0 +1,39 @@
+package me.jellysquid.mods.lithium.common.world.scheduler;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectAVLTreeMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectSortedMap;
+
+import java.util.Iterator;
+
+/**
+ * The default bucket index which keeps all buckets in a single ordered tree.
+ */
+public class TreeTickQueueIndex<T> implements TickQueueIndex<T> {
+    private final Long2ObjectSortedMap<TickEntryQueue<T>> queues = new Long2ObjectAVLTreeMap<>();
+
+    @Override
+    public TickEntryQueue<T> getOrCreateQueue(long key) {
+        TickEntryQueue<T> queue = this.queues.get(key);
+
+        if (queue == null) {
+            this.queues.put(key, queue = new TickEntryQueue<>());
+        }
+
+        return queue;
+    }
+
+    @Override
+    public Iterator<TickEntryQueue<T>> iterateQueuesBefore(long headKey) {
+        return this.queues.headMap(headKey).values().iterator();
+    }
+
+    @Override
+    public void onTicksSelected(long time) {
+        // The tree does not depend on the current time
+    }
+
+    @Override
+    public int getQueueCount() {
+        return this.queues.size();
+    }
+}
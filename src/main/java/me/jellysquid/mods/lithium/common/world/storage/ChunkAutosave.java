@@ -0,0 +1,19 @@
+package me.jellysquid.mods.lithium.common.world.storage;
+
+/**
+ * Tracks whether the server is running its periodic autosave, which may be spread over the following ticks. Other
+ * saves, such as those requested with /save-all or made while the server stops, still write every chunk at once.
+ *
+ * Only accessed from the server thread.
+ */
+public class ChunkAutosave {
+    private static boolean autosaving;
+
+    public static boolean isAutosaving() {
+        return autosaving;
+    }
+
+    public static void setAutosaving(boolean value) {
+        autosaving = value;
+    }
+}
@@ -0,0 +1,476 @@
+package me.jellysquid.mods.lithium.common.world.storage;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A region file which reads chunks from a memory mapping of the file, in the same format as vanilla's region files.
+ * Chunks are decompressed straight from the mapped pages, without first copying each chunk into a byte array.
+ *
+ * The file begins with a header of two sectors, holding the location and the modification time of all 1024 chunks. A
+ * chunk is stored as its length, a byte for the compression type and the compressed data. Chunks which need more than
+ * {@link #MAX_SECTORS_PER_CHUNK} sectors are stored in a separate file, and only their compression type (with the
+ * {@link #EXTERNAL_FLAG}) is stored in the region file.
+ *
+ * Written chunks are always placed into free sectors, after which the header is written right away, as vanilla does.
+ * The sectors of the previous version of a chunk are only re-used once the header no longer points to them. If the game
+ * crashes while a chunk is written, the file therefore holds either the previous or the new version of the chunk,
+ * rather than a partially overwritten one.
+ *
+ * Chunks with an invalid location or length are treated as absent, as vanilla does.
+ */
+public class MappedRegionFile implements AutoCloseable {
+    private static final Logger LOGGER = LogManager.getLogger("Lithium");
+
+    public static final int SECTOR_SIZE = 4096;
+    public static final int HEADER_SECTORS = 2;
+    public static final int MAX_SECTORS_PER_CHUNK = 255;
+
+    public static final byte COMPRESSION_GZIP = 1;
+    public static final byte COMPRESSION_DEFLATE = 2;
+    public static final byte COMPRESSION_NONE = 3;
+    public static final byte EXTERNAL_FLAG = (byte) 0x80;
+
+    private static final int CHUNK_COUNT = 32 * 32;
+    private static final int CHUNK_HEADER_SIZE = 5;
+
+    private final Path path;
+    private final Path directory;
+    private final FileChannel channel;
+
+    private final int regionX, regionZ;
+
+    private final int[] locations = new int[CHUNK_COUNT];
+    private final int[] timestamps = new int[CHUNK_COUNT];
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_SECTORS * SECTOR_SIZE);
+
+    private final SectorAllocator sectors = new SectorAllocator(HEADER_SECTORS);
+
+    private long fileSize;
+
+    private MappedByteBuffer mapping;
+    private long mappingSize;
+
+    /**
+     * Opens or creates a region file, which must be named "r.[regionX].[regionZ].mca" like all vanilla region files.
+     * @param directory The directory which holds the external files of oversized chunks
+     * @param dsync True if every write should be synchronously written to the storage device
+     * @throws IOException If the file could not be opened
+     */
+    public MappedRegionFile(Path path, Path directory, boolean dsync) throws IOException {
+        this.path = path;
+        this.directory = directory;
+
+        String[] parts = path.getFileName().toString().split("\\.");
+
+        try {
+            this.regionX = Integer.parseInt(parts[1]);
+            this.regionZ = Integer.parseInt(parts[2]);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Invalid region file name " + path, e);
+        }
+
+        if (dsync) {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.DSYNC);
+        } else {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+
+        this.fileSize = this.channel.size();
+
+        if (this.fileSize < this.header.capacity()) {
+            // The file is new or too short to contain any chunks, so start with an empty header
+            this.writeHeader();
+        } else {
+            this.readHeader();
+        }
+    }
+
+    private void readHeader() throws IOException {
+        ByteBuffer header = this.header;
+        header.clear();
+
+        while (header.hasRemaining()) {
+            if (this.channel.read(header, header.position()) < 0) {
+                break;
+            }
+        }
+
+        header.flip();
+
+        for (int i = 0; i < CHUNK_COUNT; i++) {
+            int location = header.getInt(i * 4);
+
+            this.timestamps[i] = header.getInt(SECTOR_SIZE + i * 4);
+
+            if (location == 0) {
+                continue;
+            }
+
+            int start = getSectorStart(location);
+            int count = getSectorCount(location);
+
+            if (start < HEADER_SECTORS) {
+                LOGGER.warn("Region file {} has invalid sector at index {}; sector {} overlaps with header", this.path,
+                        i, start);
+            } else if (count == 0) {
+                LOGGER.warn("Region file {} has an invalid sector at index {}; size has to be > 0", this.path, i);
+            } else if ((long) start * SECTOR_SIZE >= this.fileSize) {
+                LOGGER.warn("Region file {} has an invalid sector at index {}; sector {} is out of bounds", this.path,
+                        i, start);
+            } else {
+                this.locations[i] = location;
+                this.sectors.markUsed(start, count);
+
+                continue;
+            }
+
+            this.locations[i] = 0;
+        }
+    }
+
+    public synchronized boolean hasChunk(int x, int z) {
+        return this.locations[getIndex(x, z)] != 0;
+    }
+
+    /**
+     * Returns a stream of the decompressed data of a chunk, or null if the chunk is absent or its data is invalid.
+     * @throws IOException If the chunk could not be read
+     */
+    public synchronized DataInputStream getChunkInputStream(int x, int z) throws IOException {
+        int location = this.locations[getIndex(x, z)];
+
+        if (location == 0) {
+            return null;
+        }
+
+        ByteBuffer buf = this.getSectors(getSectorStart(location), getSectorCount(location));
+
+        if (buf.remaining() < CHUNK_HEADER_SIZE) {
+            LOGGER.error("Chunk [{}, {}] in {} is truncated", x, z, this.path);
+
+            return null;
+        }
+
+        int length = buf.getInt();
+        byte compression = buf.get();
+
+        if (length <= 0) {
+            LOGGER.warn("Chunk [{}, {}] in {} is allocated, but stream is missing", x, z, this.path);
+
+            return null;
+        }
+
+        int dataLength = length - 1;
+
+        if ((compression & EXTERNAL_FLAG) != 0) {
+            if (dataLength != 0) {
+                LOGGER.warn("Chunk [{}, {}] in {} has both internal and external streams", x, z, this.path);
+            }
+
+            Path external = this.getExternalPath(x, z);
+
+            if (!Files.isRegularFile(external)) {
+                LOGGER.error("External chunk path {} is not file", external);
+
+                return null;
+            }
+
+            return decompress(compression & ~EXTERNAL_FLAG, Files.newInputStream(external), x, z);
+        }
+
+        if (dataLength > buf.remaining()) {
+            LOGGER.error("Chunk [{}, {}] in {} stream is truncated: expected {} but read {}", x, z, this.path,
+                    dataLength, buf.remaining());
+
+            return null;
+        }
+
+        buf.limit(buf.position() + dataLength);
+
+        return decompress(compression, new ByteBufferInputStream(buf), x, z);
+    }
+
+    private DataInputStream decompress(int compression, InputStream in, int x, int z) throws IOException {
+        switch (compression) {
+            case COMPRESSION_GZIP:
+                return new DataInputStream(new BufferedInputStream(new GZIPInputStream(in)));
+            case COMPRESSION_DEFLATE:
+                return new DataInputStream(new BufferedInputStream(new InflaterInputStream(in)));
+            case COMPRESSION_NONE:
+                return new DataInputStream(in);
+            default:
+                LOGGER.error("Chunk [{}, {}] in {} has unknown stream version {}", x, z, this.path, compression);
+                in.close();
+
+                return null;
+        }
+    }
+
+    /**
+     * Returns a buffer of the given sectors, or of the part of them which lies within the file. The buffer is a view
+     * of the file mapping if possible, which is re-created if the file has grown past the mapping.
+     */
+    private ByteBuffer getSectors(int start, int count) throws IOException {
+        long offset = (long) start * SECTOR_SIZE;
+        long end = Math.min(offset + (long) count * SECTOR_SIZE, this.fileSize);
+
+        if (end > this.mappingSize && this.fileSize <= Integer.MAX_VALUE) {
+            this.mapping = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.fileSize);
+            this.mappingSize = this.fileSize;
+        }
+
+        if (end <= this.mappingSize) {
+            ByteBuffer buf = this.mapping.duplicate();
+            buf.position((int) offset);
+            buf.limit((int) end);
+
+            return buf;
+        }
+
+        // The file is too large to be mapped, so read the sectors into memory
+        ByteBuffer buf = ByteBuffer.allocate((int) (end - offset));
+
+        while (buf.hasRemaining()) {
+            if (this.channel.read(buf, offset + buf.position()) < 0) {
+                break;
+            }
+        }
+
+        buf.flip();
+
+        return buf;
+    }
+
+    /**
+     * Returns a stream which compresses the data written to it and stores it as the given chunk once closed.
+     */
+    public DataOutputStream getChunkOutputStream(int x, int z) {
+        return new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(new ChunkBuffer(x, z))));
+    }
+
+    /**
+     * Stores a chunk, given as the length of the chunk, its compression type and its compressed data. The buffer's
+     * length field is not read, as it is derived from the size of the buffer.
+     * @throws IOException If the chunk could not be written
+     */
+    public synchronized void write(int x, int z, ByteBuffer data) throws IOException {
+        int index = getIndex(x, z);
+        int length = data.remaining();
+        int count = getSectorsNeeded(length);
+
+        boolean external = count > MAX_SECTORS_PER_CHUNK;
+
+        if (external) {
+            // Store the chunk in an external file, and only its compression type in the region file
+            byte compression = data.get(data.position() + 4);
+
+            this.writeExternal(x, z, data);
+
+            data = ByteBuffer.allocate(CHUNK_HEADER_SIZE);
+            data.putInt(0, 1);
+            data.put(4, (byte) (compression | EXTERNAL_FLAG));
+
+            count = 1;
+        }
+
+        data.putInt(data.position(), data.remaining() - 4);
+
+        int start = this.sectors.allocate(count);
+        long offset = (long) start * SECTOR_SIZE;
+
+        this.fileSize = Math.max(this.fileSize, offset + data.remaining());
+        this.writeFully(data, offset);
+
+        int previous = this.locations[index];
+
+        this.locations[index] = start << 8 | count;
+        this.timestamps[index] = (int) (System.currentTimeMillis() / 1000L);
+
+        this.writeHeader();
+
+        // The header on disk no longer points to the previous version of the chunk, so its space can be re-used
+        if (previous != 0) {
+            this.sectors.free(getSectorStart(previous), getSectorCount(previous));
+        }
+
+        if (!external) {
+            Files.deleteIfExists(this.getExternalPath(x, z));
+        }
+    }
+
+    private void writeExternal(int x, int z, ByteBuffer data) throws IOException {
+        Path external = this.getExternalPath(x, z);
+        Path temp = Files.createTempFile(this.directory, "tmp", null);
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ByteBuffer payload = data.duplicate();
+            payload.position(payload.position() + CHUNK_HEADER_SIZE);
+
+            while (payload.hasRemaining()) {
+                channel.write(payload);
+            }
+        }
+
+        Files.move(temp, external, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Forces the file's contents to the storage device.
+     * @throws IOException If the file could not be written
+     */
+    public synchronized void sync() throws IOException {
+        this.channel.force(true);
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = this.header;
+        header.clear();
+
+        for (int i = 0; i < CHUNK_COUNT; i++) {
+            header.putInt(i * 4, this.locations[i]);
+            header.putInt(SECTOR_SIZE + i * 4, this.timestamps[i]);
+        }
+
+        this.writeFully(header, 0);
+        this.fileSize = Math.max(this.fileSize, header.capacity());
+    }
+
+    private void writeFully(ByteBuffer buf, long offset) throws IOException {
+        long position = offset;
+
+        while (buf.hasRemaining()) {
+            position += this.channel.write(buf, position);
+        }
+    }
+
+    /**
+     * Pads the file to a whole number of sectors as vanilla does, and closes it.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            int padding = (int) (this.fileSize % SECTOR_SIZE);
+
+            if (padding != 0) {
+                this.writeFully(ByteBuffer.allocate(SECTOR_SIZE - padding), this.fileSize);
+            }
+        } finally {
+            this.mapping = null;
+            this.channel.close();
+        }
+    }
+
+    private Path getExternalPath(int x, int z) {
+        int chunkX = this.regionX * 32 + (x & 31);
+        int chunkZ = this.regionZ * 32 + (z & 31);
+
+        return this.directory.resolve("c." + chunkX + "." + chunkZ + ".mcc");
+    }
+
+    private static int getIndex(int x, int z) {
+        return (x & 31) + (z & 31) * 32;
+    }
+
+    private static int getSectorStart(int location) {
+        return location >>> 8;
+    }
+
+    private static int getSectorCount(int location) {
+        return location & 0xFF;
+    }
+
+    private static int getSectorsNeeded(int bytes) {
+        return (bytes + SECTOR_SIZE - 1) / SECTOR_SIZE;
+    }
+
+    /**
+     * Collects the data of a chunk behind space for its length and compression type, and stores the chunk once closed.
+     */
+    private class ChunkBuffer extends ByteArrayOutputStream {
+        private final int x, z;
+
+        private ChunkBuffer(int x, int z) {
+            super(8096);
+
+            this.x = x;
+            this.z = z;
+
+            this.write(0);
+            this.write(0);
+            this.write(0);
+            this.write(0);
+            this.write(COMPRESSION_DEFLATE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            MappedRegionFile.this.write(this.x, this.z, ByteBuffer.wrap(this.buf, 0, this.count));
+        }
+    }
+
+    /**
+     * Reads the remaining bytes of a buffer, which may be a view of a file mapping.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        private ByteBufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return this.buf.hasRemaining() ? this.buf.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+
+            if (!this.buf.hasRemaining()) {
+                return -1;
+            }
+
+            len = Math.min(len, this.buf.remaining());
+            this.buf.get(bytes, off, len);
+
+            return len;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, this.buf.remaining()));
+            this.buf.position(this.buf.position() + skipped);
+
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return this.buf.remaining();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package me.jellysquid.mods.lithium.common.world.storage;
+
+import java.util.BitSet;
+
+/**
+ * Keeps track of the used sectors of a region file and hands out free runs of sectors, always picking the first run
+ * which is large enough like vanilla does.
+ */
+public class SectorAllocator {
+    private final BitSet used = new BitSet();
+
+    public SectorAllocator(int reservedSectors) {
+        this.used.set(0, reservedSectors);
+    }
+
+    public void markUsed(int start, int count) {
+        this.used.set(start, start + count);
+    }
+
+    /**
+     * Finds and marks the first run of {@param count} free sectors, which may extend past the end of the file.
+     * @return The index of the first sector of the run
+     */
+    public int allocate(int count) {
+        int start = 0;
+
+        while (true) {
+            start = this.used.nextClearBit(start);
+
+            int end = this.used.nextSetBit(start);
+
+            if (end == -1 || end - start >= count) {
+                this.used.set(start, start + count);
+
+                return start;
+            }
+
+            start = end;
+        }
+    }
+
+    public void free(int start, int count) {
+        this.used.clear(start, start + count);
+    }
+}
@@ -3,9 +3,7 @@ package me.jellysquid.mods.lithium.mixin.ai.nearby_entity_tracking;
 import me.jellysquid.mods.lithium.common.entity.tracker.EntityTrackerEngine;
 import me.jellysquid.mods.lithium.common.entity.tracker.EntityTrackerEngineProvider;
 import net.minecraft.entity.Entity;
-import net.minecraft.entity.LivingEntity;
 import net.minecraft.server.world.ServerWorld;
-import net.minecraft.util.math.MathHelper;
 import net.minecraft.world.chunk.WorldChunk;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
@@ -14,6 +12,7 @@ import org.spongepowered.asm.mixin.injection.Redirect;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import java.util.Iterator;
+import java.util.function.BooleanSupplier;
 
 /**
  * Installs event listeners to the world class which will be used to notify the {@link EntityTrackerEngine} of changes.
@@ -21,21 +20,42 @@ import java.util.Iterator;
 @Mixin(ServerWorld.class)
 public class ServerWorldMixin {
     /**
-     * Notify the entity tracker when an entity is removed from the world.
+     * Notify the entity tracker when an entity is removed from the world. All entities are tracked (see
+     * {@link WorldChunkMixin}), so all of them have to be removed from the chunk section they are registered in, as
+     * otherwise unloaded entities would remain in the tracker.
      */
     @Redirect(method = "unloadEntities", at = @At(value = "INVOKE", target = "Ljava/util/Iterator;next()Ljava/lang/Object;"))
     private Object onEntityRemoved(Iterator<Entity> iterator) {
         Entity entity = iterator.next();
-        if (!(entity instanceof LivingEntity)) {
-            return entity;
-        }
-
-        int chunkX = MathHelper.floor(entity.getX()) >> 4;
-        int chunkY = MathHelper.clamp(MathHelper.floor(entity.getY()) >> 4, 0, 15);
-        int chunkZ = MathHelper.floor(entity.getZ()) >> 4;
 
         EntityTrackerEngine tracker = EntityTrackerEngineProvider.getEntityTracker(this);
-        tracker.onEntityRemoved(chunkX, chunkY, chunkZ, (LivingEntity) entity);
+        tracker.onEntityRemoved(entity.chunkX, entity.chunkY, entity.chunkZ, entity);
         return entity;
     }
+
+    /**
+     * Lets the entity tracker know that the following removal and addition of the entity belong to a single move
+     * between chunk sections, so that the entity's listener can be moved instead of being removed and added again. The
+     * move is always finished, even if moving the entity throws, so that the tracker never holds on to the entity.
+     */
+    @Redirect(method = { "tickEntity", "tickPassenger" }, at = @At(value = "INVOKE", target = "Lnet/minecraft/server/world/ServerWorld;checkChunk(Lnet/minecraft/entity/Entity;)V"))
+    private void checkChunkAsMove(ServerWorld world, Entity entity) {
+        EntityTrackerEngine tracker = EntityTrackerEngineProvider.getEntityTracker(this);
+        tracker.beginEntityMove(entity);
+
+        try {
+            world.checkChunk(entity);
+        } finally {
+            tracker.endEntityMove(entity);
+        }
+    }
+
+    /**
+     * Deliver the notifications which have been batched during the tick and not yet been read by any AI goal, so that
+     * the buffer never holds on to entities or listeners for longer than a tick.
+     */
+    @Inject(method = "tick", at = @At("RETURN"))
+    private void onTickFinished(BooleanSupplier shouldKeepTicking, CallbackInfo ci) {
+        EntityTrackerEngineProvider.getEntityTracker(this).flushNotifications();
+    }
 }
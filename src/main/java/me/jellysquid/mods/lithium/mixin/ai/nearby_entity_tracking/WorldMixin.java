@@ -1,5 +1,6 @@
 package me.jellysquid.mods.lithium.mixin.ai.nearby_entity_tracking;
 
+import me.jellysquid.mods.lithium.common.LithiumMod;
 import me.jellysquid.mods.lithium.common.entity.tracker.EntityTrackerEngine;
 import me.jellysquid.mods.lithium.common.entity.tracker.EntityTrackerEngineProvider;
 import net.minecraft.entity.Entity;
@@ -27,7 +28,11 @@ public class WorldMixin implements EntityTrackerEngineProvider {
      */
     @Inject(method = "<init>", at = @At("RETURN"))
     private void init(MutableWorldProperties properties, RegistryKey<World> registryKey, final DimensionType dimensionType, Supplier<Profiler> supplier, boolean bl, boolean bl2, long l, CallbackInfo ci) {
-        this.tracker = new EntityTrackerEngine();
+        // Notifications are only flushed by the server world, see ServerWorldMixin
+        boolean batchNotifications = !((World) (Object) this).isClient &&
+                LithiumMod.CONFIG.isRuleEnabled("ai.nearby_entity_tracking.batched_notifications");
+
+        this.tracker = new EntityTrackerEngine(batchNotifications);
     }
 
     @Override
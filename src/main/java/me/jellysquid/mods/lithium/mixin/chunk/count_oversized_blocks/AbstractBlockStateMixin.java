@@ -0,0 +1,60 @@
+package me.jellysquid.mods.lithium.mixin.chunk.count_oversized_blocks;
+
+import me.jellysquid.mods.lithium.common.entity.movement.BlockCollisionFlags;
+import net.minecraft.block.AbstractBlock;
+import net.minecraft.block.Block;
+import net.minecraft.block.FluidBlock;
+import net.minecraft.block.ScaffoldingBlock;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.shape.VoxelShape;
+import net.minecraft.world.BlockView;
+import net.minecraft.world.EmptyBlockView;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Computes the {@link BlockCollisionFlags} of each block state once its shape cache has been initialized.
+ */
+@Mixin(AbstractBlock.AbstractBlockState.class)
+public abstract class AbstractBlockStateMixin implements BlockCollisionFlags {
+    @Shadow
+    public abstract Block getBlock();
+
+    @Shadow
+    public abstract boolean exceedsCube();
+
+    @Shadow
+    public abstract VoxelShape getCollisionShape(BlockView world, BlockPos pos);
+
+    // Assume that the block can be collided with until the shape cache has been initialized
+    private boolean mayHaveCollisionShape = true;
+
+    private boolean hasFullCubeCollisionShape;
+
+    @Inject(method = "initShapeCache", at = @At("RETURN"))
+    private void initCollisionFlags(CallbackInfo ci) {
+        Block block = this.getBlock();
+
+        // Blocks with dynamic bounds have no shape cache and are always treated as exceeding their cube. Together with
+        // blocks whose collision shape depends on the entity, their shape at the origin says nothing about other shapes.
+        boolean alwaysCollidable = this.exceedsCube() || block instanceof FluidBlock ||
+                block instanceof ScaffoldingBlock;
+        VoxelShape shape = this.getCollisionShape(EmptyBlockView.INSTANCE, BlockPos.ORIGIN);
+
+        this.mayHaveCollisionShape = alwaysCollidable || !shape.isEmpty();
+        this.hasFullCubeCollisionShape = !alwaysCollidable && Block.isShapeFullCube(shape);
+    }
+
+    @Override
+    public boolean mayHaveCollisionShape() {
+        return this.mayHaveCollisionShape;
+    }
+
+    @Override
+    public boolean hasFullCubeCollisionShape() {
+        return this.hasFullCubeCollisionShape;
+    }
+}
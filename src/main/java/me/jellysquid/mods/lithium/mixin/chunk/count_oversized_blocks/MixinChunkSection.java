@@ -1,6 +1,8 @@
 package me.jellysquid.mods.lithium.mixin.chunk.count_oversized_blocks;
 
+import me.jellysquid.mods.lithium.common.entity.movement.BlockCollisionFlags;
 import me.jellysquid.mods.lithium.common.entity.movement.ChunkAwareBlockCollisionSweeper;
+import me.jellysquid.mods.lithium.common.entity.movement.SectionCollisionMasks;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.block.BlockState;
@@ -21,16 +23,31 @@ import org.spongepowered.asm.mixin.injection.callback.LocalCapture;
 /**
  * Keep track of how many oversized blocks are in this chunk section. If none are there, collision code can skip a few blocks.
  * Oversized blocks are fences, walls, extended piston heads and blocks with dynamic bounds (scaffolding, shulker box, moving blocks)
+ * Also keep track of how many blocks may have a collision shape. If none are there, collision code can skip the section.
+ * Otherwise, collision code can use masks of the blocks which may have a collision shape or which are full cubes.
  * @author 2No2Name
  */
 @Mixin(ChunkSection.class)
-public abstract class MixinChunkSection implements ChunkAwareBlockCollisionSweeper.OversizedBlocksCounter {
+public abstract class MixinChunkSection implements ChunkAwareBlockCollisionSweeper.OversizedBlocksCounter,
+        ChunkAwareBlockCollisionSweeper.CollidableBlocksCounter, ChunkAwareBlockCollisionSweeper.CollisionMasksProvider {
     @Shadow
     public abstract void calculateCounts();
 
+    @Shadow
+    public abstract BlockState getBlockState(int x, int y, int z);
+
     @Unique
     private short oversizedBlockCount;
 
+    @Unique
+    private short collidableBlockCount;
+
+    /**
+     * Created when collision code first needs it, as most sections are never collided with.
+     */
+    @Unique
+    private SectionCollisionMasks collisionMasks;
+
     @Redirect(method = "calculateCounts", at = @At(value = "INVOKE", target = "Lnet/minecraft/world/chunk/PalettedContainer;count(Lnet/minecraft/world/chunk/PalettedContainer$CountConsumer;)V"))
     private void addToOversizedBlockCount(PalettedContainer<BlockState> palettedContainer, PalettedContainer.CountConsumer<BlockState> consumer) {
         palettedContainer.count((state, count) -> {
@@ -38,12 +55,17 @@ public abstract class MixinChunkSection implements ChunkAwareBlockCollisionSweep
             if (state.exceedsCube()) {
                 this.oversizedBlockCount += count;
             }
+            if (BlockCollisionFlags.mayHaveCollisionShape(state)) {
+                this.collidableBlockCount += count;
+            }
         });
     }
 
     @Inject(method = "calculateCounts", at = @At("HEAD"))
     private void resetOversizedBlockCount(CallbackInfo ci) {
         this.oversizedBlockCount = 0;
+        this.collidableBlockCount = 0;
+        this.collisionMasks = null;
     }
 
     @Inject(method = "setBlockState(IIILnet/minecraft/block/BlockState;Z)Lnet/minecraft/block/BlockState;", at = @At(ordinal = 0, value = "INVOKE", target = "Lnet/minecraft/block/BlockState;hasRandomTicks()Z", shift = At.Shift.BEFORE), locals = LocalCapture.CAPTURE_FAILHARD)
@@ -51,6 +73,9 @@ public abstract class MixinChunkSection implements ChunkAwareBlockCollisionSweep
         if (blockState2.exceedsCube()) {
             --this.oversizedBlockCount;
         }
+        if (BlockCollisionFlags.mayHaveCollisionShape(blockState2)) {
+            --this.collidableBlockCount;
+        }
     }
 
     @Inject(method = "setBlockState(IIILnet/minecraft/block/BlockState;Z)Lnet/minecraft/block/BlockState;", at = @At(ordinal = 1, value = "INVOKE", target = "Lnet/minecraft/block/BlockState;hasRandomTicks()Z", shift = At.Shift.BEFORE), locals = LocalCapture.CAPTURE_FAILHARD)
@@ -58,6 +83,39 @@ public abstract class MixinChunkSection implements ChunkAwareBlockCollisionSweep
         if (state.exceedsCube()) {
             ++this.oversizedBlockCount;
         }
+        if (BlockCollisionFlags.mayHaveCollisionShape(state)) {
+            ++this.collidableBlockCount;
+        }
+    }
+
+    @Inject(method = "setBlockState(IIILnet/minecraft/block/BlockState;Z)Lnet/minecraft/block/BlockState;", at = @At("RETURN"))
+    private void updateCollisionMasks(int x, int y, int z, BlockState state, boolean lock, CallbackInfoReturnable<BlockState> cir) {
+        if (this.collisionMasks != null) {
+            this.collisionMasks.set(x, y, z, BlockCollisionFlags.mayHaveCollisionShape(state),
+                    BlockCollisionFlags.hasFullCubeCollisionShape(state));
+        }
+    }
+
+    @Override
+    public SectionCollisionMasks getCollisionMasks() {
+        SectionCollisionMasks masks = this.collisionMasks;
+
+        if (masks == null) {
+            this.collisionMasks = masks = new SectionCollisionMasks();
+
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        BlockState state = this.getBlockState(x, y, z);
+
+                        masks.set(x, y, z, BlockCollisionFlags.mayHaveCollisionShape(state),
+                                BlockCollisionFlags.hasFullCubeCollisionShape(state));
+                    }
+                }
+            }
+        }
+
+        return masks;
     }
 
     @Override
@@ -65,6 +123,11 @@ public abstract class MixinChunkSection implements ChunkAwareBlockCollisionSweep
         return this.oversizedBlockCount > 0;
     }
 
+    @Override
+    public boolean hasCollidableBlocks() {
+        return this.collidableBlockCount > 0;
+    }
+
     /**
      * Initialize oversized block count in the client worlds.
      * This also initializes other values (randomtickable blocks counter), but they are unused in the client worlds.
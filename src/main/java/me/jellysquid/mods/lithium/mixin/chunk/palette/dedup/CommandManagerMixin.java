@@ -0,0 +1,27 @@
+package me.jellysquid.mods.lithium.mixin.chunk.palette.dedup;
+
+import com.mojang.brigadier.CommandDispatcher;
+import me.jellysquid.mods.lithium.common.world.chunk.SharedSectionDataCommand;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Registers the {@link SharedSectionDataCommand} next to the vanilla commands.
+ */
+@Mixin(CommandManager.class)
+public class CommandManagerMixin {
+    @Shadow
+    @Final
+    private CommandDispatcher<ServerCommandSource> dispatcher;
+
+    @Inject(method = "<init>", at = @At("RETURN"))
+    private void init(CommandManager.RegistrationEnvironment environment, CallbackInfo ci) {
+        SharedSectionDataCommand.register(this.dispatcher);
+    }
+}
@@ -0,0 +1,75 @@
+package me.jellysquid.mods.lithium.mixin.chunk.palette.dedup;
+
+import me.jellysquid.mods.lithium.common.world.chunk.LithiumHashPalette;
+import me.jellysquid.mods.lithium.common.world.chunk.SharedSectionData;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.util.collection.PackedIntegerArray;
+import net.minecraft.world.chunk.Palette;
+import net.minecraft.world.chunk.PaletteResizeListener;
+import net.minecraft.world.chunk.PalettedContainer;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+/**
+ * Shares the palette and data array of containers with identical contents once they are loaded, using
+ * {@link SharedSectionData}. The container makes its own copy of both before its contents are first modified.
+ *
+ * Only containers using a {@link LithiumHashPalette} are shared, which covers sections with up to 256 distinct block
+ * states. Sections of newly generated chunks are shared once the chunk is loaded again from disk.
+ */
+@Mixin(PalettedContainer.class)
+public abstract class PalettedContainerMixin<T> {
+    @Shadow
+    private Palette<T> palette;
+
+    @Shadow
+    protected PackedIntegerArray data;
+
+    @Shadow
+    private int paletteSize;
+
+    private SharedSectionData<T> sharedData;
+
+    @Inject(method = "read", at = @At("HEAD"))
+    private void unshareBeforeRead(ListTag paletteTag, long[] data, CallbackInfo ci) {
+        this.unshare();
+    }
+
+    @Inject(method = "read", at = @At("RETURN"))
+    private void shareAfterRead(ListTag paletteTag, long[] data, CallbackInfo ci) {
+        if (this.palette instanceof LithiumHashPalette) {
+            SharedSectionData<T> shared = SharedSectionData.intern((LithiumHashPalette<T>) this.palette, this.data,
+                    this.paletteSize);
+
+            this.palette = shared.getPalette();
+            this.data = shared.getData();
+            this.sharedData = shared;
+        }
+    }
+
+    @Inject(method = "set(ILjava/lang/Object;)V", at = @At("HEAD"))
+    private void unshareBeforeSet(int index, T value, CallbackInfo ci) {
+        this.unshare();
+    }
+
+    @Inject(method = "setAndGetOldValue", at = @At("HEAD"))
+    private void unshareBeforeSet(int index, T value, CallbackInfoReturnable<T> cir) {
+        this.unshare();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void unshare() {
+        if (this.sharedData == null) {
+            return;
+        }
+
+        // The copies have the same contents, so readers on other threads see the same values with either of them
+        this.palette = this.sharedData.getPalette().copy((PaletteResizeListener<T>) this);
+        this.data = new PackedIntegerArray(this.paletteSize, 4096, this.data.getStorage().clone());
+        this.sharedData = null;
+    }
+}
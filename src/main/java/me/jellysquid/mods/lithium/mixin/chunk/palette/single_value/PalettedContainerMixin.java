@@ -0,0 +1,140 @@
+package me.jellysquid.mods.lithium.mixin.chunk.palette.single_value;
+
+import me.jellysquid.mods.lithium.common.world.chunk.LithiumSingleValuePalette;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.collection.IdList;
+import net.minecraft.util.collection.PackedIntegerArray;
+import net.minecraft.world.chunk.Palette;
+import net.minecraft.world.chunk.PaletteResizeListener;
+import net.minecraft.world.chunk.PalettedContainer;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Overwrite;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.util.function.Function;
+
+/**
+ * Uses a {@link LithiumSingleValuePalette} for containers which are created empty or read from a palette with only one
+ * entry. These containers share {@link LithiumSingleValuePalette#EMPTY_DATA} instead of allocating a 4-bit data array,
+ * and reads, writes of the same value, counting and serialization don't touch any data array. The first write of a
+ * different value resizes the container to a regular palette and data array.
+ */
+@Mixin(PalettedContainer.class)
+public abstract class PalettedContainerMixin<T> {
+    @Shadow
+    private Palette<T> palette;
+
+    @Shadow
+    protected PackedIntegerArray data;
+
+    @Shadow
+    private int paletteSize;
+
+    @Shadow
+    @Final
+    private IdList<T> idList;
+
+    @Shadow
+    @Final
+    private Function<CompoundTag, T> elementDeserializer;
+
+    @Shadow
+    @Final
+    private Function<T, CompoundTag> elementSerializer;
+
+    @Shadow
+    @Final
+    private T defaultValue;
+
+    @Redirect(method = "<init>", at = @At(value = "INVOKE",
+            target = "Lnet/minecraft/world/chunk/PalettedContainer;setPaletteSize(I)V"))
+    private void initSingleValuePalette(PalettedContainer<T> container, int size) {
+        this.setSingleValuePalette();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void setSingleValuePalette() {
+        // The palette size differs from every regular size, so that resizing always replaces this palette
+        this.paletteSize = 0;
+        this.palette = new LithiumSingleValuePalette<>(this.idList, (PaletteResizeListener<T>) this,
+                this.elementDeserializer, this.elementSerializer);
+        this.palette.getIndex(this.defaultValue);
+        this.data = LithiumSingleValuePalette.EMPTY_DATA;
+    }
+
+    @Inject(method = "read", at = @At("HEAD"), cancellable = true)
+    private void readSingleValue(ListTag paletteTag, long[] data, CallbackInfo ci) {
+        // Every entry of the data array must refer to the only palette entry
+        if (paletteTag.size() == 1) {
+            this.setSingleValuePalette();
+            this.palette.fromTag(paletteTag);
+
+            ci.cancel();
+        }
+    }
+
+    /**
+     * Writes the container as a 4-bit container with one palette entry, as vanilla clients don't know any smaller
+     * container size.
+     */
+    @Inject(method = "toPacket", at = @At("HEAD"), cancellable = true)
+    private void writeSingleValue(PacketByteBuf buf, CallbackInfo ci) {
+        if (this.data == LithiumSingleValuePalette.EMPTY_DATA) {
+            buf.writeByte(LithiumSingleValuePalette.RESIZE_BITS);
+            this.palette.toPacket(buf);
+            buf.writeLongArray(LithiumSingleValuePalette.EMPTY_DATA.getStorage());
+
+            ci.cancel();
+        }
+    }
+
+    @Inject(method = "count", at = @At("HEAD"), cancellable = true)
+    private void countSingleValue(PalettedContainer.CountConsumer<T> consumer, CallbackInfo ci) {
+        if (this.data == LithiumSingleValuePalette.EMPTY_DATA) {
+            consumer.accept(this.palette.getByIndex(0), 4096);
+
+            ci.cancel();
+        }
+    }
+
+    /**
+     * @reason Don't read the data array of single value containers
+     * @author JellySquid
+     */
+    @Overwrite
+    protected T get(int index) {
+        PackedIntegerArray data = this.data;
+        T value = this.palette.getByIndex(data == LithiumSingleValuePalette.EMPTY_DATA ? 0 : data.get(index));
+
+        return value == null ? this.defaultValue : value;
+    }
+
+    /**
+     * The palette has already been resized if a different value was written, so the shared data array is only seen
+     * here when the value is already stored.
+     */
+    @Redirect(method = "set(ILjava/lang/Object;)V", at = @At(value = "INVOKE",
+            target = "Lnet/minecraft/util/collection/PackedIntegerArray;set(II)V"))
+    private void setData(PackedIntegerArray data, int index, int value) {
+        if (data != LithiumSingleValuePalette.EMPTY_DATA) {
+            data.set(index, value);
+        }
+    }
+
+    @Redirect(method = "setAndGetOldValue", at = @At(value = "INVOKE",
+            target = "Lnet/minecraft/util/collection/PackedIntegerArray;setAndGetOldValue(II)I"))
+    private int setAndGetOldData(PackedIntegerArray data, int index, int value) {
+        if (data != LithiumSingleValuePalette.EMPTY_DATA) {
+            return data.setAndGetOldValue(index, value);
+        }
+
+        return 0;
+    }
+}
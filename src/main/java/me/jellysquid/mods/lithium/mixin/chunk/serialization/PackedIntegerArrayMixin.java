@@ -7,11 +7,16 @@ import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
 
+import java.util.Arrays;
+
 /**
  * Extends {@link PackedIntegerArray} with a special compaction method defined in {@link CompactingPackedIntegerArray}.
  */
 @Mixin(PackedIntegerArray.class)
 public class PackedIntegerArrayMixin implements CompactingPackedIntegerArray {
+    // Re-used to avoid allocating the palette mappings for every section which is saved, grown as needed
+    private static final ThreadLocal<short[]> cachedMappingArrays = ThreadLocal.withInitial(() -> new short[0]);
+
     @Shadow
     @Final
     private long[] storage;
@@ -42,7 +47,7 @@ public class PackedIntegerArrayMixin implements CompactingPackedIntegerArray {
             throw new IllegalStateException("Array size mismatch");
         }
 
-        short[] mappings = new short[(int) (this.maxValue + 1)];
+        short[] mappings = getMappingArray((int) (this.maxValue + 1));
 
         int idx = 0;
 
@@ -69,4 +74,16 @@ public class PackedIntegerArrayMixin implements CompactingPackedIntegerArray {
             }
         }
     }
+
+    private static short[] getMappingArray(int size) {
+        short[] array = cachedMappingArrays.get();
+
+        if (array.length < size) {
+            cachedMappingArrays.set(array = new short[size]);
+        } else {
+            Arrays.fill(array, 0, size, (short) 0);
+        }
+
+        return array;
+    }
 }
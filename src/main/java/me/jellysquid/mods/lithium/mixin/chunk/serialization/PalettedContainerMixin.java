@@ -2,6 +2,7 @@ package me.jellysquid.mods.lithium.mixin.chunk.serialization;
 
 import me.jellysquid.mods.lithium.common.world.chunk.CompactingPackedIntegerArray;
 import me.jellysquid.mods.lithium.common.world.chunk.LithiumHashPalette;
+import me.jellysquid.mods.lithium.common.world.chunk.LithiumSingleValuePalette;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
 import net.minecraft.util.collection.IdList;
@@ -65,10 +66,13 @@ public abstract class PalettedContainerMixin<T> {
     /**
      * This patch incorporates a number of changes to significantly reduce the time needed to serialize.
      * - If a palette only contains one entry, do not attempt to repack it
+     * - Containers using a single value palette are written without looking at their data array
      * - The packed integer array is iterated over using a specialized consumer instead of a naive for-loop.
      * - A temporary fixed array is used to cache palette lookups and remaps while compacting a data array.
      * - If the palette didn't change after compaction, avoid the step of re-packing the integer array and instead do
      * a simple memory copy.
+     * - Otherwise, the compacted values are packed directly into the array which is stored in the tag.
+     * - The compaction palette is sized for at most 4096 values, rather than for the global palette.
      *
      * @reason Optimize serialization
      * @author JellySquid
@@ -77,6 +81,19 @@ public abstract class PalettedContainerMixin<T> {
     public void write(CompoundTag rootTag, String paletteKey, String dataKey) {
         this.lock();
 
+        // Every entry refers to the only value of the palette, so there is nothing to compact
+        if (this.palette instanceof LithiumSingleValuePalette) {
+            ListTag paletteTag = new ListTag();
+            ((LithiumSingleValuePalette<T>) this.palette).toTag(paletteTag);
+
+            rootTag.put(paletteKey, paletteTag);
+            rootTag.putLongArray(dataKey, EMPTY_PALETTE_DATA);
+
+            this.unlock();
+
+            return;
+        }
+
         // The palette that will be serialized
         LithiumHashPalette<T> palette = null;
         long[] dataArray = null;
@@ -92,7 +109,8 @@ public abstract class PalettedContainerMixin<T> {
 
         // If we aren't going to use an empty data array, start a compaction
         if (dataArray == null) {
-            LithiumHashPalette<T> compactedPalette = new LithiumHashPalette<>(this.idList, this.paletteSize, null, this.elementDeserializer, this.elementSerializer);
+            // A section never holds more than 4096 distinct values, so the global palette's size is not needed
+            LithiumHashPalette<T> compactedPalette = new LithiumHashPalette<>(this.idList, Math.min(this.paletteSize, 12), null, this.elementDeserializer, this.elementSerializer);
 
             short[] array = cachedCompactionArrays.get();
             ((CompactingPackedIntegerArray) this.data).compact(this.palette, compactedPalette, array);
@@ -102,15 +120,7 @@ public abstract class PalettedContainerMixin<T> {
                 dataArray = this.data.getStorage().clone();
             } else {
                 // Re-pack the integer array as the palette has changed size
-                int size = Math.max(4, MathHelper.log2DeBruijn(compactedPalette.getSize()));
-                PackedIntegerArray copy = new PackedIntegerArray(size, 4096);
-
-                for (int i = 0; i < array.length; ++i) {
-                    copy.set(i, array[i]);
-                }
-
-                // We don't need to clone the data array as we are the sole owner of it
-                dataArray = copy.getStorage();
+                dataArray = pack(array, Math.max(4, MathHelper.log2DeBruijn(compactedPalette.getSize())));
                 palette = compactedPalette;
             }
         }
@@ -124,6 +134,31 @@ public abstract class PalettedContainerMixin<T> {
         this.unlock();
     }
 
+    /**
+     * Packs the values into a new array in the layout of {@link PackedIntegerArray}, where each long holds as many
+     * values as fit into it without spanning two longs. This writes every long once, instead of going through
+     * {@link PackedIntegerArray#set(int, int)} and its bounds checks for every value.
+     */
+    private static long[] pack(short[] values, int elementBits) {
+        int valuesPerWord = 64 / elementBits;
+        long[] words = new long[(values.length + valuesPerWord - 1) / valuesPerWord];
+
+        int idx = 0;
+
+        for (int wordIdx = 0; wordIdx < words.length; wordIdx++) {
+            long word = 0L;
+            int end = Math.min(values.length, idx + valuesPerWord);
+
+            for (int shift = 0; idx < end; shift += elementBits) {
+                word |= (long) values[idx++] << shift;
+            }
+
+            words[wordIdx] = word;
+        }
+
+        return words;
+    }
+
     /**
      * If we know the palette will contain a fixed number of elements, we can make a significant optimization by counting
      * blocks with a simple array instead of a integer map. Since palettes make no guarantee that they are bounded,
@@ -0,0 +1,42 @@
+package me.jellysquid.mods.lithium.mixin.entity.collisions.hard_collision_index;
+
+import me.jellysquid.mods.lithium.common.entity.EntityClassGroup;
+import me.jellysquid.mods.lithium.common.entity.HardCollisionEntityIndex;
+import me.jellysquid.mods.lithium.common.entity.HardCollisionEntityIndexProvider;
+import net.minecraft.entity.Entity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.collection.TypeFilterableList;
+import net.minecraft.world.chunk.WorldChunk;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Provides the {@link HardCollisionEntityIndex} of the server world. Only server worlds are indexed, as the unloading
+ * of chunks is only followed here. Client worlds keep searching every chunk.
+ */
+@Mixin(ServerWorld.class)
+public class ServerWorldMixin implements HardCollisionEntityIndexProvider {
+    private final HardCollisionEntityIndex<Entity> hardCollisionEntityIndex = new HardCollisionEntityIndex<>();
+
+    @Override
+    public HardCollisionEntityIndex<Entity> getHardCollisionEntityIndex() {
+        return this.hardCollisionEntityIndex;
+    }
+
+    /**
+     * The entities of an unloaded chunk are no longer found by searches, as the chunk can't be retrieved anymore, so
+     * they are dropped from the index.
+     */
+    @Inject(method = "unloadEntities", at = @At("HEAD"))
+    private void onEntitiesUnloaded(WorldChunk chunk, CallbackInfo ci) {
+        for (TypeFilterableList<Entity> section : chunk.getEntitySectionArray()) {
+            for (Entity entity : section) {
+                if (EntityClassGroup.BOAT_SHULKER_LIKE_COLLISION.contains(entity.getClass())) {
+                    this.hardCollisionEntityIndex.onEntityRemoved(entity);
+                }
+            }
+        }
+    }
+}
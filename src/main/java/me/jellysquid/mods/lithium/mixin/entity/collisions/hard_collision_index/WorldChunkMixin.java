@@ -0,0 +1,47 @@
+package me.jellysquid.mods.lithium.mixin.entity.collisions.hard_collision_index;
+
+import me.jellysquid.mods.lithium.common.entity.EntityClassGroup;
+import me.jellysquid.mods.lithium.common.entity.HardCollisionEntityIndex;
+import me.jellysquid.mods.lithium.common.entity.HardCollisionEntityIndexProvider;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.WorldChunk;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Keeps the {@link HardCollisionEntityIndex} of the world up to date with the entity lists of the chunk.
+ */
+@Mixin(WorldChunk.class)
+public class WorldChunkMixin {
+    @Shadow
+    @Final
+    private World world;
+
+    @Shadow
+    @Final
+    private ChunkPos pos;
+
+    @Inject(method = "addEntity", at = @At(value = "INVOKE", target = "Lnet/minecraft/util/collection/TypeFilterableList;add(Ljava/lang/Object;)Z"))
+    private void onEntityAdded(Entity entity, CallbackInfo ci) {
+        HardCollisionEntityIndex<Entity> index = HardCollisionEntityIndexProvider.getHardCollisionEntityIndex(this.world);
+
+        if (index != null && EntityClassGroup.BOAT_SHULKER_LIKE_COLLISION.contains(entity.getClass())) {
+            index.onEntityAdded(this.pos.x, this.pos.z, entity);
+        }
+    }
+
+    @Inject(method = "remove(Lnet/minecraft/entity/Entity;I)V", at = @At(value = "INVOKE", target = "Lnet/minecraft/util/collection/TypeFilterableList;remove(Ljava/lang/Object;)Z"))
+    private void onEntityRemoved(Entity entity, int section, CallbackInfo ci) {
+        HardCollisionEntityIndex<Entity> index = HardCollisionEntityIndexProvider.getHardCollisionEntityIndex(this.world);
+
+        if (index != null && EntityClassGroup.BOAT_SHULKER_LIKE_COLLISION.contains(entity.getClass())) {
+            index.onEntityRemoved(entity);
+        }
+    }
+}
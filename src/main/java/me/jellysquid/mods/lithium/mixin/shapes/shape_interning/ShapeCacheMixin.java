@@ -0,0 +1,64 @@
+package me.jellysquid.mods.lithium.mixin.shapes.shape_interning;
+
+import me.jellysquid.mods.lithium.common.shapes.SharedVoxelShape;
+import net.minecraft.block.AbstractBlock;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.shape.VoxelShape;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Mutable;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the shapes cached by each block state with the shape shared between all block states with the same
+ * geometry, see {@link SharedVoxelShape}. Shapes are only shared once when the cache of a block state is initialized,
+ * so shapes which are created while the game is running (such as those of the world border or moving pistons) don't
+ * have to be looked up.
+ */
+@Mixin(AbstractBlock.AbstractBlockState.ShapeCache.class)
+public class ShapeCacheMixin {
+    @Mutable
+    @Shadow
+    @Final
+    protected VoxelShape collisionShape;
+
+    @Shadow
+    @Final
+    private VoxelShape[] extrudedFaces;
+
+    // The shared shapes are only referenced weakly by their table, so the caches using them have to keep them alive
+    private SharedVoxelShape[] sharedShapes;
+
+    @Inject(method = "<init>", at = @At("RETURN"))
+    private void shareShapes(BlockState state, CallbackInfo ci) {
+        List<SharedVoxelShape> shared = new ArrayList<>();
+
+        this.collisionShape = share(this.collisionShape, shared);
+
+        if (this.extrudedFaces != null) {
+            for (int i = 0; i < this.extrudedFaces.length; i++) {
+                this.extrudedFaces[i] = share(this.extrudedFaces[i], shared);
+            }
+        }
+
+        this.sharedShapes = shared.toArray(new SharedVoxelShape[0]);
+    }
+
+    private static VoxelShape share(VoxelShape shape, List<SharedVoxelShape> shared) {
+        SharedVoxelShape sharedShape = SharedVoxelShape.intern(shape);
+
+        if (sharedShape == null) {
+            return shape;
+        }
+
+        shared.add(sharedShape);
+
+        return sharedShape.getShape();
+    }
+}
@@ -1,6 +1,7 @@
 package me.jellysquid.mods.lithium.mixin.shapes.specialized_shapes;
 
 import it.unimi.dsi.fastutil.doubles.DoubleList;
+import me.jellysquid.mods.lithium.common.shapes.VoxelShapeAccess;
 import net.minecraft.util.math.AxisCycleDirection;
 import net.minecraft.util.math.Box;
 import net.minecraft.util.math.Direction;
@@ -15,7 +16,7 @@ import org.spongepowered.asm.mixin.Shadow;
  * Implement faster methods for determining penetration during collision resolution.
  */
 @Mixin(VoxelShape.class)
-public abstract class VoxelShapeMixin {
+public abstract class VoxelShapeMixin implements VoxelShapeAccess {
     private static final double POSITIVE_EPSILON = +1.0E-7D;
     private static final double NEGATIVE_EPSILON = -1.0E-7D;
 
@@ -32,6 +33,16 @@ public abstract class VoxelShapeMixin {
     @Shadow
     protected abstract DoubleList getPointPositions(Direction.Axis axis);
 
+    @Override
+    public VoxelSet getVoxelSet() {
+        return this.voxels;
+    }
+
+    @Override
+    public DoubleList getPointPositionList(Direction.Axis axis) {
+        return this.getPointPositions(axis);
+    }
+
     /**
      * @reason Use optimized implementation which delays searching for coordinates as long as possible
      * @author JellySquid
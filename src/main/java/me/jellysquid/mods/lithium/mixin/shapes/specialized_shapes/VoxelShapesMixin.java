@@ -1,14 +1,22 @@
 package me.jellysquid.mods.lithium.mixin.shapes.specialized_shapes;
 
+import me.jellysquid.mods.lithium.common.shapes.VoxelShapeAccess;
 import me.jellysquid.mods.lithium.common.shapes.VoxelShapeEmpty;
+import me.jellysquid.mods.lithium.common.shapes.VoxelShapeMultiCuboid;
 import me.jellysquid.mods.lithium.common.shapes.VoxelShapeSimpleCube;
 import me.jellysquid.mods.lithium.common.shapes.VoxelShapeAlignedCuboid;
+import net.minecraft.util.function.BooleanBiFunction;
 import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.shape.ArrayVoxelShape;
 import net.minecraft.util.shape.BitSetVoxelSet;
 import net.minecraft.util.shape.VoxelSet;
 import net.minecraft.util.shape.VoxelShape;
 import net.minecraft.util.shape.VoxelShapes;
 import org.spongepowered.asm.mixin.*;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 /**
  * Shape specialization allows us to optimize comparison logic by guaranteeing certain constraints about the
@@ -110,4 +118,25 @@ public abstract class VoxelShapesMixin {
             return new VoxelShapeAlignedCuboid(FULL_CUBE_VOXELS,Math.round(box.minX * 8D) / 8D, Math.round(box.minY * 8D) / 8D, Math.round(box.minZ * 8D) / 8D, Math.round(box.maxX * 8D) / 8D, Math.round(box.maxY * 8D) / 8D, Math.round(box.maxZ * 8D) / 8D, xRes, yRes, zRes);
         }
     }
+
+    /**
+     * Shapes made of multiple cuboids, such as those of stairs, walls or hoppers, are created by combining other
+     * shapes. Vanilla returns an {@link ArrayVoxelShape} for them, which resolves collisions by scanning its voxels
+     * one by one. This replaces it with a {@link VoxelShapeMultiCuboid} using the same voxels and point positions,
+     * which resolves collisions with a loop over its boxes instead. Shapes which are returned unchanged from the
+     * arguments are not replaced, as callers may compare them by identity.
+     */
+    @Inject(method = "combine", at = @At("RETURN"), cancellable = true)
+    private static void replaceArrayVoxelShape(VoxelShape one, VoxelShape two, BooleanBiFunction function,
+                                               CallbackInfoReturnable<VoxelShape> cir) {
+        VoxelShape shape = cir.getReturnValue();
+
+        if (shape instanceof ArrayVoxelShape && shape != one && shape != two) {
+            VoxelShapeAccess access = (VoxelShapeAccess) shape;
+
+            cir.setReturnValue(new VoxelShapeMultiCuboid(access.getVoxelSet(),
+                    access.getPointPositionList(Direction.Axis.X), access.getPointPositionList(Direction.Axis.Y),
+                    access.getPointPositionList(Direction.Axis.Z)));
+        }
+    }
 }
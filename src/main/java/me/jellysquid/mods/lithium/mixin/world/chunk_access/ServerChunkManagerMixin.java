@@ -1,7 +1,10 @@
 package me.jellysquid.mods.lithium.mixin.world.chunk_access;
 
 import com.mojang.datafixers.util.Either;
+import me.jellysquid.mods.lithium.common.LithiumMod;
 import me.jellysquid.mods.lithium.common.world.chunk.ChunkHolderExtended;
+import me.jellysquid.mods.lithium.common.world.chunk.ConcurrentChunkCache;
+import me.jellysquid.mods.lithium.common.world.chunk.ServerChunkManagerExtended;
 import net.minecraft.server.world.*;
 import net.minecraft.util.Util;
 import net.minecraft.util.math.ChunkPos;
@@ -17,7 +20,7 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 import java.util.Arrays;
-import java.util.Optional;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -31,13 +34,15 @@ import java.util.concurrent.CompletableFuture;
  * - The chunk retrieval logic does not try to begin executing other tasks while blocked unless the future isn't
  * already complete.
  * - The fallback "wrong-thread" handler is removed as no code makes use of it.
+ * - Optionally, other threads can retrieve chunks which have already been loaded without a round trip to the server
+ * thread, see {@link ConcurrentChunkCache}.
  * <p>
  * There are also some organizational and differences which help the JVM to better optimize code here, most of which
  * are documented.
  */
 @SuppressWarnings("OverwriteModifiers")
 @Mixin(ServerChunkManager.class)
-public abstract class ServerChunkManagerMixin {
+public abstract class ServerChunkManagerMixin implements ServerChunkManagerExtended {
     @Shadow
     @Final
     private ServerChunkManager.MainThreadExecutor mainThreadExecutor;
@@ -111,11 +116,51 @@ public abstract class ServerChunkManagerMixin {
     }
 
     private Chunk getChunkOffThread(int x, int z, ChunkStatus status, boolean create) {
+        if (this.useOffThreadCache) {
+            Chunk chunk = this.getLoadedChunkOffThread(x, z, status);
+
+            if (chunk != null) {
+                return chunk;
+            }
+        }
+
         return CompletableFuture.supplyAsync(() -> {
             return this.getChunk(x, z, status, create);
         }, this.mainThreadExecutor).join();
     }
 
+    /**
+     * Returns the chunk if it has already been loaded to the given status, without waiting on the server thread. This
+     * first checks the chunks which were recently retrieved by the server thread, and then the published copy of the
+     * chunk holder map, which is safe to read from other threads. Returns null if the server thread has to take over.
+     *
+     * Unlike a retrieval on the server thread, this does not refresh the chunk's ticket. As with vanilla, a caller on
+     * another thread can not rely on the chunk staying loaded after it has been returned.
+     */
+    private Chunk getLoadedChunkOffThread(int x, int z, ChunkStatus status) {
+        Chunk chunk = this.offThreadCache.get(createCacheKey(x, z, status));
+
+        if (chunk != null) {
+            return chunk;
+        }
+
+        ChunkHolder holder = this.threadedAnvilChunkStorage.getChunkHolder(ChunkPos.toLong(x, z));
+
+        if (isMissingForLevel(holder, 33 + ChunkStatus.getDistanceFromFull(status))) {
+            return null;
+        }
+
+        CompletableFuture<Either<Chunk, ChunkHolder.Unloaded>> future = ((ChunkHolderExtended) holder).getFutureByStatus(status.getIndex());
+
+        if (future == null) {
+            return null;
+        }
+
+        Either<Chunk, ChunkHolder.Unloaded> result = future.getNow(null);
+
+        return result != null ? result.left().orElse(null) : null;
+    }
+
     /**
      * Retrieves a chunk from the storages, blocking to work on other tasks if the requested chunk needs to be loaded
      * from disk or generated in real-time.
@@ -159,44 +204,10 @@ public abstract class ServerChunkManagerMixin {
             this.createChunkLoadTicket(x, z, level);
         }
 
-        CompletableFuture<Either<Chunk, ChunkHolder.Unloaded>> loadFuture = null;
-        CompletableFuture<Either<Chunk, ChunkHolder.Unloaded>> statusFuture = ((ChunkHolderExtended) holder).getFutureByStatus(status.getIndex());
-
-        if (statusFuture != null) {
-            Either<Chunk, ChunkHolder.Unloaded> immediate = statusFuture.getNow(null);
-
-            // If the result is already available, return it
-            if (immediate != null) {
-                Optional<Chunk> chunk = immediate.left();
-
-                if (chunk.isPresent()) {
-                    // Early-return with the already ready chunk
-                    return chunk.get();
-                }
-            } else {
-                // The load future will first start with the existing future for this status
-                loadFuture = statusFuture;
-            }
-        }
+        CompletableFuture<Either<Chunk, ChunkHolder.Unloaded>> loadFuture = this.getOrCreateFuture(holder, status);
 
-        // Create a future to load the chunk if none exists
         if (loadFuture == null) {
-            if (ChunkHolder.getTargetStatusForLevel(holder.getLevel()).isAtLeast(status)) {
-                // Create a new future which upgrades the chunk from the previous status level to the desired one
-                CompletableFuture<Either<Chunk, ChunkHolder.Unloaded>> mergedFuture = this.threadedAnvilChunkStorage.getChunk(holder, status);
-
-                // Add this future to the chunk holder so subsequent calls will see it
-                holder.combineSavingFuture(mergedFuture);
-                ((ChunkHolderExtended) holder).setFutureForStatus(status.getIndex(), mergedFuture);
-
-                loadFuture = mergedFuture;
-            } else {
-                if (statusFuture == null) {
-                    return null;
-                }
-
-                loadFuture = statusFuture;
-            }
+            return null;
         }
 
         // Check if the future is completed first before trying to run other tasks in our idle time
@@ -212,6 +223,62 @@ public abstract class ServerChunkManagerMixin {
         return loadFuture.join().left().orElse(null);
     }
 
+    /**
+     * Returns the future for the chunk of {@param holder} reaching {@param status}, creating it if the chunk's level
+     * allows for the status to be reached. Returns null if there is no such future and none can be created.
+     */
+    private CompletableFuture<Either<Chunk, ChunkHolder.Unloaded>> getOrCreateFuture(ChunkHolder holder,
+                                                                                    ChunkStatus status) {
+        CompletableFuture<Either<Chunk, ChunkHolder.Unloaded>> statusFuture = ((ChunkHolderExtended) holder).getFutureByStatus(status.getIndex());
+
+        if (statusFuture != null) {
+            Either<Chunk, ChunkHolder.Unloaded> immediate = statusFuture.getNow(null);
+
+            // If the result is pending or already available, the existing future can be used
+            if (immediate == null || immediate.left().isPresent()) {
+                return statusFuture;
+            }
+        }
+
+        if (ChunkHolder.getTargetStatusForLevel(holder.getLevel()).isAtLeast(status)) {
+            // Create a new future which upgrades the chunk from the previous status level to the desired one
+            CompletableFuture<Either<Chunk, ChunkHolder.Unloaded>> mergedFuture = this.threadedAnvilChunkStorage.getChunk(holder, status);
+
+            // Add this future to the chunk holder so subsequent calls will see it
+            holder.combineSavingFuture(mergedFuture);
+            ((ChunkHolderExtended) holder).setFutureForStatus(status.getIndex(), mergedFuture);
+
+            return mergedFuture;
+        }
+
+        return statusFuture;
+    }
+
+    @Override
+    public void addTicketsAndLoad(ChunkTicketType<ChunkPos> type, long[] positions, int count, ChunkStatus status,
+                                  List<CompletableFuture<Either<Chunk, ChunkHolder.Unloaded>>> futures) {
+        final int level = 33 + ChunkStatus.getDistanceFromFull(status);
+
+        for (int i = 0; i < count; i++) {
+            ChunkPos pos = new ChunkPos(positions[i]);
+
+            this.ticketManager.addTicketWithLevel(type, pos, level, pos);
+        }
+
+        // Process all of the new tickets at once
+        this.tick();
+
+        for (int i = 0; i < count; i++) {
+            ChunkHolder holder = this.getChunkHolder(positions[i]);
+
+            if (isMissingForLevel(holder, level)) {
+                throw Util.throwOrPause(new IllegalStateException("No chunk holder after ticket has been added"));
+            }
+
+            futures.add(this.getOrCreateFuture(holder, status));
+        }
+    }
+
     private void createChunkLoadTicket(int x, int z, int level) {
         ChunkPos chunkPos = new ChunkPos(x, z);
 
@@ -228,6 +295,14 @@ public abstract class ServerChunkManagerMixin {
      */
     private final Chunk[] cacheChunks = new Chunk[4];
 
+    private final boolean useOffThreadCache = LithiumMod.CONFIG.isRuleEnabled("world.chunk_access.off_thread_cache");
+
+    /**
+     * The chunks recently retrieved by the server thread, which other threads can look up without waiting on the
+     * server thread. This is invalidated together with the recent lookup cache.
+     */
+    private final ConcurrentChunkCache offThreadCache = new ConcurrentChunkCache();
+
     /**
      * Encodes a chunk position and status into a long. Uses 28 bits for each coordinate value, and 8 bits for the
      * status.
@@ -247,6 +322,10 @@ public abstract class ServerChunkManagerMixin {
 
         this.cacheKeys[0] = key;
         this.cacheChunks[0] = chunk;
+
+        if (this.useOffThreadCache) {
+            this.offThreadCache.put(key, chunk);
+        }
     }
 
     /**
@@ -256,5 +335,9 @@ public abstract class ServerChunkManagerMixin {
     private void onCachesCleared(CallbackInfo ci) {
         Arrays.fill(this.cacheKeys, Long.MAX_VALUE);
         Arrays.fill(this.cacheChunks, null);
+
+        if (this.useOffThreadCache) {
+            this.offThreadCache.clear();
+        }
     }
 }
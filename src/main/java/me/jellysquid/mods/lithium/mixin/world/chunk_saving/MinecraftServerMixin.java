@@ -0,0 +1,28 @@
+package me.jellysquid.mods.lithium.mixin.world.chunk_saving;
+
+import me.jellysquid.mods.lithium.common.world.storage.ChunkAutosave;
+import net.minecraft.server.MinecraftServer;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Marks the save which the server makes every 6000 ticks as an autosave, so that its chunks can be saved over the
+ * following ticks rather than all at once.
+ */
+@Mixin(MinecraftServer.class)
+public class MinecraftServerMixin {
+    @Inject(method = "tick", at = @At(value = "INVOKE", target = "Lnet/minecraft/server/MinecraftServer;save(ZZZ)Z"))
+    private void beforeAutosave(BooleanSupplier shouldKeepTicking, CallbackInfo ci) {
+        ChunkAutosave.setAutosaving(true);
+    }
+
+    @Inject(method = "tick", at = @At(value = "INVOKE", target = "Lnet/minecraft/server/MinecraftServer;save(ZZZ)Z",
+            shift = At.Shift.AFTER))
+    private void afterAutosave(BooleanSupplier shouldKeepTicking, CallbackInfo ci) {
+        ChunkAutosave.setAutosaving(false);
+    }
+}
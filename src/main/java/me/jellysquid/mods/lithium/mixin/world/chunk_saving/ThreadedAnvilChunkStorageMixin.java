@@ -0,0 +1,106 @@
+package me.jellysquid.mods.lithium.mixin.world.chunk_saving;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import me.jellysquid.mods.lithium.common.LithiumMod;
+import me.jellysquid.mods.lithium.common.world.storage.ChunkAutosave;
+import net.minecraft.server.world.ChunkHolder;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.server.world.ThreadedAnvilChunkStorage;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ReadOnlyChunk;
+import net.minecraft.world.chunk.WorldChunk;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Spreads the autosave of chunks over multiple ticks. Vanilla serializes every modified chunk on the server thread in
+ * the tick of the autosave, which causes a lag spike in worlds with many loaded chunks. Instead, the chunks are queued
+ * and at most a configured number of modified chunks are serialized each tick.
+ *
+ * The serialized chunks are handed to the storage's IO worker as before, which compresses and writes them on its own
+ * thread and replaces pending writes of the same chunk with newer ones. Chunks which are unloaded while queued are
+ * saved when unloaded, as before, and any other save (i.e. /save-all or stopping the server) saves every chunk at once
+ * and empties the queue. Disabling saving with /save-off also empties the queue, so that no chunks are written while a
+ * backup of the world is made.
+ */
+@Mixin(ThreadedAnvilChunkStorage.class)
+public abstract class ThreadedAnvilChunkStorageMixin {
+    @Shadow
+    private volatile Long2ObjectLinkedOpenHashMap<ChunkHolder> chunkHolders;
+
+    @Shadow
+    @Final
+    private ServerWorld world;
+
+    @Shadow
+    protected abstract ChunkHolder getChunkHolder(long pos);
+
+    @Shadow
+    protected abstract boolean save(Chunk chunk);
+
+    private final LongLinkedOpenHashSet pendingSaves = new LongLinkedOpenHashSet();
+
+    private final int maxChunksPerTick = LithiumMod.CONFIG.getValue("world.chunk_saving.max_chunks_per_tick");
+
+    @Inject(method = "save(Z)V", at = @At("HEAD"), cancellable = true)
+    private void queueAutosave(boolean flush, CallbackInfo ci) {
+        if (!flush && ChunkAutosave.isAutosaving()) {
+            LongIterator it = this.chunkHolders.keySet().iterator();
+
+            while (it.hasNext()) {
+                this.pendingSaves.add(it.nextLong());
+            }
+
+            ci.cancel();
+        } else {
+            // Every chunk is saved by vanilla now
+            this.pendingSaves.clear();
+        }
+    }
+
+    @Inject(method = "tick(Ljava/util/function/BooleanSupplier;)V", at = @At("HEAD"))
+    private void savePendingChunks(BooleanSupplier shouldKeepTicking, CallbackInfo ci) {
+        if (this.pendingSaves.isEmpty()) {
+            return;
+        }
+
+        // Vanilla doesn't save any chunks while saving is disabled, except for those which are unloaded
+        if (this.world.savingDisabled) {
+            this.pendingSaves.clear();
+
+            return;
+        }
+
+        int maxChunks = this.maxChunksPerTick;
+        int saved = 0;
+
+        // Chunks without changes are skipped cheaply, so only chunks which are actually written count to the budget
+        while (saved < maxChunks && !this.pendingSaves.isEmpty()) {
+            ChunkHolder holder = this.getChunkHolder(this.pendingSaves.removeFirstLong());
+
+            // [VanillaCopy] ThreadedAnvilChunkStorage#save(boolean)
+            if (holder == null || !holder.isAccessible()) {
+                continue;
+            }
+
+            Chunk chunk = holder.getFuture().getNow(null);
+
+            // Only full chunks are saved by the autosave, as in vanilla
+            if (chunk instanceof ReadOnlyChunk || chunk instanceof WorldChunk) {
+                if (this.save(chunk)) {
+                    saved++;
+                }
+
+                holder.updateAccessibleStatus();
+            }
+        }
+    }
+}
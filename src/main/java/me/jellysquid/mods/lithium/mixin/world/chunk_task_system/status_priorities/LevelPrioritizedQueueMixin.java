@@ -0,0 +1,68 @@
+package me.jellysquid.mods.lithium.mixin.world.chunk_task_system.status_priorities;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import me.jellysquid.mods.lithium.common.world.chunk.ChunkStatusPriorities;
+import net.minecraft.server.world.LevelPrioritizedQueue;
+import net.minecraft.util.math.ChunkPos;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Moves the generation tasks which were queued at a boosted level (see {@link ThreadedAnvilChunkStorageMixin}) along
+ * with their chunk when the level of the chunk changes. Vanilla only moves the tasks it finds at the previous level of
+ * the chunk, so boosted tasks would otherwise keep their priority even after the chunk has lost its tickets.
+ */
+@Mixin(LevelPrioritizedQueue.class)
+public class LevelPrioritizedQueueMixin<T> {
+    @Shadow
+    @Final
+    private List<Long2ObjectLinkedOpenHashMap<List<Optional<T>>>> levelToPosToElements;
+
+    @Shadow
+    private volatile int firstNonEmptyLevel;
+
+    @Shadow
+    @Final
+    private int levelCount;
+
+    @Inject(method = "updateLevel", at = @At("HEAD"))
+    private void updateBoostedLevels(int fromLevel, ChunkPos pos, int toLevel, CallbackInfo ci) {
+        if (fromLevel >= this.levelCount) {
+            return;
+        }
+
+        long key = pos.toLong();
+        boolean moved = false;
+
+        for (int boost = 1; boost <= ChunkStatusPriorities.MAX_BOOST && boost <= fromLevel; boost++) {
+            List<Optional<T>> tasks = this.levelToPosToElements.get(fromLevel - boost).remove(key);
+
+            if (tasks == null || tasks.isEmpty()) {
+                continue;
+            }
+
+            int level = ChunkStatusPriorities.getBoostedLevel(toLevel, boost);
+
+            this.levelToPosToElements.get(level).computeIfAbsent(key, k -> new ArrayList<>()).addAll(tasks);
+            this.firstNonEmptyLevel = Math.min(this.firstNonEmptyLevel, level);
+
+            moved = true;
+        }
+
+        if (moved) {
+            // [VanillaCopy] LevelPrioritizedQueue#updateLevel, skip the levels which have been emptied
+            while (this.firstNonEmptyLevel < this.levelCount &&
+                    this.levelToPosToElements.get(this.firstNonEmptyLevel).isEmpty()) {
+                this.firstNonEmptyLevel++;
+            }
+        }
+    }
+}
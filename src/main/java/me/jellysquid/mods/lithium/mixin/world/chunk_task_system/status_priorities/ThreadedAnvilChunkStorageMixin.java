@@ -0,0 +1,55 @@
+package me.jellysquid.mods.lithium.mixin.world.chunk_task_system.status_priorities;
+
+import me.jellysquid.mods.lithium.common.world.chunk.ChunkGenerationMetrics;
+import me.jellysquid.mods.lithium.common.world.chunk.ChunkStatusPriorities;
+import net.minecraft.server.world.ChunkHolder;
+import net.minecraft.server.world.ChunkTaskPrioritySystem;
+import net.minecraft.server.world.ThreadedAnvilChunkStorage;
+import net.minecraft.util.thread.MessageListener;
+import net.minecraft.world.chunk.ChunkStatus;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Redirect;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Queues the chunk generation tasks with a priority which takes the cost of their {@link ChunkStatus} into account,
+ * see {@link ChunkStatusPriorities}.
+ */
+@Mixin(ThreadedAnvilChunkStorage.class)
+public class ThreadedAnvilChunkStorageMixin {
+    @Shadow
+    @Final
+    private MessageListener<ChunkTaskPrioritySystem.Task<Runnable>> worldGenExecutor;
+
+    /**
+     * Vanilla queues the generation task of a chunk at the completed ticket level of the chunk once all of its
+     * neighbours are ready. Replace the executor so that cheap statuses are queued at a more urgent level than
+     * expensive ones. The level is derived from the same completed level which vanilla passes to the queue when the
+     * level of the chunk changes, so that the task can be found again (see {@link LevelPrioritizedQueueMixin}). The
+     * task is also counted by {@link ChunkGenerationMetrics}.
+     */
+    @Redirect(
+            method = "upgradeChunk",
+            at = @At(
+                    value = "INVOKE",
+                    target = "Ljava/util/concurrent/CompletableFuture;thenComposeAsync(Ljava/util/function/Function;Ljava/util/concurrent/Executor;)Ljava/util/concurrent/CompletableFuture;"
+            )
+    )
+    private <T, U> CompletableFuture<U> redirectGenerationExecutor(CompletableFuture<T> future,
+                                                                   Function<? super T, ? extends CompletionStage<U>> fn,
+                                                                   Executor executor, ChunkHolder holder,
+                                                                   ChunkStatus status) {
+        long pos = holder.getPos().toLong();
+
+        return future.thenComposeAsync(fn, task -> this.worldGenExecutor.send(ChunkTaskPrioritySystem.createMessage(
+                ChunkGenerationMetrics.track(status, task), pos,
+                () -> ChunkStatusPriorities.getTaskLevel(holder.getCompletedLevel(), status))));
+    }
+}
@@ -0,0 +1,129 @@
+package me.jellysquid.mods.lithium.mixin.world.mapped_region_files;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import me.jellysquid.mods.lithium.common.world.storage.MappedRegionFile;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.storage.RegionBasedStorage;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Overwrite;
+import org.spongepowered.asm.mixin.Shadow;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Replaces the region files of the storage with {@link MappedRegionFile}, which reads chunks from a memory mapping of
+ * the file. The files stay compatible with vanilla.
+ */
+@Mixin(RegionBasedStorage.class)
+public class RegionBasedStorageMixin {
+    private static final int MAX_OPEN_FILES = 256;
+
+    @Shadow
+    @Final
+    private File directory;
+
+    @Shadow
+    @Final
+    private boolean dsync;
+
+    private final Long2ObjectLinkedOpenHashMap<MappedRegionFile> mappedFiles = new Long2ObjectLinkedOpenHashMap<>();
+
+    private MappedRegionFile getMappedFile(ChunkPos pos) throws IOException {
+        long key = ChunkPos.toLong(pos.getRegionX(), pos.getRegionZ());
+
+        MappedRegionFile file = this.mappedFiles.getAndMoveToFirst(key);
+
+        if (file != null) {
+            return file;
+        }
+
+        if (this.mappedFiles.size() >= MAX_OPEN_FILES) {
+            this.mappedFiles.removeLast().close();
+        }
+
+        if (!this.directory.exists()) {
+            this.directory.mkdirs();
+        }
+
+        File path = new File(this.directory, "r." + pos.getRegionX() + "." + pos.getRegionZ() + ".mca");
+
+        file = new MappedRegionFile(path.toPath(), this.directory.toPath(), this.dsync);
+        this.mappedFiles.putAndMoveToFirst(key, file);
+
+        return file;
+    }
+
+    /**
+     * @reason Read from the mapped region file
+     * @author JellySquid
+     */
+    @Overwrite
+    public CompoundTag getTagAt(ChunkPos pos) throws IOException {
+        MappedRegionFile file = this.getMappedFile(pos);
+
+        try (DataInputStream in = file.getChunkInputStream(pos.x, pos.z)) {
+            if (in == null) {
+                return null;
+            }
+
+            return NbtIo.read(in);
+        }
+    }
+
+    /**
+     * @reason Write to the mapped region file
+     * @author JellySquid
+     */
+    @Overwrite
+    public void write(ChunkPos pos, CompoundTag tag) throws IOException {
+        MappedRegionFile file = this.getMappedFile(pos);
+
+        try (DataOutputStream out = file.getChunkOutputStream(pos.x, pos.z)) {
+            NbtIo.write(tag, out);
+        }
+    }
+
+    /**
+     * @reason Close the mapped region files
+     * @author JellySquid
+     */
+    @Overwrite
+    public void close() throws IOException {
+        IOException exception = null;
+
+        for (MappedRegionFile file : this.mappedFiles.values()) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+
+        this.mappedFiles.clear();
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * @reason Sync the mapped region files
+     * @author JellySquid
+     */
+    @Overwrite
+    public void method_26982() throws IOException {
+        for (MappedRegionFile file : this.mappedFiles.values()) {
+            file.sync();
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package me.jellysquid.mods.lithium.mixin.world.player_chunk_tick;
 
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2LongOpenHashMap;
+import me.jellysquid.mods.lithium.common.world.EntityTrackerGrid;
+import me.jellysquid.mods.lithium.common.world.chunk.ChunkSendQueueHolder;
+import net.minecraft.entity.Entity;
 import net.minecraft.network.Packet;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ChunkHolder;
@@ -10,27 +14,38 @@ import net.minecraft.server.world.ThreadedAnvilChunkStorage;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.ChunkSectionPos;
 import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.chunk.WorldChunk;
+import org.objectweb.asm.Opcodes;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Overwrite;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.util.ArrayList;
 
 @Mixin(ThreadedAnvilChunkStorage.class)
 public abstract class MixinThreadedAnvilChunkStorage {
+    // The entity trackers of this world, bucketed by the chunk of the last position sent to their watching players
+    private final EntityTrackerGrid<ThreadedAnvilChunkStorage.EntityTracker> trackerGrid = new EntityTrackerGrid<>();
+
+    // The chunk each player was in when all nearby entity trackers were last updated for them
+    private final Reference2LongOpenHashMap<ServerPlayerEntity> trackerUpdatePositions =
+            new Reference2LongOpenHashMap<>();
+
+    private final ArrayList<ThreadedAnvilChunkStorage.EntityTracker> nearbyTrackers = new ArrayList<>();
+
     /**
      * @author JellySquid
-     * @reason Defer sending chunks to the player so that we can batch them together
+     * @reason Defer sending chunks to the player so that we can batch them together, only update nearby entity trackers
      */
     @Overwrite
     public void updateCameraPosition(ServerPlayerEntity player) {
-        for (ThreadedAnvilChunkStorage.EntityTracker tracker : this.entityTrackers.values()) {
-            if (tracker.entity == player) {
-                tracker.updateCameraPosition(this.world.getPlayers());
-            } else {
-                tracker.updateCameraPosition(player);
-            }
-        }
+        this.updateEntityTrackers(player);
 
         ChunkSectionPos oldPos = player.getCameraPosition();
         ChunkSectionPos newPos = ChunkSectionPos.from(player);
@@ -75,6 +90,112 @@ public abstract class MixinThreadedAnvilChunkStorage {
         }
     }
 
+    /**
+     * Updates the entity trackers for a player which has moved. Vanilla updates every tracker of the world, but a
+     * player can only start or stop tracking an entity within the tracking range of its old or new position. Vanilla
+     * measures that range from the last position sent for the entity (see EntityTrackerEntry#getLastPos), which is
+     * what the grid is keyed by, and a player only tracks entities within the view distance. The trackers within that
+     * distance (plus a chunk of leeway, as the last sent position can change between the updates for a player) around
+     * both positions are updated.
+     */
+    private void updateEntityTrackers(ServerPlayerEntity player) {
+        ThreadedAnvilChunkStorage.EntityTracker playerTracker = this.entityTrackers.get(player.getEntityId());
+
+        if (playerTracker != null) {
+            playerTracker.updateCameraPosition(this.world.getPlayers());
+        }
+
+        int chunkX = MathHelper.floor(player.getX()) >> 4;
+        int chunkZ = MathHelper.floor(player.getZ()) >> 4;
+
+        if (!this.trackerUpdatePositions.containsKey(player)) {
+            this.trackerUpdatePositions.put(player, ChunkPos.toLong(chunkX, chunkZ));
+
+            // We don't know which trackers the player could be tracking, so fall back to updating all of them
+            for (ThreadedAnvilChunkStorage.EntityTracker tracker : this.entityTrackers.values()) {
+                if (tracker != playerTracker) {
+                    tracker.updateCameraPosition(player);
+                }
+            }
+
+            return;
+        }
+
+        long prevPos = this.trackerUpdatePositions.put(player, ChunkPos.toLong(chunkX, chunkZ));
+
+        ArrayList<ThreadedAnvilChunkStorage.EntityTracker> trackers = this.nearbyTrackers;
+        this.trackerGrid.collect(ChunkPos.getPackedX(prevPos), ChunkPos.getPackedZ(prevPos), chunkX, chunkZ,
+                this.watchDistance + 1, trackers);
+
+        try {
+            for (ThreadedAnvilChunkStorage.EntityTracker tracker : trackers) {
+                if (tracker != playerTracker) {
+                    tracker.updateCameraPosition(player);
+                }
+            }
+        } finally {
+            trackers.clear();
+        }
+    }
+
+    @Inject(method = "loadEntity", at = @At("RETURN"))
+    private void onEntityLoaded(Entity entity, CallbackInfo ci) {
+        ThreadedAnvilChunkStorage.EntityTracker tracker = this.entityTrackers.get(entity.getEntityId());
+
+        if (tracker != null) {
+            Vec3d pos = tracker.entry.getLastPos();
+
+            this.trackerGrid.add(tracker, MathHelper.floor(pos.x) >> 4, MathHelper.floor(pos.z) >> 4);
+        }
+
+        // Vanilla has just updated all trackers for the new player
+        if (entity instanceof ServerPlayerEntity) {
+            this.trackerUpdatePositions.put((ServerPlayerEntity) entity,
+                    ChunkPos.toLong(MathHelper.floor(entity.getX()) >> 4, MathHelper.floor(entity.getZ()) >> 4));
+        }
+    }
+
+    @Inject(method = "unloadEntity", at = @At("HEAD"))
+    private void onEntityUnloaded(Entity entity, CallbackInfo ci) {
+        ThreadedAnvilChunkStorage.EntityTracker tracker = this.entityTrackers.get(entity.getEntityId());
+
+        if (tracker != null) {
+            this.trackerGrid.remove(tracker);
+        }
+
+        if (entity instanceof ServerPlayerEntity) {
+            this.trackerUpdatePositions.removeLong(entity);
+        }
+    }
+
+    /**
+     * When a player moves between chunk sections, vanilla updates every tracker for it afterwards, so its last update
+     * position is updated.
+     */
+    @Redirect(method = "tickPlayerMovement", at = @At(value = "FIELD", opcode = Opcodes.PUTFIELD,
+            target = "Lnet/minecraft/server/world/ThreadedAnvilChunkStorage$EntityTracker;trackedSection:Lnet/minecraft/util/math/ChunkSectionPos;"))
+    private void onTrackedSectionChanged(ThreadedAnvilChunkStorage.EntityTracker tracker, ChunkSectionPos pos) {
+        tracker.trackedSection = pos;
+
+        if (tracker.entity instanceof ServerPlayerEntity) {
+            this.trackerUpdatePositions.put((ServerPlayerEntity) tracker.entity,
+                    ChunkPos.toLong(pos.getSectionX(), pos.getSectionZ()));
+        }
+    }
+
+    /**
+     * The last position sent for an entity only changes when its tracker entry is ticked, which happens at the end of
+     * tickPlayerMovement. Move the trackers whose last sent position has entered another chunk afterwards.
+     */
+    @Inject(method = "tickPlayerMovement", at = @At("RETURN"))
+    private void onPlayerMovementTicked(CallbackInfo ci) {
+        for (ThreadedAnvilChunkStorage.EntityTracker tracker : this.entityTrackers.values()) {
+            Vec3d pos = tracker.entry.getLastPos();
+
+            this.trackerGrid.move(tracker, MathHelper.floor(pos.x) >> 4, MathHelper.floor(pos.z) >> 4);
+        }
+    }
+
     private void sendChunks(ChunkSectionPos oldPos, ServerPlayerEntity player) {
         int newCenterX = MathHelper.floor(player.getX()) >> 4;
         int newCenterZ = MathHelper.floor(player.getZ()) >> 4;
@@ -121,6 +242,13 @@ public abstract class MixinThreadedAnvilChunkStorage {
     }
 
     protected void startWatchingChunk(ServerPlayerEntity player, int x, int z) {
+        // Chunks are sent within a budget every tick if the send queue is enabled
+        if ((Object) this instanceof ChunkSendQueueHolder) {
+            ((ChunkSendQueueHolder) (Object) this).queueChunk(player, ChunkPos.toLong(x, z));
+
+            return;
+        }
+
         ChunkHolder holder = this.getChunkHolder(ChunkPos.toLong(x, z));
 
         if (holder != null) {
@@ -133,6 +261,12 @@ public abstract class MixinThreadedAnvilChunkStorage {
     }
 
     protected void stopWatchingChunk(ServerPlayerEntity player, int x, int z) {
+        if ((Object) this instanceof ChunkSendQueueHolder) {
+            ((ChunkSendQueueHolder) (Object) this).removeQueuedChunk(player, ChunkPos.toLong(x, z));
+        }
+
+        // The unload packet is sent even if the chunk was still queued, as vanilla may have sent it to the player when
+        // it finished loading
         player.sendUnloadChunkPacket(new ChunkPos(x, z));
     }
 
@@ -0,0 +1,31 @@
+package me.jellysquid.mods.lithium.mixin.world.player_chunk_tick.packet_cache;
+
+import me.jellysquid.mods.lithium.common.LithiumMod;
+import me.jellysquid.mods.lithium.common.world.chunk.ChunkDataPacketCache;
+import net.minecraft.network.packet.s2c.play.ChunkDataS2CPacket;
+import net.minecraft.server.world.ThreadedAnvilChunkStorage;
+import net.minecraft.world.chunk.WorldChunk;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Redirect;
+
+@Mixin(ThreadedAnvilChunkStorage.class)
+public class ThreadedAnvilChunkStorageMixin {
+    private final ChunkDataPacketCache chunkDataPacketCache =
+            new ChunkDataPacketCache(LithiumMod.CONFIG.getValue("world.player_chunk_tick.packet_cache.max_chunks"));
+
+    /**
+     * Vanilla serializes the chunk again for every player who starts watching it, unless the chunk is sent to multiple
+     * players at once. Take the packet from the cache instead, so that all players share the serialized chunk until it
+     * is modified.
+     */
+    @Redirect(method = "sendChunkDataPackets", at = @At(value = "NEW",
+            target = "net/minecraft/network/packet/s2c/play/ChunkDataS2CPacket"))
+    private ChunkDataS2CPacket createChunkDataPacket(WorldChunk chunk, int includedSectionsMask) {
+        if (includedSectionsMask == 0xFFFF) {
+            return this.chunkDataPacketCache.getPacket(chunk);
+        }
+
+        return new ChunkDataS2CPacket(chunk, includedSectionsMask);
+    }
+}
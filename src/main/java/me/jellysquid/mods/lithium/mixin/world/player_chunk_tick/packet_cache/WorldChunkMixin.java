@@ -0,0 +1,32 @@
+package me.jellysquid.mods.lithium.mixin.world.player_chunk_tick.packet_cache;
+
+import me.jellysquid.mods.lithium.common.world.chunk.WorldChunkExtended;
+import net.minecraft.world.chunk.WorldChunk;
+import org.objectweb.asm.Opcodes;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Redirect;
+
+/**
+ * Counts the modifications of a chunk, which are the same changes that make the chunk need to be saved again.
+ */
+@Mixin(WorldChunk.class)
+public class WorldChunkMixin implements WorldChunkExtended {
+    @Shadow
+    private boolean shouldSave;
+
+    private int modificationCount;
+
+    @Redirect(method = { "setBlockState", "markDirty", "setShouldSave" }, at = @At(value = "FIELD",
+            opcode = Opcodes.PUTFIELD, target = "Lnet/minecraft/world/chunk/WorldChunk;shouldSave:Z"))
+    private void onShouldSaveChanged(WorldChunk chunk, boolean shouldSave) {
+        this.shouldSave = shouldSave;
+        this.modificationCount++;
+    }
+
+    @Override
+    public int getModificationCount() {
+        return this.modificationCount;
+    }
+}
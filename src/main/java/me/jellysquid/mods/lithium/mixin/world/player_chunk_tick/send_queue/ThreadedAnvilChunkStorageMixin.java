@@ -0,0 +1,201 @@
+package me.jellysquid.mods.lithium.mixin.world.player_chunk_tick.send_queue;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectLinkedOpenHashMap;
+import me.jellysquid.mods.lithium.common.LithiumMod;
+import me.jellysquid.mods.lithium.common.world.chunk.ChunkSendQueue;
+import me.jellysquid.mods.lithium.common.world.chunk.ChunkSendQueueHolder;
+import net.minecraft.entity.Entity;
+import net.minecraft.network.Packet;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ChunkHolder;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.server.world.ThreadedAnvilChunkStorage;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Queues the chunks which become visible to a player instead of sending them immediately, and sends the queued chunks
+ * of all players in order of their distance to the player within a budget of chunks and bytes every tick. The chunks
+ * which become visible when a player moves are queued by
+ * {@link me.jellysquid.mods.lithium.mixin.world.player_chunk_tick.MixinThreadedAnvilChunkStorage}.
+ */
+@Mixin(ThreadedAnvilChunkStorage.class)
+public abstract class ThreadedAnvilChunkStorageMixin implements ChunkSendQueueHolder {
+    private final int maxChunksPerTick =
+            LithiumMod.CONFIG.getValue("world.player_chunk_tick.send_queue.max_chunks_per_tick");
+    private final int maxBytesPerTick =
+            LithiumMod.CONFIG.getValue("world.player_chunk_tick.send_queue.max_bytes_per_tick");
+
+    private final Reference2ObjectLinkedOpenHashMap<ServerPlayerEntity, ChunkSendQueue> chunkSendQueues =
+            new Reference2ObjectLinkedOpenHashMap<>();
+
+    // The packets of the chunks sent during the current tick, shared by all players receiving the same chunk
+    private final Long2ObjectOpenHashMap<Packet<?>[]> chunkPacketCache = new Long2ObjectOpenHashMap<>();
+
+    private int chunkSendOffset;
+
+    @Shadow
+    @Final
+    private ServerWorld world;
+
+    @Shadow
+    protected abstract ChunkHolder getChunkHolder(long pos);
+
+    @Shadow
+    protected abstract void sendChunkDataPackets(ServerPlayerEntity player, Packet<?>[] packets, WorldChunk chunk);
+
+    @Shadow
+    protected abstract void sendWatchPackets(ServerPlayerEntity player, ChunkPos pos, Packet<?>[] packets,
+                                             boolean withinMaxWatchDistance, boolean withinViewDistance);
+
+    /**
+     * Queues the chunks which are sent to a player joining the world, as this is when most chunks are sent at once.
+     */
+    @Redirect(method = "handlePlayerAddedOrRemoved", at = @At(value = "INVOKE",
+            target = "Lnet/minecraft/server/world/ThreadedAnvilChunkStorage;sendWatchPackets(Lnet/minecraft/server/network/ServerPlayerEntity;Lnet/minecraft/util/math/ChunkPos;[Lnet/minecraft/network/Packet;ZZ)V"))
+    private void queueWatchPackets(ThreadedAnvilChunkStorage storage, ServerPlayerEntity player, ChunkPos pos,
+                                   Packet<?>[] packets, boolean withinMaxWatchDistance, boolean withinViewDistance) {
+        if (withinViewDistance && !withinMaxWatchDistance && player.world == this.world) {
+            this.queueChunk(player, pos.toLong());
+        } else {
+            if (!withinViewDistance) {
+                this.removeQueuedChunk(player, pos.toLong());
+            }
+
+            this.sendWatchPackets(player, pos, packets, withinMaxWatchDistance, withinViewDistance);
+        }
+    }
+
+    /**
+     * Vanilla also sends a chunk to the players watching it once the chunk has finished loading, which can happen while
+     * the chunk is still queued. Every chunk is sent through this method, so the chunk is removed from the queue here
+     * in order to not send it to the player a second time.
+     */
+    @Inject(method = "sendChunkDataPackets", at = @At("HEAD"))
+    private void onChunkSent(ServerPlayerEntity player, Packet<?>[] packets, WorldChunk chunk, CallbackInfo ci) {
+        this.removeQueuedChunk(player, chunk.getPos().toLong());
+    }
+
+    @Inject(method = "unloadEntity", at = @At("HEAD"))
+    private void onEntityUnloaded(Entity entity, CallbackInfo ci) {
+        if (entity instanceof ServerPlayerEntity) {
+            this.chunkSendQueues.remove(entity);
+        }
+    }
+
+    @Inject(method = "tick(Ljava/util/function/BooleanSupplier;)V", at = @At("HEAD"))
+    private void onTick(BooleanSupplier shouldKeepTicking, CallbackInfo ci) {
+        if (!this.chunkSendQueues.isEmpty()) {
+            this.sendQueuedChunks();
+        }
+    }
+
+    /**
+     * Sends the queued chunks of all players until the per-tick budget of chunks or bytes is used up. Players take
+     * turns sending their nearest chunk, and the player which goes first changes every tick, so that every player keeps
+     * receiving chunks when many players are waiting for chunks at once (i.e. after a restart.)
+     */
+    private void sendQueuedChunks() {
+        int maxChunks = this.maxChunksPerTick;
+        int maxBytes = this.maxBytesPerTick;
+
+        ServerPlayerEntity[] players = this.chunkSendQueues.keySet().toArray(new ServerPlayerEntity[0]);
+
+        // The counter wraps around after enough ticks, so the offset must not become negative
+        int offset = Math.floorMod(this.chunkSendOffset++, players.length);
+
+        int chunks = 0;
+        long bytes = 0;
+
+        boolean sent = true;
+
+        // At least one chunk is sent every tick, even if it exceeds the byte budget on its own
+        while (sent && chunks < maxChunks && bytes < maxBytes) {
+            sent = false;
+
+            for (int i = 0; i < players.length && chunks < maxChunks && bytes < maxBytes; i++) {
+                ServerPlayerEntity player = players[(offset + i) % players.length];
+                ChunkSendQueue queue = this.chunkSendQueues.get(player);
+
+                if (queue.isEmpty()) {
+                    continue;
+                }
+
+                long pos = queue.poll(MathHelper.floor(player.getX()) >> 4, MathHelper.floor(player.getZ()) >> 4);
+
+                ChunkHolder holder = this.getChunkHolder(pos);
+                WorldChunk chunk = holder != null ? holder.getWorldChunk() : null;
+
+                // Chunks which are still loading are sent by vanilla once they're ready
+                if (chunk == null || player.world != this.world) {
+                    continue;
+                }
+
+                Packet<?>[] packets = this.chunkPacketCache.get(pos);
+
+                if (packets == null) {
+                    this.chunkPacketCache.put(pos, packets = new Packet[2]);
+                }
+
+                this.sendChunkDataPackets(player, packets, chunk);
+
+                chunks++;
+                bytes += estimatePacketSize(chunk);
+
+                sent = true;
+            }
+        }
+
+        this.chunkPacketCache.clear();
+        this.chunkSendQueues.values().removeIf(ChunkSendQueue::isEmpty);
+    }
+
+    @Override
+    public void queueChunk(ServerPlayerEntity player, long pos) {
+        ChunkSendQueue queue = this.chunkSendQueues.get(player);
+
+        if (queue == null) {
+            this.chunkSendQueues.put(player, queue = new ChunkSendQueue());
+        }
+
+        queue.add(pos);
+    }
+
+    @Override
+    public void removeQueuedChunk(ServerPlayerEntity player, long pos) {
+        ChunkSendQueue queue = this.chunkSendQueues.get(player);
+
+        if (queue != null) {
+            queue.remove(pos);
+        }
+    }
+
+    /**
+     * Estimates the size of the chunk data packet for a chunk without serializing it, see
+     * {@link net.minecraft.network.packet.s2c.play.ChunkDataS2CPacket}. The biome array and heightmaps are counted as
+     * a fixed amount of bytes.
+     */
+    private static int estimatePacketSize(WorldChunk chunk) {
+        int size = 4096 + 1024;
+
+        for (ChunkSection section : chunk.getSectionArray()) {
+            if (!ChunkSection.isEmpty(section)) {
+                size += section.getPacketSize();
+            }
+        }
+
+        return size;
+    }
+}
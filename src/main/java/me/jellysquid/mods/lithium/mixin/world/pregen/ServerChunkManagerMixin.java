@@ -0,0 +1,48 @@
+package me.jellysquid.mods.lithium.mixin.world.pregen;
+
+import me.jellysquid.mods.lithium.common.world.pregen.ChunkPregenerator;
+import me.jellysquid.mods.lithium.common.world.pregen.ChunkPregeneratorHolder;
+import net.minecraft.server.world.ServerChunkManager;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs the {@link ChunkPregenerator} of the world before the chunk manager processes its tickets, so that the tickets
+ * of newly requested chunks are picked up in the same tick.
+ */
+@Mixin(ServerChunkManager.class)
+public class ServerChunkManagerMixin implements ChunkPregeneratorHolder {
+    private ChunkPregenerator pregenerator;
+
+    @Inject(method = "tick(Ljava/util/function/BooleanSupplier;)V", at = @At("HEAD"))
+    private void tickPregenerator(BooleanSupplier shouldKeepTicking, CallbackInfo ci) {
+        if (this.pregenerator != null && this.pregenerator.tick()) {
+            this.pregenerator = null;
+        }
+    }
+
+    /**
+     * Save the progress when the world is closed, so that generation can be resumed after a restart.
+     */
+    @Inject(method = "close", at = @At("HEAD"))
+    private void stopPregenerator(CallbackInfo ci) {
+        if (this.pregenerator != null) {
+            this.pregenerator.stop(false);
+            this.pregenerator = null;
+        }
+    }
+
+    @Override
+    public ChunkPregenerator getPregenerator() {
+        return this.pregenerator;
+    }
+
+    @Override
+    public void setPregenerator(ChunkPregenerator pregenerator) {
+        this.pregenerator = pregenerator;
+    }
+}
@@ -0,0 +1,265 @@
+package me.jellysquid.mods.lithium.common.entity;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Replays random sequences of entities being spawned, moved between chunks, removed and unloaded with their chunk, and
+ * checks that searching for hard collision entities with {@link HardCollisionEntityIndex} returns the same entities in
+ * the same order as searching every chunk in range, like vanilla does.
+ *
+ * The repository has no JMH setup, so a rough comparison is printed instead: a crowd of mobs in a 3x3 chunk farm with
+ * a few shulkers searches its surroundings once per mob, with and without the index. Chunks are stood in for by a hash
+ * map lookup, so this only shows the cost of the lookups the index avoids. The test prints its random seed when it
+ * fails, so failures are reproducible in the debugger.
+ */
+public class TestHardCollisionEntityIndex {
+    private static final int STEPS = 200_000;
+    private static final int WORLD_SIZE = 8;
+
+    private static final int MOBS = 2000;
+    private static final int BENCHMARK_ROUNDS = 200;
+
+    public static void main(String[] args) {
+        long seed = new Random().nextLong();
+
+        TestHardCollisionEntityIndex test = new TestHardCollisionEntityIndex();
+
+        try {
+            test.testReplay(new Random(seed));
+            test.benchmarkCrowd(new Random(seed));
+        } catch (Throwable e) {
+            System.out.println("Test failed with random seed: " + seed);
+            throw e;
+        }
+
+        System.out.println("Hard collision entity index test passed.");
+    }
+
+    public void testReplay(Random rand) {
+        World world = new World();
+        List<TestEntity> entities = new ArrayList<>();
+
+        for (int step = 0; step < STEPS; step++) {
+            int action = rand.nextInt(16);
+
+            if (action < 4 || entities.isEmpty()) {
+                boolean hard = rand.nextInt(4) == 0;
+                TestEntity entity = new TestEntity(hard, rand.nextInt(WORLD_SIZE), rand.nextInt(WORLD_SIZE));
+                entities.add(entity);
+                world.add(entity);
+            } else if (action < 12) {
+                TestEntity entity = entities.get(rand.nextInt(entities.size()));
+
+                if (world.isLoaded(entity.chunkX, entity.chunkZ)) {
+                    world.move(entity, rand.nextInt(WORLD_SIZE), rand.nextInt(WORLD_SIZE));
+                }
+            } else if (action < 14) {
+                TestEntity entity = entities.remove(rand.nextInt(entities.size()));
+
+                if (world.isLoaded(entity.chunkX, entity.chunkZ)) {
+                    world.remove(entity);
+                }
+            } else if (action < 15) {
+                world.unload(rand.nextInt(WORLD_SIZE), rand.nextInt(WORLD_SIZE));
+            } else {
+                world.load(rand.nextInt(WORLD_SIZE), rand.nextInt(WORLD_SIZE));
+            }
+
+            int minX = rand.nextInt(WORLD_SIZE), maxX = minX + rand.nextInt(3);
+            int minZ = rand.nextInt(WORLD_SIZE), maxZ = minZ + rand.nextInt(3);
+
+            if (!world.search(minX, minZ, maxX, maxZ, false).equals(world.search(minX, minZ, maxX, maxZ, true))) {
+                throw new IllegalStateException("Search with index differs from search without it at step " + step);
+            }
+        }
+
+        if (world.index.size() != world.countLoadedHardEntities()) {
+            throw new IllegalStateException("Index holds " + world.index.size() + " entities, but " +
+                    world.countLoadedHardEntities() + " are loaded");
+        }
+    }
+
+    public void benchmarkCrowd(Random rand) {
+        World world = new World();
+        List<TestEntity> mobs = new ArrayList<>();
+
+        for (int i = 0; i < MOBS; i++) {
+            TestEntity mob = new TestEntity(false, rand.nextInt(3), rand.nextInt(3));
+            mobs.add(mob);
+            world.add(mob);
+        }
+
+        for (int i = 0; i < 4; i++) {
+            world.add(new TestEntity(true, 0, 0));
+        }
+
+        // Warm up both code paths before measuring
+        long found = this.searchAround(world, mobs, false) + this.searchAround(world, mobs, true);
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < BENCHMARK_ROUNDS; i++) {
+            found += this.searchAround(world, mobs, false);
+        }
+
+        long vanillaTime = System.nanoTime() - start;
+        start = System.nanoTime();
+
+        for (int i = 0; i < BENCHMARK_ROUNDS; i++) {
+            found += this.searchAround(world, mobs, true);
+        }
+
+        long indexedTime = System.nanoTime() - start;
+
+        System.out.printf("Searched for %d mobs over %d rounds (%d found): %.2fms without index, %.2fms with index%n",
+                MOBS, BENCHMARK_ROUNDS, found, vanillaTime / 1.0E6D, indexedTime / 1.0E6D);
+    }
+
+    private long searchAround(World world, List<TestEntity> mobs, boolean useIndex) {
+        long found = 0;
+
+        for (TestEntity mob : mobs) {
+            found += world.search(mob.chunkX - 1, mob.chunkZ - 1, mob.chunkX + 1, mob.chunkZ + 1, useIndex).size();
+        }
+
+        return found;
+    }
+
+    private static class TestEntity {
+        final boolean hard;
+        int chunkX, chunkZ;
+
+        TestEntity(boolean hard, int chunkX, int chunkZ) {
+            this.hard = hard;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+    }
+
+    /**
+     * Follows the order of calls the world and its chunks make to the index.
+     */
+    private static class World {
+        final Long2ObjectOpenHashMap<List<TestEntity>> loadedChunks = new Long2ObjectOpenHashMap<>();
+        final Long2ObjectOpenHashMap<List<TestEntity>> unloadedChunks = new Long2ObjectOpenHashMap<>();
+        final HardCollisionEntityIndex<TestEntity> index = new HardCollisionEntityIndex<>();
+
+        boolean isLoaded(int x, int z) {
+            return !this.unloadedChunks.containsKey(key(x, z));
+        }
+
+        void add(TestEntity entity) {
+            if (!this.isLoaded(entity.chunkX, entity.chunkZ)) {
+                this.load(entity.chunkX, entity.chunkZ);
+            }
+
+            this.loadedChunks.computeIfAbsent(key(entity.chunkX, entity.chunkZ), k -> new ArrayList<>()).add(entity);
+
+            if (entity.hard) {
+                this.index.onEntityAdded(entity.chunkX, entity.chunkZ, entity);
+            }
+        }
+
+        void remove(TestEntity entity) {
+            this.loadedChunks.get(key(entity.chunkX, entity.chunkZ)).remove(entity);
+
+            if (entity.hard) {
+                this.index.onEntityRemoved(entity);
+            }
+        }
+
+        void move(TestEntity entity, int x, int z) {
+            this.remove(entity);
+
+            entity.chunkX = x;
+            entity.chunkZ = z;
+
+            this.add(entity);
+        }
+
+        void unload(int x, int z) {
+            if (!this.isLoaded(x, z)) {
+                return;
+            }
+
+            List<TestEntity> entities = this.loadedChunks.remove(key(x, z));
+
+            if (entities == null) {
+                entities = new ArrayList<>();
+            }
+
+            for (TestEntity entity : entities) {
+                if (entity.hard) {
+                    this.index.onEntityRemoved(entity);
+                }
+            }
+
+            this.unloadedChunks.put(key(x, z), entities);
+        }
+
+        void load(int x, int z) {
+            List<TestEntity> entities = this.unloadedChunks.remove(key(x, z));
+
+            if (entities == null) {
+                return;
+            }
+
+            // Loaded chunks add their entities to their lists one by one, which is when they are indexed
+            for (TestEntity entity : entities) {
+                this.add(entity);
+            }
+        }
+
+        List<TestEntity> search(int minX, int minZ, int maxX, int maxZ, boolean useIndex) {
+            List<TestEntity> found = new ArrayList<>();
+
+            if (useIndex && this.index.isEmpty()) {
+                return found;
+            }
+
+            for (int x = minX; x <= maxX; x++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    if (useIndex && !this.index.hasEntities(x, z)) {
+                        continue;
+                    }
+
+                    List<TestEntity> entities = this.loadedChunks.get(key(x, z));
+
+                    if (entities == null) {
+                        continue;
+                    }
+
+                    for (TestEntity entity : entities) {
+                        if (entity.hard) {
+                            found.add(entity);
+                        }
+                    }
+                }
+            }
+
+            return found;
+        }
+
+        int countLoadedHardEntities() {
+            int count = 0;
+
+            for (List<TestEntity> entities : this.loadedChunks.values()) {
+                for (TestEntity entity : entities) {
+                    if (entity.hard) {
+                        count++;
+                    }
+                }
+            }
+
+            return count;
+        }
+
+        private static long key(int x, int z) {
+            return (long) x & 0xFFFFFFFFL | ((long) z & 0xFFFFFFFFL) << 32;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package me.jellysquid.mods.lithium.common.entity.movement;
+
+import java.util.Random;
+
+/**
+ * Checks that {@link SectionCollisionMasks} agrees with a plain array of flags while blocks are randomly changed, for
+ * single blocks and for range queries.
+ *
+ * The repository has no JMH setup, so a rough comparison is printed instead: 500 mob-sized boxes are repeatedly checked
+ * for collisions in dense terrain made of 3x3x3 sections, once by looking up the block of every position in the box
+ * and once by using the masks first. Block states are stood in for by objects with a virtual shape lookup, so this only
+ * shows the cost of the block lookups which the masks avoid, not that of Minecraft's shape code. The test prints its
+ * random seed when it fails, so failures are reproducible in the debugger.
+ */
+public class TestSectionCollisionMasks {
+    private static final int ITERATIONS = 200_000;
+
+    private static final int MOBS = 500;
+    private static final int BENCHMARK_ROUNDS = 200;
+
+    public static void main(String[] args) {
+        long seed = new Random().nextLong();
+
+        TestSectionCollisionMasks test = new TestSectionCollisionMasks();
+
+        try {
+            test.testAgainstFlags(new Random(seed));
+            test.benchmarkMobCollisions(new Random(seed));
+        } catch (Throwable e) {
+            System.out.println("Test failed with random seed: " + seed);
+            throw e;
+        }
+
+        System.out.println("Section collision masks test passed.");
+    }
+
+    public void testAgainstFlags(Random rand) {
+        SectionCollisionMasks masks = new SectionCollisionMasks();
+        boolean[] collidable = new boolean[4096];
+        boolean[] fullCube = new boolean[4096];
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            int x = rand.nextInt(16);
+            int y = rand.nextInt(16);
+            int z = rand.nextInt(16);
+
+            if (rand.nextInt(4) != 0) {
+                // Keep the masks sparse, so that range queries return both results
+                boolean solid = rand.nextInt(8) == 0;
+                boolean full = solid && rand.nextBoolean();
+
+                masks.set(x, y, z, solid, full);
+                collidable[index(x, y, z)] = solid;
+                fullCube[index(x, y, z)] = full;
+            }
+
+            if (masks.isCollidable(x, y, z) != collidable[index(x, y, z)] ||
+                    masks.isFullCube(x, y, z) != fullCube[index(x, y, z)]) {
+                throw new IllegalStateException("Mask differs from flags at " + x + ", " + y + ", " + z);
+            }
+
+            int minX = rand.nextInt(16), maxX = minX + rand.nextInt(16 - minX);
+            int minY = rand.nextInt(16), maxY = minY + rand.nextInt(Math.min(4, 16 - minY));
+            int minZ = rand.nextInt(16), maxZ = minZ + rand.nextInt(16 - minZ);
+
+            if (masks.anyCollidable(minX, minY, minZ, maxX, maxY, maxZ) !=
+                    anyCollidable(collidable, minX, minY, minZ, maxX, maxY, maxZ)) {
+                throw new IllegalStateException("Range query differs from flags");
+            }
+        }
+    }
+
+    private static boolean anyCollidable(boolean[] collidable, int minX, int minY, int minZ, int maxX, int maxY,
+                                         int maxZ) {
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    if (collidable[index(x, y, z)]) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    public void benchmarkMobCollisions(Random rand) {
+        State air = new State(false, false);
+        State stone = new State(true, true);
+        State slab = new State(true, false);
+        State grass = new State(false, false);
+
+        State[][] sections = new State[27][4096];
+        SectionCollisionMasks[] masks = new SectionCollisionMasks[27];
+
+        // Dense terrain with caves: mostly stone, some slabs and plants, and pockets of air
+        for (int s = 0; s < sections.length; s++) {
+            masks[s] = new SectionCollisionMasks();
+
+            for (int i = 0; i < 4096; i++) {
+                int roll = rand.nextInt(100);
+                State state = roll < 60 ? stone : roll < 65 ? slab : roll < 75 ? grass : air;
+
+                sections[s][i] = state;
+                masks[s].set(i & 15, i >> 8, (i >> 4) & 15, state.collidable, state.fullCube);
+            }
+        }
+
+        int[] mobs = new int[MOBS * 3];
+
+        for (int i = 0; i < mobs.length; i++) {
+            mobs[i] = rand.nextInt(44);
+        }
+
+        long lookupTime = 0;
+        long maskTime = 0;
+        int lookupHits = 0;
+        int maskHits = 0;
+
+        for (int round = 0; round < BENCHMARK_ROUNDS; round++) {
+            long start = System.nanoTime();
+
+            for (int i = 0; i < MOBS; i++) {
+                lookupHits += countCollisions(sections, null, mobs[i * 3], mobs[i * 3 + 1], mobs[i * 3 + 2]);
+            }
+
+            long mid = System.nanoTime();
+
+            for (int i = 0; i < MOBS; i++) {
+                maskHits += countCollisions(sections, masks, mobs[i * 3], mobs[i * 3 + 1], mobs[i * 3 + 2]);
+            }
+
+            long end = System.nanoTime();
+
+            // Don't measure the first rounds, in which the code has not been compiled yet
+            if (round >= BENCHMARK_ROUNDS / 4) {
+                lookupTime += mid - start;
+                maskTime += end - mid;
+            }
+        }
+
+        if (lookupHits != maskHits) {
+            throw new IllegalStateException("Masks found a different number of collisions");
+        }
+
+        int measured = BENCHMARK_ROUNDS - BENCHMARK_ROUNDS / 4;
+
+        System.out.printf("%d mobs in dense terrain, per round: block lookups %.3fms, masks %.3fms%n",
+                MOBS, lookupTime / 1.0E6D / measured, maskTime / 1.0E6D / measured);
+    }
+
+    /**
+     * Counts the blocks with a collision shape in the 3x4x3 blocks around a mob at the given block position, which is
+     * the area swept by a mob of 0.6x1.95x0.6 blocks after expanding it for oversized blocks.
+     */
+    private static int countCollisions(State[][] sections, SectionCollisionMasks[] masks, int mobX, int mobY,
+                                       int mobZ) {
+        int count = 0;
+
+        for (int y = mobY; y < mobY + 4; y++) {
+            for (int z = mobZ; z < mobZ + 3; z++) {
+                for (int x = mobX; x < mobX + 3; x++) {
+                    int section = (x >> 4) + (z >> 4) * 3 + (y >> 4) * 9;
+
+                    if (masks != null) {
+                        if (!masks[section].isCollidable(x & 15, y & 15, z & 15)) {
+                            continue;
+                        }
+
+                        if (masks[section].isFullCube(x & 15, y & 15, z & 15)) {
+                            count++;
+                            continue;
+                        }
+                    }
+
+                    if (sections[section][index(x & 15, y & 15, z & 15)].getShape() != null) {
+                        count++;
+                    }
+                }
+            }
+        }
+
+        return count;
+    }
+
+    private static int index(int x, int y, int z) {
+        return (y << 8) | (z << 4) | x;
+    }
+
+    private static class State {
+        private final boolean collidable;
+        private final boolean fullCube;
+        private final Object shape;
+
+        private State(boolean collidable, boolean fullCube) {
+            this.collidable = collidable;
+            this.fullCube = fullCube;
+            this.shape = collidable ? new Object() : null;
+        }
+
+        private Object getShape() {
+            return this.shape;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package me.jellysquid.mods.lithium.common.entity.tracker;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Checks that batching the notifications of a {@link EntityNotificationBuffer} does not change what listeners see when
+ * they are read. Entities are moved along a line of chunk sections by a randomized script, and every crossing of a
+ * chunk section boundary produces the same enter and leave notifications as the entity tracker engine would. One set
+ * of listeners receives every notification immediately, another receives them from the buffer which is only flushed
+ * when an AI goal would read the listener. Both sets of listeners have to agree at every read.
+ *
+ * A second script bounces a single entity across a boundary many times between reads, which must cost at most one
+ * notification per read. The test prints its random seed when it fails, so failures are reproducible in the debugger.
+ */
+public class TestEntityNotificationBuffer {
+    private static final int SECTIONS = 64;
+    private static final int LISTENERS = 200;
+    private static final int ENTITIES = 500;
+    private static final int STEPS = 20_000;
+
+    public static void main(String[] args) {
+        TestEntityNotificationBuffer test = new TestEntityNotificationBuffer();
+        test.testScriptedMovements();
+        test.testBouncingEntity();
+        System.out.println("Entity notification buffer test passed.");
+    }
+
+    public void testScriptedMovements() {
+        long seed = new Random().nextLong();
+
+        try {
+            this.testScriptedMovements(new Random(seed));
+        } catch (Throwable e) {
+            System.out.println("Test failed with random seed: " + seed);
+            throw e;
+        }
+    }
+
+    private void testScriptedMovements(Random rand) {
+        List<ScriptedListener> immediate = new ArrayList<>();
+        List<ScriptedListener> batched = new ArrayList<>();
+
+        for (int i = 0; i < LISTENERS; i++) {
+            int section = rand.nextInt(SECTIONS);
+            int range = 1 + rand.nextInt(2);
+
+            immediate.add(new ScriptedListener(section, range));
+            batched.add(new ScriptedListener(section, range));
+        }
+
+        List<ScriptedEntity> entities = new ArrayList<>();
+
+        for (int i = 0; i < ENTITIES; i++) {
+            ScriptedEntity entity = new ScriptedEntity(rand.nextInt(SECTIONS));
+            entities.add(entity);
+
+            for (int j = 0; j < LISTENERS; j++) {
+                if (immediate.get(j).isInRange(entity.section)) {
+                    immediate.get(j).onEntered(entity);
+                    batched.get(j).onEntered(entity);
+                }
+            }
+        }
+
+        EntityNotificationBuffer<ScriptedListener, ScriptedEntity> buffer = new EntityNotificationBuffer<>();
+
+        for (int step = 0; step < STEPS; step++) {
+            ScriptedEntity entity = entities.get(rand.nextInt(ENTITIES));
+
+            int from = entity.section;
+            int to = Math.max(0, Math.min(SECTIONS - 1, from + rand.nextInt(3) - 1));
+
+            entity.section = to;
+
+            for (int j = 0; j < LISTENERS; j++) {
+                ScriptedListener listener = immediate.get(j);
+
+                boolean wasInRange = listener.isInRange(from);
+                boolean isInRange = listener.isInRange(to);
+
+                if (wasInRange && !isInRange) {
+                    listener.onLeft(entity);
+                    buffer.onLeft(batched.get(j), entity);
+                } else if (!wasInRange && isInRange) {
+                    listener.onEntered(entity);
+                    buffer.onEntered(batched.get(j), entity);
+                }
+            }
+
+            // An AI goal reads its listener every so often, which flushes the buffer first
+            if (rand.nextInt(50) == 0) {
+                buffer.flush(ScriptedListener::onEntered, ScriptedListener::onLeft);
+
+                for (int j = 0; j < LISTENERS; j++) {
+                    if (!immediate.get(j).nearby.equals(batched.get(j).nearby)) {
+                        throw new IllegalStateException("Batched listener differs at step " + step);
+                    }
+                }
+            }
+        }
+
+        buffer.flush(ScriptedListener::onEntered, ScriptedListener::onLeft);
+
+        long immediateNotifications = 0;
+        long batchedNotifications = 0;
+
+        for (int j = 0; j < LISTENERS; j++) {
+            if (!immediate.get(j).nearby.equals(batched.get(j).nearby)) {
+                throw new IllegalStateException("Batched listener differs after the last step");
+            }
+
+            immediateNotifications += immediate.get(j).notifications;
+            batchedNotifications += batched.get(j).notifications;
+        }
+
+        System.out.printf("%d moves: %d immediate notifications, %d batched notifications%n", STEPS,
+                immediateNotifications, batchedNotifications);
+    }
+
+    public void testBouncingEntity() {
+        ScriptedListener listener = new ScriptedListener(0, 1);
+        ScriptedEntity entity = new ScriptedEntity(1);
+
+        listener.onEntered(entity);
+        listener.notifications = 0;
+
+        EntityNotificationBuffer<ScriptedListener, ScriptedEntity> buffer = new EntityNotificationBuffer<>();
+
+        // Bounce between section 1 (in range) and section 2 (out of range), ending outside of the range
+        for (int i = 0; i < 5; i++) {
+            buffer.onLeft(listener, entity);
+            buffer.onEntered(listener, entity);
+        }
+
+        buffer.onLeft(listener, entity);
+        buffer.flush(ScriptedListener::onEntered, ScriptedListener::onLeft);
+
+        if (listener.nearby.contains(entity) || listener.notifications != 1) {
+            throw new IllegalStateException("Bouncing out of range should cost exactly one notification");
+        }
+
+        // Bounce back and forth, ending where the entity started
+        for (int i = 0; i < 5; i++) {
+            buffer.onEntered(listener, entity);
+            buffer.onLeft(listener, entity);
+        }
+
+        buffer.flush(ScriptedListener::onEntered, ScriptedListener::onLeft);
+
+        if (listener.nearby.contains(entity) || listener.notifications != 1 || !buffer.isEmpty()) {
+            throw new IllegalStateException("Bouncing back to the start should not cost any notifications");
+        }
+    }
+
+    private static class ScriptedEntity {
+        private int section;
+
+        private ScriptedEntity(int section) {
+            this.section = section;
+        }
+    }
+
+    private static class ScriptedListener {
+        private final int section;
+        private final int range;
+
+        private final Set<ScriptedEntity> nearby = new HashSet<>();
+        private int notifications;
+
+        private ScriptedListener(int section, int range) {
+            this.section = section;
+            this.range = range;
+        }
+
+        private boolean isInRange(int section) {
+            return Math.abs(section - this.section) <= this.range;
+        }
+
+        private void onEntered(ScriptedEntity entity) {
+            this.nearby.add(entity);
+            this.notifications++;
+        }
+
+        private void onLeft(ScriptedEntity entity) {
+            this.nearby.remove(entity);
+            this.notifications++;
+        }
+    }
+}
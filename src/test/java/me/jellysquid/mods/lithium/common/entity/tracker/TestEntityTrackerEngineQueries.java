@@ -0,0 +1,237 @@
+package me.jellysquid.mods.lithium.common.entity.tracker;
+
+import com.google.common.collect.Sets;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.Bootstrap;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityType;
+import net.minecraft.entity.ItemEntity;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.MathHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Spawns, moves and removes entities in random order, and checks that
+ * {@link EntityTrackerEngine#forEachEntityInBox(Box, Predicate)} visits exactly the entities which a full scan of all
+ * entities finds in random boxes.
+ *
+ * The repository has no JMH setup, so a rough comparison is printed instead: 2,000 entities in a 64x64 area each
+ * search the area around them once per round, with the engine and the way vanilla's World#getOtherEntities does it,
+ * which collects the entities of every chunk section in range into a new list. Chunks are stood in for by a hash map
+ * lookup. The test prints its random seed when it fails, so failures are reproducible in the debugger.
+ */
+public class TestEntityTrackerEngineQueries {
+    private static final int STEPS = 50_000;
+    private static final int AREA = 64;
+
+    private static final int MOBS = 2000;
+    private static final int BENCHMARK_ROUNDS = 100;
+
+    public static void main(String[] args) {
+        Bootstrap.initialize();
+
+        long seed = new Random().nextLong();
+
+        TestEntityTrackerEngineQueries test = new TestEntityTrackerEngineQueries();
+
+        try {
+            test.testRandomQueries(new Random(seed));
+            test.benchmarkCrowd(new Random(seed));
+        } catch (Throwable e) {
+            System.out.println("Test failed with random seed: " + seed);
+            throw e;
+        }
+
+        System.out.println("Entity tracker engine query test passed.");
+    }
+
+    public void testRandomQueries(Random rand) {
+        EntityTrackerEngine engine = new EntityTrackerEngine();
+        List<Entity> entities = new ArrayList<>();
+
+        for (int step = 0; step < STEPS; step++) {
+            int action = rand.nextInt(8);
+
+            if (action < 2 || entities.isEmpty()) {
+                Entity entity = createEntity(rand);
+                entities.add(entity);
+                engine.onEntityAdded(getSectionX(entity), getSectionY(entity), getSectionZ(entity), entity);
+            } else if (action < 6) {
+                Entity entity = entities.get(rand.nextInt(entities.size()));
+                int x = getSectionX(entity), y = getSectionY(entity), z = getSectionZ(entity);
+
+                moveRandomly(rand, entity);
+                engine.onEntityMoved(x, y, z, getSectionX(entity), getSectionY(entity), getSectionZ(entity), entity);
+            } else if (action < 7) {
+                Entity entity = entities.remove(rand.nextInt(entities.size()));
+                engine.onEntityRemoved(getSectionX(entity), getSectionY(entity), getSectionZ(entity), entity);
+            }
+
+            double x = rand.nextDouble() * AREA, y = rand.nextDouble() * 256, z = rand.nextDouble() * AREA;
+            Box box = new Box(x, y, z, x + rand.nextDouble() * 20, y + rand.nextDouble() * 20,
+                    z + rand.nextDouble() * 20);
+
+            Set<Entity> expected = Sets.newIdentityHashSet();
+
+            for (Entity entity : entities) {
+                if (entity.getBoundingBox().intersects(box)) {
+                    expected.add(entity);
+                }
+            }
+
+            Set<Entity> found = Sets.newIdentityHashSet();
+
+            List<Entity> visited = new ArrayList<>();
+            engine.forEachEntityInBox(box, visited::add);
+            found.addAll(visited);
+
+            if (found.size() != visited.size()) {
+                throw new IllegalStateException("Entities were visited twice at step " + step);
+            }
+
+            if (!found.equals(expected)) {
+                throw new IllegalStateException("Found " + found.size() + " entities instead of " + expected.size() +
+                        " at step " + step);
+            }
+
+            // Stopping the visitor must stop the query
+            int[] count = new int[1];
+            boolean completed = engine.forEachEntityInBox(box, entity -> ++count[0] < 2);
+
+            if (completed != (expected.size() < 2) || count[0] != Math.min(2, expected.size())) {
+                throw new IllegalStateException("Query did not stop when the visitor returned false at step " + step);
+            }
+        }
+    }
+
+    public void benchmarkCrowd(Random rand) {
+        EntityTrackerEngine engine = new EntityTrackerEngine();
+        Long2ObjectOpenHashMap<List<Entity>> sections = new Long2ObjectOpenHashMap<>();
+
+        Entity[] mobs = new Entity[MOBS];
+
+        for (int i = 0; i < MOBS; i++) {
+            Entity entity = createEntity(rand);
+            entity.updatePosition(rand.nextDouble() * AREA, 64 + rand.nextDouble() * 8, rand.nextDouble() * AREA);
+
+            mobs[i] = entity;
+
+            engine.onEntityAdded(getSectionX(entity), getSectionY(entity), getSectionZ(entity), entity);
+            sections.computeIfAbsent(ChunkSectionPos.asLong(getSectionX(entity), getSectionY(entity),
+                    getSectionZ(entity)), key -> new ArrayList<>()).add(entity);
+        }
+
+        // The visitor is re-used by every query, as the callers on hot paths should do
+        int[] count = new int[1];
+        Predicate<Entity> visitor = entity -> {
+            count[0]++;
+
+            return true;
+        };
+
+        // Warm up both code paths before measuring
+        long sum = runEngine(engine, mobs, visitor, count, BENCHMARK_ROUNDS / 10) +
+                runVanilla(sections, mobs, BENCHMARK_ROUNDS / 10);
+
+        long start = System.nanoTime();
+        sum += runVanilla(sections, mobs, BENCHMARK_ROUNDS);
+        long vanillaTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        sum += runEngine(engine, mobs, visitor, count, BENCHMARK_ROUNDS);
+        long engineTime = System.nanoTime() - start;
+
+        System.out.printf("%d rounds of %d entities searching around themselves (checksum %d): " +
+                "vanilla %.2fms, entity tracker engine %.2fms%n", BENCHMARK_ROUNDS, MOBS, sum,
+                vanillaTime / 1.0E6D, engineTime / 1.0E6D);
+    }
+
+    private static long runEngine(EntityTrackerEngine engine, Entity[] mobs, Predicate<Entity> visitor, int[] count,
+                                  int rounds) {
+        count[0] = 0;
+
+        for (int round = 0; round < rounds; round++) {
+            for (Entity mob : mobs) {
+                engine.forEachEntityInBox(mob.getBoundingBox().expand(1.0D), visitor);
+            }
+        }
+
+        return count[0];
+    }
+
+    /**
+     * [VanillaCopy] World#getOtherEntities and WorldChunk#collectOtherEntities, with the chunk sections in a hash map
+     */
+    private static long runVanilla(Long2ObjectOpenHashMap<List<Entity>> sections, Entity[] mobs, int rounds) {
+        long count = 0;
+
+        for (int round = 0; round < rounds; round++) {
+            for (Entity mob : mobs) {
+                Box box = mob.getBoundingBox().expand(1.0D);
+                List<Entity> list = new ArrayList<>();
+
+                int minX = MathHelper.floor((box.minX - 2.0D) / 16.0D);
+                int maxX = MathHelper.ceil((box.maxX + 2.0D) / 16.0D);
+                int minZ = MathHelper.floor((box.minZ - 2.0D) / 16.0D);
+                int maxZ = MathHelper.ceil((box.maxZ + 2.0D) / 16.0D);
+                int minY = MathHelper.clamp(MathHelper.floor((box.minY - 2.0D) / 16.0D), 0, 15);
+                int maxY = MathHelper.clamp(MathHelper.floor((box.maxY + 2.0D) / 16.0D), 0, 15);
+
+                for (int x = minX; x < maxX; x++) {
+                    for (int z = minZ; z < maxZ; z++) {
+                        for (int y = minY; y <= maxY; y++) {
+                            List<Entity> section = sections.get(ChunkSectionPos.asLong(x, y, z));
+
+                            if (section == null) {
+                                continue;
+                            }
+
+                            for (Entity entity : section) {
+                                if (entity.getBoundingBox().intersects(box)) {
+                                    list.add(entity);
+                                }
+                            }
+                        }
+                    }
+                }
+
+                count += list.size();
+            }
+        }
+
+        return count;
+    }
+
+    private static Entity createEntity(Random rand) {
+        Entity entity = new ItemEntity(EntityType.ITEM, null);
+        entity.updatePosition(rand.nextDouble() * AREA, rand.nextDouble() * 256, rand.nextDouble() * AREA);
+
+        return entity;
+    }
+
+    private static void moveRandomly(Random rand, Entity entity) {
+        double x = MathHelper.clamp(entity.getX() + rand.nextGaussian() * 8, 0, AREA);
+        double y = MathHelper.clamp(entity.getY() + rand.nextGaussian() * 8, 0, 255);
+        double z = MathHelper.clamp(entity.getZ() + rand.nextGaussian() * 8, 0, AREA);
+
+        entity.updatePosition(x, y, z);
+    }
+
+    private static int getSectionX(Entity entity) {
+        return MathHelper.floor(entity.getX()) >> 4;
+    }
+
+    private static int getSectionY(Entity entity) {
+        return MathHelper.floor(entity.getY()) >> 4;
+    }
+
+    private static int getSectionZ(Entity entity) {
+        return MathHelper.floor(entity.getZ()) >> 4;
+    }
+}
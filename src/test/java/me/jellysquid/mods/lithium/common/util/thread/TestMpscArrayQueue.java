@@ -0,0 +1,129 @@
+package me.jellysquid.mods.lithium.common.util.thread;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that {@link MpscArrayQueue} delivers every element exactly once and in the order of each producer, with 2, 8
+ * and 32 producer threads writing to the queue while a single consumer reads from it.
+ *
+ * The repository has no JMH setup, so the time taken to pass all elements through the queue is printed next to the
+ * time taken by the {@link ConcurrentLinkedQueue} and shared counter previously used by
+ * {@link ArrayPrioritizedTaskQueue}, as a rough comparison of both under contention.
+ */
+public class TestMpscArrayQueue {
+    private static final int ELEMENTS = 4_000_000;
+    private static final int[] PRODUCER_COUNTS = new int[] { 2, 8, 32 };
+
+    public static void main(String[] args) throws InterruptedException {
+        TestMpscArrayQueue test = new TestMpscArrayQueue();
+
+        for (int producers : PRODUCER_COUNTS) {
+            test.testProducers(producers);
+        }
+
+        System.out.println("MPSC array queue test passed.");
+    }
+
+    public void testProducers(int producers) throws InterruptedException {
+        int perProducer = ELEMENTS / producers;
+
+        MpscArrayQueue<Element> mpsc = new MpscArrayQueue<>();
+        long mpscTime = this.run(producers, perProducer, mpsc::offer, mpsc::poll);
+
+        Queue<Element> linked = new ConcurrentLinkedQueue<>();
+        AtomicInteger size = new AtomicInteger();
+
+        long linkedTime = this.run(producers, perProducer, element -> {
+            size.incrementAndGet();
+            linked.add(element);
+        }, () -> {
+            Element element = linked.poll();
+
+            if (element != null) {
+                size.decrementAndGet();
+            }
+
+            return element;
+        });
+
+        System.out.printf("%d producers, %d elements: ConcurrentLinkedQueue %.2fms, MpscArrayQueue %.2fms%n",
+                producers, perProducer * producers, linkedTime / 1.0E6D, mpscTime / 1.0E6D);
+    }
+
+    private long run(int producers, int perProducer, Producer producer, Consumer consumer)
+            throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers];
+
+        for (int i = 0; i < producers; i++) {
+            int id = i;
+
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+
+                for (int seq = 0; seq < perProducer; seq++) {
+                    producer.offer(new Element(id, seq));
+                }
+            });
+            threads[i].start();
+        }
+
+        int[] nextSeq = new int[producers];
+        int remaining = producers * perProducer;
+
+        long startTime = System.nanoTime();
+        start.countDown();
+
+        while (remaining > 0) {
+            Element element = consumer.poll();
+
+            if (element == null) {
+                continue;
+            }
+
+            if (element.seq != nextSeq[element.producer]) {
+                throw new IllegalStateException("Element of producer " + element.producer + " out of order");
+            }
+
+            nextSeq[element.producer]++;
+            remaining--;
+        }
+
+        long time = System.nanoTime() - startTime;
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (consumer.poll() != null) {
+            throw new IllegalStateException("Queue contains more elements than were added");
+        }
+
+        return time;
+    }
+
+    private interface Producer {
+        void offer(Element element);
+    }
+
+    private interface Consumer {
+        Element poll();
+    }
+
+    private static class Element {
+        private final int producer;
+        private final int seq;
+
+        private Element(int producer, int seq) {
+            this.producer = producer;
+            this.seq = seq;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package me.jellysquid.mods.lithium.common.world;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Simulates 100 players walking around a world full of entities, and checks that for every player movement
+ * {@link EntityTrackerGrid} returns exactly the trackers within range of the player's old or new chunk, the same as
+ * visiting every tracker of the world would. Entities also move between chunks, which exercises the bucket updates.
+ *
+ * The time taken to select the trackers is printed for both the grid and the vanilla loop over all trackers, as a rough
+ * indication of how both scale with the number of players. The test prints its random seed when it fails, so failures
+ * are reproducible in the debugger.
+ */
+public class TestEntityTrackerGrid {
+    private static final int PLAYERS = 100;
+    private static final int ENTITIES = 20_000;
+    private static final int WORLD_RADIUS = 200;
+    private static final int VIEW_DISTANCE = 10;
+    private static final int TICKS = 200;
+
+    public static void main(String[] args) {
+        new TestEntityTrackerGrid().testPlayerMovement();
+        System.out.println("Entity tracker grid test passed.");
+    }
+
+    public void testPlayerMovement() {
+        long seed = new Random().nextLong();
+
+        try {
+            this.testPlayerMovement(new Random(seed));
+        } catch (Throwable e) {
+            System.out.println("Test failed with random seed: " + seed);
+            throw e;
+        }
+    }
+
+    private void testPlayerMovement(Random rand) {
+        EntityTrackerGrid<SimulatedEntity> grid = new EntityTrackerGrid<>();
+        List<SimulatedEntity> entities = new ArrayList<>();
+
+        for (int i = 0; i < ENTITIES; i++) {
+            SimulatedEntity entity = new SimulatedEntity(randomCoord(rand), randomCoord(rand));
+            entities.add(entity);
+
+            grid.add(entity, entity.chunkX, entity.chunkZ);
+        }
+
+        SimulatedEntity[] players = new SimulatedEntity[PLAYERS];
+
+        for (int i = 0; i < PLAYERS; i++) {
+            players[i] = new SimulatedEntity(randomCoord(rand), randomCoord(rand));
+        }
+
+        int radius = VIEW_DISTANCE + 1;
+
+        List<SimulatedEntity> gridResult = new ArrayList<>();
+        Set<SimulatedEntity> expected = new HashSet<>();
+
+        long gridTime = 0;
+        long loopTime = 0;
+
+        for (int tick = 0; tick < TICKS; tick++) {
+            for (int i = 0; i < ENTITIES / 10; i++) {
+                SimulatedEntity entity = entities.get(rand.nextInt(ENTITIES));
+                entity.chunkX += rand.nextInt(3) - 1;
+                entity.chunkZ += rand.nextInt(3) - 1;
+
+                grid.move(entity, entity.chunkX, entity.chunkZ);
+            }
+
+            for (SimulatedEntity player : players) {
+                int prevX = player.chunkX;
+                int prevZ = player.chunkZ;
+
+                // Most movements stay within the same chunk, some players are teleported far away
+                if (rand.nextInt(100) == 0) {
+                    player.chunkX = randomCoord(rand);
+                    player.chunkZ = randomCoord(rand);
+                } else if (rand.nextInt(4) == 0) {
+                    player.chunkX += rand.nextInt(3) - 1;
+                    player.chunkZ += rand.nextInt(3) - 1;
+                }
+
+                long gridStart = System.nanoTime();
+                grid.collect(prevX, prevZ, player.chunkX, player.chunkZ, radius, gridResult);
+                gridTime += System.nanoTime() - gridStart;
+
+                long loopStart = System.nanoTime();
+
+                for (SimulatedEntity entity : entities) {
+                    if (entity.isWithin(prevX, prevZ, radius) ||
+                            entity.isWithin(player.chunkX, player.chunkZ, radius)) {
+                        expected.add(entity);
+                    }
+                }
+
+                loopTime += System.nanoTime() - loopStart;
+
+                if (gridResult.size() != expected.size() || !expected.containsAll(gridResult)) {
+                    throw new IllegalStateException("Grid differs from the full loop on tick " + tick);
+                }
+
+                gridResult.clear();
+                expected.clear();
+            }
+        }
+
+        System.out.printf("%d players, %d entities, %d ticks: full loop %.2fms, grid %.2fms%n", PLAYERS, ENTITIES,
+                TICKS, loopTime / 1.0E6D, gridTime / 1.0E6D);
+
+        for (SimulatedEntity entity : entities) {
+            grid.remove(entity);
+        }
+
+        if (grid.size() != 0) {
+            throw new IllegalStateException("Grid is not empty after removing all trackers");
+        }
+    }
+
+    private static int randomCoord(Random rand) {
+        return rand.nextInt(WORLD_RADIUS * 2) - WORLD_RADIUS;
+    }
+
+    private static class SimulatedEntity {
+        private int chunkX, chunkZ;
+
+        private SimulatedEntity(int chunkX, int chunkZ) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        private boolean isWithin(int x, int z, int radius) {
+            return Math.abs(this.chunkX - x) <= radius && Math.abs(this.chunkZ - z) <= radius;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package me.jellysquid.mods.lithium.common.world.chunk;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.Random;
+
+/**
+ * Checks that {@link ChunkSendQueue} always returns the pending chunk nearest to the player, while chunks are randomly
+ * added and removed and the player moves around. The test prints its random seed when it fails, so failures are
+ * reproducible in the debugger.
+ */
+public class TestChunkSendQueue {
+    private static final int ITERATIONS = 100_000;
+
+    public static void main(String[] args) {
+        new TestChunkSendQueue().testOrder();
+        System.out.println("Chunk send queue test passed.");
+    }
+
+    public void testOrder() {
+        long seed = new Random().nextLong();
+
+        try {
+            this.testOrder(new Random(seed));
+        } catch (Throwable e) {
+            System.out.println("Test failed with random seed: " + seed);
+            throw e;
+        }
+    }
+
+    private void testOrder(Random rand) {
+        ChunkSendQueue queue = new ChunkSendQueue();
+        LongOpenHashSet expected = new LongOpenHashSet();
+
+        int centerX = 0;
+        int centerZ = 0;
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            long pos = ChunkPos.toLong(centerX + rand.nextInt(21) - 10, centerZ + rand.nextInt(21) - 10);
+
+            switch (rand.nextInt(4)) {
+                case 0:
+                case 1:
+                    queue.add(pos);
+                    expected.add(pos);
+                    break;
+                case 2:
+                    if (queue.remove(pos) != expected.remove(pos)) {
+                        throw new IllegalStateException("Queue disagrees on whether a chunk was pending");
+                    }
+                    break;
+                default:
+                    if (rand.nextInt(8) == 0) {
+                        centerX += rand.nextInt(3) - 1;
+                        centerZ += rand.nextInt(3) - 1;
+                    }
+
+                    if (!queue.isEmpty()) {
+                        long polled = queue.poll(centerX, centerZ);
+
+                        if (!expected.remove(polled)) {
+                            throw new IllegalStateException("Queue returned a chunk which was not pending");
+                        }
+
+                        for (long other : expected) {
+                            if (distanceSq(other, centerX, centerZ) < distanceSq(polled, centerX, centerZ)) {
+                                throw new IllegalStateException("Queue did not return the nearest chunk");
+                            }
+                        }
+                    }
+                    break;
+            }
+
+            if (queue.size() != expected.size()) {
+                throw new IllegalStateException("Queue size is incorrect");
+            }
+        }
+    }
+
+    private static int distanceSq(long pos, int centerX, int centerZ) {
+        int x = ChunkPos.getPackedX(pos) - centerX;
+        int z = ChunkPos.getPackedZ(pos) - centerZ;
+
+        return x * x + z * z;
+    }
+}
@@ -0,0 +1,71 @@
+package me.jellysquid.mods.lithium.common.world.pregen;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * Checks that {@link ChunkSpiral} visits every chunk within its radius exactly once, ring by ring, and that indices
+ * far along very large spirals still map to the ring they belong to.
+ */
+public class TestChunkSpiral {
+    private static final int RADIUS = 300;
+
+    public static void main(String[] args) {
+        TestChunkSpiral test = new TestChunkSpiral();
+        test.testCoverage();
+        test.testLargeIndices();
+
+        System.out.println("Chunk spiral test passed.");
+    }
+
+    public void testCoverage() {
+        int centerX = 17;
+        int centerZ = -5;
+
+        long count = ChunkSpiral.getChunkCount(RADIUS);
+        LongOpenHashSet visited = new LongOpenHashSet();
+
+        int prevRing = 0;
+
+        for (long index = 0; index < count; index++) {
+            long pos = ChunkSpiral.getPos(centerX, centerZ, index);
+
+            if (!visited.add(pos)) {
+                throw new IllegalStateException("Chunk visited twice at index " + index);
+            }
+
+            int ring = getRing(pos, centerX, centerZ);
+
+            if (ring > RADIUS) {
+                throw new IllegalStateException("Chunk outside of the radius at index " + index);
+            }
+
+            if (ring < prevRing || ring > prevRing + 1) {
+                throw new IllegalStateException("Rings are not visited in order at index " + index);
+            }
+
+            prevRing = ring;
+        }
+
+        if (visited.size() != count) {
+            throw new IllegalStateException("Not all chunks were visited");
+        }
+    }
+
+    public void testLargeIndices() {
+        int radius = 1_875_000;
+
+        for (int ring = radius - 1000; ring <= radius; ring++) {
+            long start = (2L * ring - 1) * (2L * ring - 1);
+
+            if (getRing(ChunkSpiral.getPos(0, 0, start - 1), 0, 0) != ring - 1 ||
+                    getRing(ChunkSpiral.getPos(0, 0, start), 0, 0) != ring) {
+                throw new IllegalStateException("Index mapped to the wrong ring " + ring);
+            }
+        }
+    }
+
+    private static int getRing(long pos, int centerX, int centerZ) {
+        return Math.max(Math.abs(ChunkPos.getPackedX(pos) - centerX), Math.abs(ChunkPos.getPackedZ(pos) - centerZ));
+    }
+}
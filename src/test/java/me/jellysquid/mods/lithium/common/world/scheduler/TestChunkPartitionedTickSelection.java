@@ -0,0 +1,80 @@
+package me.jellysquid.mods.lithium.common.world.scheduler;
+
+import net.minecraft.world.TickPriority;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks that selecting ticks from a scheduler partitioned by chunk executes ticks in exactly the same order as
+ * selecting them from a single global bucket index, by replaying the same randomized trace (see {@link TickTrace})
+ * through both of them. The trace contains enough chunks with due ticks for the parallel collection path to be used.
+ * The test prints its random seed when it fails, so failures are reproducible in the debugger.
+ */
+public class TestChunkPartitionedTickSelection {
+    public static void main(String[] args) {
+        new TestChunkPartitionedTickSelection().testReplay();
+        System.out.println("Chunk partitioned tick selection test passed.");
+    }
+
+    public void testReplay() {
+        long seed = new Random().nextLong();
+
+        try {
+            TickTrace trace = TickTrace.record(new Random(seed));
+
+            List<Integer> expected = trace.replay(new TreeTickQueueIndex<>());
+            List<Integer> actual = replayPartitioned(trace);
+
+            if (!expected.equals(actual)) {
+                throw new IllegalStateException("Execution order differs between the global and partitioned scheduler");
+            }
+        } catch (Throwable e) {
+            System.out.println("Test failed with random seed: " + seed);
+            throw e;
+        }
+    }
+
+    private static List<Integer> replayPartitioned(TickTrace trace) {
+        Map<Long, ChunkTickPartition<Integer>> partitions = new HashMap<>();
+        TickEntry<Integer>[] entries = trace.createEntries(partitions);
+
+        ChunkPartitionedTickSelector<Integer> selector = new ChunkPartitionedTickSelector<>();
+
+        List<TickEntry<Integer>> selected = new ArrayList<>();
+        List<Integer> executed = new ArrayList<>();
+
+        long order = 0;
+        int next = 0;
+
+        for (long time = 0; time < TickTrace.WORLD_TICKS; time++) {
+            while (next < entries.length && trace.getScheduleTime(next) == time) {
+                TickEntry<Integer> entry = entries[next++];
+                entry.scheduled = true;
+                entry.order = order++;
+
+                long key = LithiumServerTickScheduler.getBucketKey(entry.time, entry.priority);
+                entry.chunkIdx.getOrCreateQueue(key).push(entry);
+            }
+
+            long headKey = LithiumServerTickScheduler.getBucketKey(time + 1, TickPriority.EXTREMELY_HIGH) - 1;
+            long now = time;
+
+            selector.selectTicks(partitions.values(), headKey, TickTrace.TICK_LIMIT, pos -> trace.canTick(pos, now),
+                    selected);
+
+            for (TickEntry<Integer> tick : selected) {
+                tick.executing = false;
+
+                executed.add(tick.getObject());
+            }
+
+            selected.clear();
+        }
+
+        return executed;
+    }
+}
@@ -0,0 +1,133 @@
+package me.jellysquid.mods.lithium.common.world.scheduler;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.ScheduledTick;
+import net.minecraft.world.TickPriority;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks that {@link TickEntryPositionIndex} answers the same lookups as the {@link HashMap} keyed by
+ * {@link ScheduledTick} which it replaces, with 100k pending ticks spread over a redstone-sized area. Ticks are then
+ * removed again to exercise the linked lists of positions holding more than one object.
+ *
+ * The time taken for the lookups of each implementation is printed as a rough comparison.
+ * The test prints its random seed when it fails, so failures are reproducible in the debugger.
+ */
+public class TestTickEntryPositionIndex {
+    private static final int PENDING_TICKS = 100_000;
+    private static final int LOOKUPS = 5_000_000;
+
+    // Stand-ins for the block and fluid of a position, which are compared by identity
+    private static final Object[] OBJECTS = new Object[] { new Object(), new Object(), new Object() };
+
+    public static void main(String[] args) {
+        new TestTickEntryPositionIndex().testLookups();
+        System.out.println("Tick entry position index test passed.");
+    }
+
+    public void testLookups() {
+        long seed = new Random().nextLong();
+
+        try {
+            this.testLookups(new Random(seed));
+        } catch (Throwable e) {
+            System.out.println("Test failed with random seed: " + seed);
+            throw e;
+        }
+    }
+
+    private void testLookups(Random rand) {
+        Map<ScheduledTick<Object>, TickEntry<Object>> map = new HashMap<>();
+        TickEntryPositionIndex<Object> index = new TickEntryPositionIndex<>();
+
+        while (map.size() < PENDING_TICKS) {
+            ScheduledTick<Object> tick = new ScheduledTick<>(randomPos(rand), randomObject(rand), 0, TickPriority.NORMAL);
+
+            if (map.containsKey(tick)) {
+                continue;
+            }
+
+            TickEntry<Object> entry = new TickEntry<>(tick, new ChunkTickPartition<>(0L));
+            entry.scheduled = rand.nextBoolean();
+
+            map.put(tick, entry);
+            index.add(entry);
+        }
+
+        BlockPos[] positions = new BlockPos[LOOKUPS];
+        Object[] objects = new Object[LOOKUPS];
+
+        for (int i = 0; i < LOOKUPS; i++) {
+            positions[i] = randomPos(rand);
+            objects[i] = randomObject(rand);
+        }
+
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (map.get(new ScheduledTick<>(positions[i], objects[i])) != index.get(positions[i], objects[i])) {
+                throw new IllegalStateException("Lookup differs from the HashMap at " + positions[i]);
+            }
+        }
+
+        long mapStart = System.nanoTime();
+        int mapScheduled = 0;
+
+        for (int i = 0; i < LOOKUPS; i++) {
+            TickEntry<Object> entry = map.get(new ScheduledTick<>(positions[i], objects[i]));
+
+            if (entry != null && entry.scheduled) {
+                mapScheduled++;
+            }
+        }
+
+        long mapTime = System.nanoTime() - mapStart;
+
+        long indexStart = System.nanoTime();
+        int indexScheduled = 0;
+
+        for (int i = 0; i < LOOKUPS; i++) {
+            TickEntry<Object> entry = index.get(positions[i], objects[i]);
+
+            if (entry != null && entry.scheduled) {
+                indexScheduled++;
+            }
+        }
+
+        long indexTime = System.nanoTime() - indexStart;
+
+        if (mapScheduled != indexScheduled) {
+            throw new IllegalStateException("Scheduled tick count differs from the HashMap");
+        }
+
+        System.out.printf("%d lookups with %d pending ticks: HashMap %.2fms, position index %.2fms%n", LOOKUPS,
+                PENDING_TICKS, mapTime / 1.0E6D, indexTime / 1.0E6D);
+
+        int removed = 0;
+
+        for (TickEntry<Object> entry : map.values()) {
+            if ((removed++ & 1) == 0) {
+                index.remove(entry);
+
+                if (index.get(entry.pos, entry.getObject()) != null) {
+                    throw new IllegalStateException("Removed entry is still present at " + entry.pos);
+                }
+            } else if (index.get(entry.pos, entry.getObject()) != entry) {
+                throw new IllegalStateException("Entry was lost after removing its neighbours at " + entry.pos);
+            }
+        }
+
+        if (index.size() != PENDING_TICKS / 2) {
+            throw new IllegalStateException("Index size is incorrect after removing entries");
+        }
+    }
+
+    private static BlockPos randomPos(Random rand) {
+        return new BlockPos(rand.nextInt(128), rand.nextInt(32), rand.nextInt(128));
+    }
+
+    private static Object randomObject(Random rand) {
+        return OBJECTS[rand.nextInt(OBJECTS.length)];
+    }
+}
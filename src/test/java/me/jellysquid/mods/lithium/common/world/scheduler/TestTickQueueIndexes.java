@@ -0,0 +1,52 @@
+package me.jellysquid.mods.lithium.common.world.scheduler;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the timing wheel bucket index against the tree bucket index by replaying the same randomized
+ * schedule/execute trace (see {@link TickTrace}) through both of them, so all paths between the ring and the overflow
+ * tree are exercised. Both indices must execute the ticks in exactly the same order.
+ * The test prints its random seed when it fails, so failures are reproducible in the debugger.
+ *
+ * The time taken by each replay is printed as a rough comparison, the trace is recorded beforehand so that only
+ * the index operations are measured.
+ */
+public class TestTickQueueIndexes {
+    public static void main(String[] args) {
+        new TestTickQueueIndexes().testReplay();
+        System.out.println("Tick queue index test passed.");
+    }
+
+    public void testReplay() {
+        long seed = new Random().nextLong();
+
+        try {
+            TickTrace trace = TickTrace.record(new Random(seed));
+
+            // Warm up both implementations before comparing them
+            for (int i = 0; i < 3; i++) {
+                trace.replay(new TreeTickQueueIndex<>());
+                trace.replay(new TimingWheelTickQueueIndex<>(256, 0));
+            }
+
+            long treeStart = System.nanoTime();
+            List<Integer> treeOrder = trace.replay(new TreeTickQueueIndex<>());
+            long treeTime = System.nanoTime() - treeStart;
+
+            long wheelStart = System.nanoTime();
+            List<Integer> wheelOrder = trace.replay(new TimingWheelTickQueueIndex<>(256, 0));
+            long wheelTime = System.nanoTime() - wheelStart;
+
+            if (!treeOrder.equals(wheelOrder)) {
+                throw new IllegalStateException("Execution order differs between the tree and the timing wheel");
+            }
+
+            System.out.printf("Replayed %d ticks: tree %.2fms, timing wheel %.2fms%n", treeOrder.size(),
+                    treeTime / 1.0E6D, wheelTime / 1.0E6D);
+        } catch (Throwable e) {
+            System.out.println("Test failed with random seed: " + seed);
+            throw e;
+        }
+    }
+}
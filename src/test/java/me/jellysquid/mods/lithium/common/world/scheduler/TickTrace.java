@@ -0,0 +1,166 @@
+package me.jellysquid.mods.lithium.common.world.scheduler;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.ScheduledTick;
+import net.minecraft.world.TickPriority;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A recorded, randomized schedule/execute trace used for comparing the different tick scheduler implementations.
+ * The trace includes short and far-future delays, ticks which are left behind because their chunk cannot be ticked
+ * and ticks which exceed the per-tick budget.
+ */
+class TickTrace {
+    private static final TickPriority[] PRIORITIES = TickPriority.values();
+
+    static final int WORLD_TICKS = 20_000;
+    static final int TICK_LIMIT = 2_000;
+
+    private final long[] scheduleTimes;
+    private final long[] times;
+    private final int[] priorities;
+    private final int[] chunks;
+
+    private TickTrace(int size) {
+        this.scheduleTimes = new long[size];
+        this.times = new long[size];
+        this.priorities = new int[size];
+        this.chunks = new int[size];
+    }
+
+    static TickTrace record(Random rand) {
+        List<long[]> schedules = new ArrayList<>();
+
+        for (long time = 0; time < WORLD_TICKS; time++) {
+            // Bursts of ticks model redstone clocks and fluid updates
+            int count = rand.nextInt(10) == 0 ? rand.nextInt(3000) : rand.nextInt(40);
+
+            for (int i = 0; i < count; i++) {
+                long delay;
+
+                switch (rand.nextInt(10)) {
+                    case 0:
+                        delay = 200 + rand.nextInt(4000);
+                        break;
+                    case 1:
+                        delay = 0;
+                        break;
+                    default:
+                        delay = 1 + rand.nextInt(30);
+                        break;
+                }
+
+                schedules.add(new long[] { time, time + delay, rand.nextInt(PRIORITIES.length), rand.nextInt(64) });
+            }
+        }
+
+        TickTrace trace = new TickTrace(schedules.size());
+
+        for (int i = 0; i < schedules.size(); i++) {
+            long[] schedule = schedules.get(i);
+
+            trace.scheduleTimes[i] = schedule[0];
+            trace.times[i] = schedule[1];
+            trace.priorities[i] = (int) schedule[2];
+            trace.chunks[i] = (int) schedule[3];
+        }
+
+        return trace;
+    }
+
+    /**
+     * Creates a fresh set of tick entries for replaying this trace, as replaying mutates the state of the entries.
+     * The object of each tick is its index in the trace.
+     */
+    @SuppressWarnings("unchecked")
+    TickEntry<Integer>[] createEntries(Map<Long, ChunkTickPartition<Integer>> partitions) {
+        TickEntry<Integer>[] entries = (TickEntry<Integer>[]) new TickEntry[this.size()];
+
+        for (int i = 0; i < entries.length; i++) {
+            long chunk = ChunkPos.toLong(this.chunks[i], 0);
+
+            BlockPos pos = new BlockPos(this.chunks[i] << 4, 64, i & 15);
+            ScheduledTick<Integer> tick = new ScheduledTick<>(pos, i, this.times[i], PRIORITIES[this.priorities[i]]);
+
+            entries[i] = new TickEntry<>(tick, partitions.computeIfAbsent(chunk, ChunkTickPartition::new));
+        }
+
+        return entries;
+    }
+
+    int size() {
+        return this.scheduleTimes.length;
+    }
+
+    long getScheduleTime(int index) {
+        return this.scheduleTimes[index];
+    }
+
+    // Models chunks which are unloaded for long stretches of time
+    boolean canTick(BlockPos pos, long time) {
+        int chunk = pos.getX() >> 4;
+
+        return chunk % 8 != 0 || ((time >> 9) + chunk) % 3 == 0;
+    }
+
+    /**
+     * Replays this trace through a single global bucket index, mirroring the selection loop of
+     * {@link LithiumServerTickScheduler#selectTicks}. Returns the objects of the executed ticks in order.
+     */
+    List<Integer> replay(TickQueueIndex<Integer> index) {
+        TickEntry<Integer>[] entries = this.createEntries(new HashMap<>());
+        List<Integer> executed = new ArrayList<>();
+
+        int next = 0;
+
+        for (long time = 0; time < WORLD_TICKS; time++) {
+            while (next < entries.length && this.scheduleTimes[next] == time) {
+                TickEntry<Integer> entry = entries[next++];
+                entry.scheduled = true;
+
+                index.getOrCreateQueue(LithiumServerTickScheduler.getBucketKey(entry.time, entry.priority)).push(entry);
+            }
+
+            long headKey = LithiumServerTickScheduler.getBucketKey(time + 1, TickPriority.EXTREMELY_HIGH) - 1;
+            int limit = TICK_LIMIT;
+
+            Iterator<TickEntryQueue<Integer>> it = index.iterateQueuesBefore(headKey);
+
+            while (limit > 0 && it.hasNext()) {
+                TickEntryQueue<Integer> list = it.next();
+
+                int w = 0;
+
+                for (int i = 0; i < list.size(); i++) {
+                    TickEntry<Integer> tick = list.getTickAtIndex(i);
+
+                    if (limit > 0 && this.canTick(tick.pos, time)) {
+                        executed.add(tick.getObject());
+                        limit--;
+
+                        continue;
+                    }
+
+                    list.setTickAtIndex(w++, tick);
+                }
+
+                list.resize(w);
+
+                if (list.isEmpty()) {
+                    it.remove();
+                }
+            }
+
+            index.onTicksSelected(time);
+        }
+
+        return executed;
+    }
+}
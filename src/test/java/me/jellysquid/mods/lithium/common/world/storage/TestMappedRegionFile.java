@@ -0,0 +1,587 @@
+package me.jellysquid.mods.lithium.common.world.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Checks that {@link MappedRegionFile} reads and writes the vanilla region file format, including oversized chunks
+ * stored in external files, and that damaged files never cause chunks to be read with the wrong contents or valid
+ * chunks to be overwritten. Also checks that a crash right after chunks have been written leaves the new version of
+ * every chunk readable.
+ *
+ * The repository has no JMH setup, so the time taken to read 10,000 chunks from freshly opened files is printed next to
+ * the time taken when copying every chunk into a byte array first, as vanilla does, as a rough comparison. The
+ * operating system's page cache is not dropped between runs. The test prints its random seed when it fails, so
+ * failures are reproducible in the debugger.
+ */
+public class TestMappedRegionFile {
+    private static final int BENCHMARK_REGIONS = 10;
+    private static final int BENCHMARK_CHUNKS_PER_REGION = 1000;
+
+    private Random rand;
+    private Path dir;
+
+    public static void main(String[] args) throws IOException {
+        long seed = new Random().nextLong();
+
+        TestMappedRegionFile test = new TestMappedRegionFile();
+        test.rand = new Random(seed);
+        test.dir = Files.createTempDirectory("lithium-region-test");
+
+        try {
+            test.testRoundTrip();
+            test.testVanillaLayout();
+            test.testDamagedHeader();
+            test.testDamagedChunks();
+            test.testShortFile();
+            test.testCrashAfterWrite();
+            test.benchmarkColdReads();
+        } catch (Throwable e) {
+            System.out.println("Test failed with random seed: " + seed);
+            throw e;
+        } finally {
+            delete(test.dir);
+        }
+
+        System.out.println("Mapped region file test passed.");
+    }
+
+    public void testRoundTrip() throws IOException {
+        Path path = this.dir.resolve("r.0.0.mca");
+        byte[][] expected = new byte[1024][];
+
+        try (MappedRegionFile file = new MappedRegionFile(path, this.dir, false)) {
+            for (int i = 0; i < 300; i++) {
+                int index = this.rand.nextInt(1024);
+
+                // A few chunks don't compress and are too large for the region file
+                expected[index] = this.rand.nextInt(100) == 0 ? randomBytes(this.rand, 1_200_000) :
+                        createChunkData(this.rand, this.rand.nextInt(100_000));
+
+                writeChunk(file, index & 31, index >> 5, expected[index]);
+            }
+
+            checkChunks(file, expected);
+        }
+
+        try (MappedRegionFile file = new MappedRegionFile(path, this.dir, false)) {
+            checkChunks(file, expected);
+        }
+
+        if (Files.size(path) % MappedRegionFile.SECTOR_SIZE != 0) {
+            throw new IllegalStateException("Region file is not padded to whole sectors");
+        }
+    }
+
+    /**
+     * Reads the written file without {@link MappedRegionFile}, and reads a file written by hand in the layout vanilla
+     * uses for each compression type and for external chunks.
+     */
+    public void testVanillaLayout() throws IOException {
+        Path path = this.dir.resolve("r.1.-1.mca");
+        byte[][] expected = new byte[1024][];
+
+        try (MappedRegionFile file = new MappedRegionFile(path, this.dir, false)) {
+            for (int i = 0; i < 50; i++) {
+                int index = this.rand.nextInt(1024);
+                expected[index] = createChunkData(this.rand, this.rand.nextInt(50_000));
+
+                writeChunk(file, index & 31, index >> 5, expected[index]);
+            }
+        }
+
+        ByteBuffer raw = ByteBuffer.wrap(Files.readAllBytes(path));
+
+        for (int i = 0; i < 1024; i++) {
+            int location = raw.getInt(i * 4);
+
+            if ((location != 0) != (expected[i] != null)) {
+                throw new IllegalStateException("Header does not match the written chunks");
+            }
+
+            if (location == 0) {
+                continue;
+            }
+
+            int offset = (location >>> 8) * MappedRegionFile.SECTOR_SIZE;
+            int length = raw.getInt(offset);
+
+            if (raw.get(offset + 4) != MappedRegionFile.COMPRESSION_DEFLATE || length > (location & 0xFF) * 4096) {
+                throw new IllegalStateException("Chunk is not stored in the vanilla layout");
+            }
+
+            InputStream in = new InflaterInputStream(new ByteArrayInputStream(raw.array(), offset + 5, length - 1));
+
+            if (!Arrays.equals(readAll(in), expected[i])) {
+                throw new IllegalStateException("Chunk contents differ when read without the region file");
+            }
+        }
+
+        Path handWritten = this.dir.resolve("r.-3.2.mca");
+        byte[][] chunks = new byte[4][];
+
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = createChunkData(this.rand, 10_000);
+        }
+
+        ByteBuffer file = ByteBuffer.allocate(12 * MappedRegionFile.SECTOR_SIZE);
+        int sector = 2;
+
+        sector = putChunk(file, 0, sector, MappedRegionFile.COMPRESSION_GZIP, gzip(chunks[0]));
+        sector = putChunk(file, 1, sector, MappedRegionFile.COMPRESSION_DEFLATE, deflate(chunks[1]));
+        sector = putChunk(file, 2, sector, MappedRegionFile.COMPRESSION_NONE, chunks[2]);
+        putChunk(file, 3, sector, (byte) (MappedRegionFile.COMPRESSION_DEFLATE | MappedRegionFile.EXTERNAL_FLAG),
+                new byte[0]);
+
+        // The external file is named after the absolute chunk coordinates
+        Files.write(this.dir.resolve("c." + (-3 * 32 + 3) + "." + (2 * 32) + ".mcc"), deflate(chunks[3]));
+        Files.write(handWritten, file.array());
+
+        try (MappedRegionFile region = new MappedRegionFile(handWritten, this.dir, false)) {
+            for (int i = 0; i < chunks.length; i++) {
+                if (!Arrays.equals(readChunk(region, i, 0), chunks[i])) {
+                    throw new IllegalStateException("Chunk written in the vanilla layout was not read correctly");
+                }
+            }
+        }
+    }
+
+    /**
+     * Damages the header entries of chunks, which must then be treated as absent without affecting other chunks, and
+     * checks that new chunks are not written over the sectors of valid chunks.
+     */
+    public void testDamagedHeader() throws IOException {
+        Path path = this.dir.resolve("r.2.0.mca");
+        byte[][] expected = this.writeRandomRegion(path, 200);
+
+        int[] damaged = this.pickChunks(expected, 4);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+            // The chunk starts within the header
+            putInt(channel, damaged[0] * 4, 1 << 8 | 1);
+            // The chunk has no sectors
+            putInt(channel, damaged[1] * 4, 10 << 8);
+            // The chunk starts after the end of the file
+            putInt(channel, damaged[2] * 4, 1_000_000 << 8 | 1);
+            // The chunk is said to be shorter than it is, so its data would be cut off
+            putInt(channel, damaged[3] * 4, (getInt(channel, damaged[3] * 4) & ~0xFF) | 0);
+        }
+
+        for (int index : damaged) {
+            expected[index] = null;
+        }
+
+        try (MappedRegionFile file = new MappedRegionFile(path, this.dir, false)) {
+            checkChunks(file, expected);
+
+            for (int i = 0; i < 200; i++) {
+                int index = this.rand.nextInt(1024);
+                expected[index] = createChunkData(this.rand, this.rand.nextInt(30_000));
+
+                writeChunk(file, index & 31, index >> 5, expected[index]);
+            }
+
+            checkChunks(file, expected);
+        }
+
+        try (MappedRegionFile file = new MappedRegionFile(path, this.dir, false)) {
+            checkChunks(file, expected);
+        }
+    }
+
+    /**
+     * Damages the stored data of chunks. Chunks with an invalid length, compression type or missing external file are
+     * treated as absent, while chunks with damaged compressed data fail with an {@link IOException}.
+     */
+    public void testDamagedChunks() throws IOException {
+        Path path = this.dir.resolve("r.3.0.mca");
+        byte[][] expected = this.writeRandomRegion(path, 100);
+
+        int[] damaged = this.pickChunks(expected, 5);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+            long[] offsets = new long[damaged.length];
+
+            for (int i = 0; i < damaged.length; i++) {
+                offsets[i] = (long) (getInt(channel, damaged[i] * 4) >>> 8) * MappedRegionFile.SECTOR_SIZE;
+            }
+
+            // The length exceeds the chunk's sectors
+            putInt(channel, offsets[0], 10_000_000);
+            // The length is zero
+            putInt(channel, offsets[1], 0);
+            // The compression type is unknown
+            putByte(channel, offsets[2] + 4, (byte) 7);
+            // The chunk is stored externally, but the external file is missing
+            putByte(channel, offsets[3] + 4, (byte) (MappedRegionFile.COMPRESSION_DEFLATE |
+                    MappedRegionFile.EXTERNAL_FLAG));
+            // The compressed data is overwritten with garbage
+            channel.write(ByteBuffer.wrap(randomBytes(this.rand, 64)), offsets[4] + 5);
+        }
+
+        try (MappedRegionFile file = new MappedRegionFile(path, this.dir, false)) {
+            for (int i = 0; i < 4; i++) {
+                if (readChunk(file, damaged[i] & 31, damaged[i] >> 5) != null) {
+                    throw new IllegalStateException("Damaged chunk was not treated as absent");
+                }
+
+                expected[damaged[i]] = null;
+            }
+
+            try {
+                readChunk(file, damaged[4] & 31, damaged[4] >> 5);
+
+                throw new IllegalStateException("Damaged compressed data was read without an error");
+            } catch (IOException ignored) {
+                // Expected, the chunk can not be decompressed
+            }
+
+            expected[damaged[4]] = null;
+
+            for (int i = 0; i < 1024; i++) {
+                if (expected[i] != null && !Arrays.equals(readChunk(file, i & 31, i >> 5), expected[i])) {
+                    throw new IllegalStateException("Undamaged chunk was not read correctly");
+                }
+            }
+        }
+
+        // The file is cut off in the middle of a chunk
+        byte[][] truncated = this.writeRandomRegion(path, 100);
+        long size = Files.size(path);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(size - MappedRegionFile.SECTOR_SIZE - 100);
+        }
+
+        try (MappedRegionFile file = new MappedRegionFile(path, this.dir, false)) {
+            for (int i = 0; i < 1024; i++) {
+                byte[] data;
+
+                try {
+                    data = readChunk(file, i & 31, i >> 5);
+                } catch (IOException e) {
+                    // The end of the chunk's compressed data may be cut off
+                    continue;
+                }
+
+                if (data != null && !Arrays.equals(data, truncated[i])) {
+                    throw new IllegalStateException("Truncated file returned wrong chunk contents");
+                }
+            }
+        }
+    }
+
+    /**
+     * A file which is too short to hold a header is treated as empty, and can be written to.
+     */
+    public void testShortFile() throws IOException {
+        Path path = this.dir.resolve("r.4.0.mca");
+        Files.write(path, randomBytes(this.rand, 100));
+
+        byte[][] expected = new byte[1024][];
+
+        try (MappedRegionFile file = new MappedRegionFile(path, this.dir, false)) {
+            checkChunks(file, expected);
+
+            expected[5] = createChunkData(this.rand, 1000);
+            writeChunk(file, 5, 0, expected[5]);
+        }
+
+        try (MappedRegionFile file = new MappedRegionFile(path, this.dir, false)) {
+            checkChunks(file, expected);
+        }
+    }
+
+    /**
+     * Replaces chunks and adds new ones, then opens a copy of the file as it is on disk before the file is closed. The
+     * copy must contain the new version of every chunk, including chunks placed into the sectors of replaced chunks.
+     */
+    public void testCrashAfterWrite() throws IOException {
+        Path path = this.dir.resolve("r.5.0.mca");
+        Path copy = this.dir.resolve("r.6.0.mca");
+
+        byte[][] expected = this.writeRandomRegion(path, 300);
+
+        try (MappedRegionFile file = new MappedRegionFile(path, this.dir, false)) {
+            int[] replaced = this.pickChunks(expected, 30);
+
+            for (int index : replaced) {
+                expected[index] = createChunkData(this.rand, this.rand.nextInt(30_000));
+
+                writeChunk(file, index & 31, index >> 5, expected[index]);
+            }
+
+            for (int i = 0; i < 30; i++) {
+                int index = this.rand.nextInt(1024);
+                expected[index] = createChunkData(this.rand, 20_000);
+
+                writeChunk(file, index & 31, index >> 5, expected[index]);
+            }
+
+            Files.copy(path, copy);
+        }
+
+        try (MappedRegionFile file = new MappedRegionFile(copy, this.dir, false)) {
+            checkChunks(file, expected);
+        }
+    }
+
+    public void benchmarkColdReads() throws IOException {
+        Path benchmarkDir = Files.createDirectory(this.dir.resolve("benchmark"));
+        Path[] paths = new Path[BENCHMARK_REGIONS];
+
+        for (int r = 0; r < BENCHMARK_REGIONS; r++) {
+            paths[r] = benchmarkDir.resolve("r." + r + ".0.mca");
+
+            try (MappedRegionFile file = new MappedRegionFile(paths[r], benchmarkDir, false)) {
+                for (int i = 0; i < BENCHMARK_CHUNKS_PER_REGION; i++) {
+                    writeChunk(file, i & 31, i >> 5, createChunkData(this.rand, 20_000 + this.rand.nextInt(20_000)));
+                }
+            }
+        }
+
+        long copyingTime = 0;
+        long mappedTime = 0;
+
+        for (int run = 0; run < 3; run++) {
+            copyingTime += readCopying(paths);
+            mappedTime += readMapped(paths, benchmarkDir);
+        }
+
+        System.out.printf("%d chunks from freshly opened files: copying reads %.2fms, mapped reads %.2fms%n",
+                BENCHMARK_REGIONS * BENCHMARK_CHUNKS_PER_REGION, copyingTime / 3.0E6D, mappedTime / 3.0E6D);
+    }
+
+    private static long readMapped(Path[] paths, Path dir) throws IOException {
+        long start = System.nanoTime();
+
+        for (Path path : paths) {
+            try (MappedRegionFile file = new MappedRegionFile(path, dir, false)) {
+                for (int i = 0; i < BENCHMARK_CHUNKS_PER_REGION; i++) {
+                    try (DataInputStream in = file.getChunkInputStream(i & 31, i >> 5)) {
+                        consume(in);
+                    }
+                }
+            }
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Reads every chunk by copying its sectors into a heap buffer and decompressing from there, as vanilla does.
+     */
+    private static long readCopying(Path[] paths) throws IOException {
+        long start = System.nanoTime();
+
+        for (Path path : paths) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(MappedRegionFile.SECTOR_SIZE);
+                channel.read(header, 0);
+
+                for (int i = 0; i < BENCHMARK_CHUNKS_PER_REGION; i++) {
+                    int location = header.getInt(i * 4);
+
+                    ByteBuffer buf = ByteBuffer.allocate((location & 0xFF) * MappedRegionFile.SECTOR_SIZE);
+                    channel.read(buf, (long) (location >>> 8) * MappedRegionFile.SECTOR_SIZE);
+                    buf.flip();
+
+                    int length = buf.getInt();
+
+                    try (InputStream in = new DataInputStream(new InflaterInputStream(
+                            new ByteArrayInputStream(buf.array(), 5, length - 1)))) {
+                        consume(in);
+                    }
+                }
+            }
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private byte[][] writeRandomRegion(Path path, int count) throws IOException {
+        Files.deleteIfExists(path);
+
+        byte[][] expected = new byte[1024][];
+
+        try (MappedRegionFile file = new MappedRegionFile(path, this.dir, false)) {
+            for (int i = 0; i < count; i++) {
+                int index = this.rand.nextInt(1024);
+                expected[index] = createChunkData(this.rand, this.rand.nextInt(30_000));
+
+                writeChunk(file, index & 31, index >> 5, expected[index]);
+            }
+        }
+
+        return expected;
+    }
+
+    private int[] pickChunks(byte[][] chunks, int count) {
+        int[] indices = new int[count];
+        int found = 0;
+
+        while (found < count) {
+            int index = this.rand.nextInt(1024);
+
+            if (chunks[index] != null && !contains(indices, found, index)) {
+                indices[found++] = index;
+            }
+        }
+
+        return indices;
+    }
+
+    private static boolean contains(int[] array, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (array[i] == value) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static void checkChunks(MappedRegionFile file, byte[][] expected) throws IOException {
+        for (int i = 0; i < 1024; i++) {
+            byte[] data = readChunk(file, i & 31, i >> 5);
+
+            if (!Arrays.equals(data, expected[i])) {
+                throw new IllegalStateException("Chunk " + i + " differs from the chunk which was written");
+            }
+
+            if (file.hasChunk(i & 31, i >> 5) != (expected[i] != null)) {
+                throw new IllegalStateException("Chunk " + i + " presence is incorrect");
+            }
+        }
+    }
+
+    private static void writeChunk(MappedRegionFile file, int x, int z, byte[] data) throws IOException {
+        try (DataOutputStream out = file.getChunkOutputStream(x, z)) {
+            out.write(data);
+        }
+    }
+
+    private static byte[] readChunk(MappedRegionFile file, int x, int z) throws IOException {
+        try (DataInputStream in = file.getChunkInputStream(x, z)) {
+            return in != null ? readAll(in) : null;
+        }
+    }
+
+    private static int putChunk(ByteBuffer file, int index, int sector, byte compression, byte[] data) {
+        int sectors = (data.length + 5 + MappedRegionFile.SECTOR_SIZE - 1) / MappedRegionFile.SECTOR_SIZE;
+
+        file.putInt(index * 4, sector << 8 | sectors);
+
+        file.position(sector * MappedRegionFile.SECTOR_SIZE);
+        file.putInt(data.length + 1);
+        file.put(compression);
+        file.put(data);
+
+        return sector + sectors;
+    }
+
+    /**
+     * Creates data which compresses about as well as a chunk's NBT, with runs of repeated values between random ones.
+     */
+    private static byte[] createChunkData(Random rand, int length) {
+        byte[] data = new byte[length];
+
+        for (int i = 0; i < length; ) {
+            int run = Math.min(length - i, 1 + rand.nextInt(16));
+            byte value = (byte) rand.nextInt(rand.nextBoolean() ? 4 : 256);
+
+            Arrays.fill(data, i, i + run, value);
+            i += run;
+        }
+
+        return data;
+    }
+
+    private static byte[] randomBytes(Random rand, int length) {
+        byte[] data = new byte[length];
+        rand.nextBytes(data);
+
+        return data;
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (OutputStream out = new DeflaterOutputStream(bytes)) {
+            out.write(data);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int read;
+
+        while ((read = in.read(buf)) > 0) {
+            out.write(buf, 0, read);
+        }
+
+        return out.toByteArray();
+    }
+
+    private static void consume(InputStream in) throws IOException {
+        byte[] buf = new byte[8192];
+
+        while (in.read(buf) > 0) {
+            // Discard the data, only the time taken to read it is measured
+        }
+    }
+
+    private static int getInt(FileChannel channel, long offset) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4);
+        channel.read(buf, offset);
+
+        return buf.getInt(0);
+    }
+
+    private static void putInt(FileChannel channel, long offset, int value) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4);
+        buf.putInt(0, value);
+
+        channel.write(buf, offset);
+    }
+
+    private static void putByte(FileChannel channel, long offset, byte value) throws IOException {
+        channel.write(ByteBuffer.wrap(new byte[] { value }), offset);
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -2,8 +2,10 @@ package net.minecraft.util.shape;
 
 import me.jellysquid.mods.lithium.common.shapes.VoxelShapeAlignedCuboid;
 import me.jellysquid.mods.lithium.common.shapes.VoxelShapeAlignedCuboid_Offset;
+import me.jellysquid.mods.lithium.common.shapes.VoxelShapeMultiCuboid;
 import me.jellysquid.mods.lithium.mixin.shapes.specialized_shapes.VoxelShapesMixin;
 import net.minecraft.util.math.Box;
+import net.minecraft.util.function.BooleanBiFunction;
 import net.minecraft.util.math.Direction;
 //import org.junit.jupiter.api.Test;
 
@@ -14,13 +16,18 @@ import java.util.Random;
  * This test compares the collision behavior of VoxelShapes using randomized boxes and randomized movements.
  * As 1/8 block aligned shapes, deviations by ~1e-7 and offset shapes are handled specially in vanilla code,
  * we attempt to also include those cases in the test.
+ * Shapes made of multiple boxes are created by combining vanilla shapes and compared with the
+ * {@link VoxelShapeMultiCuboid} which replaces them, the hopper shape is also used for a rough timing comparison.
  * The test prints its random seed when it fails, so failures are reproducible in the debugger.
  *
  * @author 2No2Name
  */
 public class TestCustomVoxelShapesCollisions {
     public static void main(String[] args) {
-        new TestCustomVoxelShapesCollisions().testCollisions();
+        TestCustomVoxelShapesCollisions test = new TestCustomVoxelShapesCollisions();
+        test.testCollisions();
+        test.testMultiCuboidCollisions();
+        test.benchmarkHopper();
         System.out.println("VoxelShape collision test passed.");
     }
 
@@ -94,6 +101,74 @@ public class TestCustomVoxelShapesCollisions {
         }
     }
 
+    //    @Test
+    public void testMultiCuboidCollisions() {
+        Random rand = this.rand;
+
+        for (int i = 0; i < 2000; i++) {
+            VoxelShape shape = getRandomMultiCuboidShape(rand);
+            if (shape.isEmpty()) {
+                continue;
+            }
+            VoxelShape[] pair = getVanillaMultiCuboidVoxelShapePair(shape);
+            this.testShapeBehaviorEquality(pair);
+            this.testIntersectsEquality(pair);
+            //offset shapes share the boxes of their parent shape, offsetting them again creates new boxes
+            for (int j = 0; j < 2; j++) {
+                double xOff = 5 * rand.nextGaussian();
+                double yOff = 4 * rand.nextDouble();
+                double zOff = rand.nextDouble();
+                pair[0] = pair[0].offset(xOff, yOff, zOff);
+                pair[1] = pair[1].offset(xOff, yOff, zOff);
+                this.testShapeBehaviorEquality(pair);
+                this.testIntersectsEquality(pair);
+            }
+        }
+    }
+
+    public void benchmarkHopper() {
+        //[VanillaCopy] HopperBlock shapes, without Block#createCuboidShape to avoid bootstrapping the registries
+        VoxelShape inside = VoxelShapes.cuboid(2 / 16D, 11 / 16D, 2 / 16D, 14 / 16D, 1, 14 / 16D);
+        VoxelShape outside = VoxelShapes.union(VoxelShapes.cuboid(4 / 16D, 4 / 16D, 4 / 16D, 12 / 16D, 10 / 16D, 12 / 16D),
+                VoxelShapes.cuboid(0, 10 / 16D, 0, 1, 1, 1));
+        VoxelShape hopper = VoxelShapes.union(VoxelShapes.combineAndSimplify(outside, inside, BooleanBiFunction.ONLY_FIRST),
+                VoxelShapes.cuboid(6 / 16D, 0, 6 / 16D, 10 / 16D, 4 / 16D, 10 / 16D));
+        VoxelShape[] pair = getVanillaMultiCuboidVoxelShapePair(hopper);
+        this.testShapeBehaviorEquality(pair);
+
+        Box[] entityBoxes = new Box[1024];
+        double[] dists = new double[1024];
+        for (int i = 0; i < entityBoxes.length; i++) {
+            double x = this.rand.nextDouble() * 1.4 - 0.7;
+            double y = this.rand.nextDouble() * 1.4 - 0.7;
+            double z = this.rand.nextDouble() * 1.4 - 0.7;
+            entityBoxes[i] = new Box(x, y, z, x + 0.6, y + 0.6, z + 0.6);
+            dists[i] = (this.rand.nextDouble() - 0.5) * 2;
+        }
+
+        //warm up both shapes before measuring
+        double sum = runHopperCollisions(pair[0], entityBoxes, dists, 200_000) + runHopperCollisions(pair[1], entityBoxes, dists, 200_000);
+
+        long start = System.nanoTime();
+        sum += runHopperCollisions(pair[0], entityBoxes, dists, 2_000_000);
+        long vanillaTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        sum += runHopperCollisions(pair[1], entityBoxes, dists, 2_000_000);
+        long moddedTime = System.nanoTime() - start;
+
+        System.out.printf("Hopper collisions (checksum %.3f): vanilla %.2fms, modded %.2fms%n", sum, vanillaTime / 1.0E6D, moddedTime / 1.0E6D);
+    }
+
+    private static double runHopperCollisions(VoxelShape shape, Box[] entityBoxes, double[] dists, int count) {
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            int index = i & 1023;
+            sum += shape.calculateMaxDistance(AXES[i % 3], entityBoxes[index], dists[index]);
+        }
+        return sum;
+    }
+
     public static Box getRandomBox(Random random) {
         double x1 = random.nextDouble() * 2;
         double y1 = random.nextDouble() * 2;
@@ -138,6 +213,55 @@ public class TestCustomVoxelShapesCollisions {
         }
     }
 
+    public void testIntersectsEquality(VoxelShape[] pair) {
+        for (Box box : boxes) {
+            double x = this.rand.nextGaussian(), y = this.rand.nextGaussian(), z = this.rand.nextGaussian();
+            boolean resultVanilla = false;
+            for (Box shapeBox : pair[0].getBoundingBoxes()) {
+                resultVanilla |= shapeBox.offset(x, y, z).intersects(box);
+            }
+            boolean resultModded = ((VoxelShapeMultiCuboid) pair[1]).intersects(box, x, y, z);
+
+            if (resultModded != resultVanilla) {
+                throw new IllegalStateException(String.format("RNG seed: %s, different results for: %s, %s in intersects with arguments box: %s, offset: %s %s %s, result vanilla: %s, result modded: %s", randomSeed, pair[0], pair[1], box, x, y, z, resultVanilla, resultModded));
+            }
+        }
+    }
+
+    /**
+     * Creates a shape from a few vanilla cuboids the way blocks create their shapes. 1/8 block aligned cuboids result
+     * in a SimpleVoxelShape, other cuboids in an ArrayVoxelShape.
+     */
+    public static VoxelShape getRandomMultiCuboidShape(Random random) {
+        VoxelShape shape = VoxelShapes.empty();
+        int cuboids = 2 + random.nextInt(4);
+        for (int i = 0; i < cuboids; i++) {
+            VoxelShape cuboid;
+            if (random.nextBoolean()) {
+                int x = random.nextInt(8), y = random.nextInt(8), z = random.nextInt(8);
+                cuboid = VoxelShapes.cuboid(x / 8D, y / 8D, z / 8D, (x + 1 + random.nextInt(8 - x)) / 8D,
+                        (y + 1 + random.nextInt(8 - y)) / 8D, (z + 1 + random.nextInt(8 - z)) / 8D);
+            } else {
+                double x = random.nextDouble(), y = random.nextDouble(), z = random.nextDouble();
+                cuboid = VoxelShapes.cuboid(x, y, z, x + (1 - x) * random.nextDouble(),
+                        y + (1 - y) * random.nextDouble(), z + (1 - z) * random.nextDouble());
+            }
+            //cut some cuboids out of the shape, like the inside of a hopper
+            BooleanBiFunction function = i > 0 && random.nextInt(4) == 0 ? BooleanBiFunction.ONLY_FIRST : BooleanBiFunction.OR;
+            shape = VoxelShapes.combineAndSimplify(shape, cuboid, function);
+        }
+        return shape;
+    }
+
+    /**
+     * Pairs a vanilla shape with the {@link VoxelShapeMultiCuboid} using its voxels and point positions, which is
+     * what VoxelShapesMixin#replaceArrayVoxelShape returns for shapes created by VoxelShapes#combine.
+     */
+    public static VoxelShape[] getVanillaMultiCuboidVoxelShapePair(VoxelShape shape) {
+        return new VoxelShape[]{shape, new VoxelShapeMultiCuboid(shape.voxels, shape.getPointPositions(Direction.Axis.X),
+                shape.getPointPositions(Direction.Axis.Y), shape.getPointPositions(Direction.Axis.Z))};
+    }
+
     public static VoxelShape[] getVanillaModdedVoxelShapePair(Box box) {
         return new VoxelShape[]{VoxelShapes.cuboid(box), VoxelShapesMixin.cuboid(box)};
     }